@@ -0,0 +1,91 @@
+package org.fulib.webapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from launching the shadow jar until it serves its first request,
+ * with and without the class data sharing archive of the {@code cdsArchive} task.
+ * The {@code jmh} task passes the paths of both files.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=StartupBenchmark}, which also builds them;
+ * other {@code jmh} runs skip this benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark
+{
+	// =============== Fields ===============
+
+	@Param({ "false", "true" })
+	public boolean cds;
+
+	private Process process;
+
+	// =============== Methods ===============
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws InterruptedException
+	{
+		if (this.process != null)
+		{
+			this.process.destroy();
+			this.process.waitFor();
+			this.process = null;
+		}
+	}
+
+	@Benchmark
+	public int firstRequest() throws Exception
+	{
+		final List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		if (this.cds)
+		{
+			// otherwise only the default archive of the JDK classes is used
+			command.add("-XX:SharedArchiveFile=" + System.getProperty("fulib.cdsArchive"));
+		}
+		command.add("-cp");
+		command.add(System.getProperty("fulib.shadowJar"));
+		command.add(Main.class.getName());
+
+		this.process = new ProcessBuilder(command).redirectErrorStream(true)
+			.redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+
+		final URL url = new URL("http", "localhost", Main.PORT, "/api/versions");
+		while (true)
+		{
+			if (!this.process.isAlive())
+			{
+				throw new IllegalStateException("service exited with " + this.process.exitValue());
+			}
+
+			try
+			{
+				final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+				try
+				{
+					return conn.getResponseCode();
+				}
+				finally
+				{
+					conn.disconnect();
+				}
+			}
+			catch (IOException notYetListening)
+			{
+				Thread.sleep(5);
+			}
+		}
+	}
+}
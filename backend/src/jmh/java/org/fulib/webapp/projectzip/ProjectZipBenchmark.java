@@ -0,0 +1,105 @@
+package org.fulib.webapp.projectzip;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Measures the throughput of generating project zips as more threads share one {@link ProjectGenerator},
+ * with pooled deflaters and buffers and with a fresh deflater and buffer per zip.
+ * Every zip is compared with the one generated in the setup, so a benchmark fails if threads interfere.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=ProjectZipBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProjectZipBenchmark
+{
+	// =============== Fields ===============
+
+	@Param({ "true", "false" })
+	public boolean pooled;
+
+	/**
+	 * The number of lines in the scenario.
+	 */
+	@Param({ "3", "300" })
+	public int lines;
+
+	private ProjectGenerator generator;
+	private ProjectData data;
+	private byte[] expected;
+
+	// =============== Methods ===============
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		this.generator = new ProjectGenerator();
+
+		this.data = new ProjectData();
+		this.data.setPackageName("org.example");
+		this.data.setScenarioFileName("Scenario.md");
+		this.data.setProjectName("example");
+		this.data.setProjectVersion("0.1.0");
+		this.data.setScenarioText("# Example\n\n" + "There is a Student with name Alice.\n".repeat(this.lines));
+		this.data.setDecoratorClassName("GenModel");
+
+		this.expected = this.generator.generate(this.data);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] threads1() throws IOException
+	{
+		return this.generate();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public byte[] threads4() throws IOException
+	{
+		return this.generate();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public byte[] threads16() throws IOException
+	{
+		return this.generate();
+	}
+
+	private byte[] generate() throws IOException
+	{
+		final byte[] zip = this.pooled ? this.generator.generate(this.data) : this.generateUnpooled();
+		if (!Arrays.equals(zip, this.expected))
+		{
+			throw new IllegalStateException("zip differs from the expected bytes");
+		}
+		return zip;
+	}
+
+	private byte[] generateUnpooled() throws IOException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try
+		{
+			final ZipWriter zip = new ZipWriter(output, deflater);
+			this.generator.generate(this.data, zip);
+			zip.finish();
+		}
+		finally
+		{
+			deflater.end();
+		}
+		return output.toByteArray();
+	}
+}
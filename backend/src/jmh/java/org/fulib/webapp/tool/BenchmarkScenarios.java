@@ -0,0 +1,56 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Inputs for the benchmarks.
+ * A scenario name is either the path of an example relative to {@code frontend/src/assets/examples}
+ * (passed as the {@code fulib.examples} system property by the {@code jmh} task),
+ * or {@code synthetic-N} for a generated scenario with {@code N} objects.
+ */
+public class BenchmarkScenarios
+{
+	// =============== Constants ===============
+
+	public static final String PACKAGE_NAME = "org.example";
+	public static final String SCENARIO_FILE_NAME = "Scenario.md";
+
+	private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+	// =============== Static Methods ===============
+
+	public static CodeGenData load(String name) throws IOException
+	{
+		final CodeGenData input = new CodeGenData();
+		input.setScenarioText(loadText(name));
+		input.setPackageName(PACKAGE_NAME);
+		input.setScenarioFileName(SCENARIO_FILE_NAME);
+		return input;
+	}
+
+	private static String loadText(String name) throws IOException
+	{
+		if (name.startsWith(SYNTHETIC_PREFIX))
+		{
+			return synthetic(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())));
+		}
+
+		final String examplesDir = System.getProperty("fulib.examples", "../frontend/src/assets/examples");
+		final Path file = Paths.get(examplesDir).resolve(name);
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @see CodeGenWarmup#syntheticScenario(int)
+	 */
+	public static String synthetic(int size)
+	{
+		return CodeGenWarmup.syntheticScenario(size);
+	}
+}
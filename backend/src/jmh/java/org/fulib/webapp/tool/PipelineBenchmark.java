@@ -0,0 +1,223 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.metrics.MetricsRegistry;
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Diagram;
+import org.fulib.webapp.tool.model.Method;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the stages of the code generation pipeline, and {@link RunCodeGen#run(CodeGenData)} end to end.
+ * Run with {@code ./gradlew jmh}, which also enables the GC profiler for allocation rates.
+ * The stage benchmarks reuse the output of the previous stages, which is produced once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PipelineBenchmark
+{
+	// =============== Fields ===============
+
+	@Param({
+		"definitions/Basics.md",
+		"definitions/SimpleDefinitions.md",
+		"definitions/ComplexDefinitions.md",
+		"definitions/Associations.md",
+		"definitions/Placeholders.md",
+		"methods/CallingMethods.md",
+		"methods/PassingArguments.md",
+		"methods/PiecewiseDefinition.md",
+		"minitutorial/step1.md",
+		"minitutorial/step2.md",
+		"testing/Expectations.md",
+		"testing/ObjectDiagrams.md",
+		"testing/RelationalOperators.md",
+		"transformation/Conditionals.md",
+		"transformation/Lists.md",
+		"transformation/Loops.md",
+		"transformation/ModifyingData.md",
+		"synthetic-10",
+		"synthetic-100",
+		"synthetic-1000",
+	})
+	public String scenario;
+
+	private CodeGenData input;
+
+	private Path tempDir;
+	private Path projectDir;
+	private Path srcDir;
+	private Path packageDir;
+	private Path modelSrcDir;
+	private Path testSrcDir;
+
+	private List<Path> modelSources;
+	private List<Path> testSources;
+	private Map<String, byte[]> allClasses;
+	private List<String> testClassNames;
+
+	private JavaCompilerService compiler;
+	private SandboxClassLoaders sandbox;
+	private CodeGenExecutor executor;
+	private RunLimits limits;
+	private RunCodeGen runCodeGen;
+
+	// =============== Methods ===============
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		this.input = BenchmarkScenarios.load(this.scenario);
+
+		this.tempDir = Files.createTempDirectory("fulib-benchmark");
+		this.projectDir = this.tempDir.resolve("project");
+		this.srcDir = this.projectDir.resolve("src");
+		this.packageDir = this.srcDir.resolve(this.input.getPackageName().replace('.', '/'));
+		this.modelSrcDir = this.projectDir.resolve("model_src");
+		this.testSrcDir = this.projectDir.resolve("test_src");
+
+		Files.createDirectories(this.packageDir);
+		Files.createDirectories(this.modelSrcDir);
+		Files.createDirectories(this.testSrcDir);
+		Files.write(this.packageDir.resolve(this.input.getScenarioFileName()),
+		            this.input.getScenarioText().getBytes(StandardCharsets.UTF_8));
+
+		this.compiler = new JavaCompilerService();
+		this.sandbox = new SandboxClassLoaders();
+
+		// run every stage once, so that each benchmark has the inputs it needs
+		check("scenarioc", this.scenarioc());
+
+		this.modelSources = Tools.collectJavaFiles(this.modelSrcDir);
+		this.testSources = Tools.collectJavaFiles(this.testSrcDir);
+
+		final Map<String, byte[]> modelClasses = new HashMap<>();
+		final Map<String, byte[]> testClasses = new HashMap<>();
+		check("javac", this.compile(this.compiler, modelClasses, testClasses));
+
+		this.allClasses = new HashMap<>(modelClasses);
+		this.allClasses.putAll(testClasses);
+		this.testClassNames = new ArrayList<>(testClasses.keySet());
+		this.testClassNames.sort(Comparator.comparing(name -> name.replace('.', '/') + ".class"));
+
+		this.runTests();
+
+		// results are never cached, so run measures the whole pipeline
+		final TempSpaceManager tempSpace = new TempSpaceManager(this.tempDir.resolve("runs"), 64L * 1024 * 1024,
+		                                                        Long.MAX_VALUE, System::nanoTime);
+		this.executor = new CodeGenExecutor(1, 1);
+		this.limits = new RunLimits();
+		this.runCodeGen = new RunCodeGen(this.compiler, new ResultCache(0, 0, System::nanoTime), this.executor,
+		                                 new CheckExecutor(1, 1), tempSpace, new PipelineMetrics(new MetricsRegistry()),
+		                                 this.sandbox, new TestExecutor(1), this.limits,
+		                                 new WorkerPool(0, 0, 0, 0, List.of()), new ModelCache(0));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		this.executor.shutdown();
+		this.limits.shutdown();
+		this.compiler.close();
+		Tools.deleteRecursively(this.tempDir);
+	}
+
+	private static void check(String stage, int exitCode)
+	{
+		if (exitCode != 0)
+		{
+			throw new IllegalStateException(stage + " failed with exit code " + exitCode);
+		}
+	}
+
+	private int compile(JavaCompilerService compiler, Map<String, byte[]> modelClasses,
+		Map<String, byte[]> testClasses) throws IOException
+	{
+		final OutputStream err = OutputStream.nullOutputStream();
+		if (!this.modelSources.isEmpty())
+		{
+			final int exitCode = compiler.compile(err, Collections.emptyMap(), modelClasses, this.modelSources);
+			if (exitCode != 0)
+			{
+				return exitCode;
+			}
+		}
+		return compiler.compile(err, modelClasses, testClasses, this.testSources);
+	}
+
+	// --------------- Benchmarks ---------------
+
+	@Benchmark
+	public int scenarioc()
+	{
+		final OutputStream out = OutputStream.nullOutputStream();
+		return Tools.scenarioc(out, out, this.srcDir, this.modelSrcDir, this.testSrcDir, "--class-diagram-svg",
+		                       "--object-diagram-svg", "--marker-end-columns");
+	}
+
+	@Benchmark
+	public Map<String, byte[]> javacCold() throws IOException
+	{
+		final Map<String, byte[]> testClasses = new HashMap<>();
+		try (final JavaCompilerService compiler = new JavaCompilerService(System.getProperty("java.class.path")))
+		{
+			this.compile(compiler, new HashMap<>(), testClasses);
+		}
+		return testClasses;
+	}
+
+	@Benchmark
+	public Map<String, byte[]> javacShared() throws IOException
+	{
+		final Map<String, byte[]> testClasses = new HashMap<>();
+		this.compile(this.compiler, new HashMap<>(), testClasses);
+		return testClasses;
+	}
+
+	@Benchmark
+	public Result runTests()
+	{
+		try (final MemoryClassLoader classLoader = this.sandbox.newLoader(this.allClasses))
+		{
+			return Tools.runTests(classLoader, this.testClassNames);
+		}
+	}
+
+	@Benchmark
+	public List<Diagram> collectObjectDiagrams() throws IOException
+	{
+		final WorkspaceScanner workspace = new WorkspaceScanner(this.srcDir, this.modelSrcDir, this.testSrcDir);
+		workspace.scanDiagrams();
+		final List<Diagram> diagrams = new ArrayList<>();
+		RunCodeGen.collectObjectDiagrams(diagrams, this.input.getScenarioText(), this.projectDir, this.packageDir,
+		                                 workspace);
+		return diagrams;
+	}
+
+	@Benchmark
+	public List<Method> collectTestMethods() throws IOException
+	{
+		final WorkspaceScanner workspace = new WorkspaceScanner(this.srcDir, this.modelSrcDir, this.testSrcDir);
+		workspace.scanSources();
+		// parses the sources, the pipeline extracts the methods while compiling
+		return new MethodExtractor().getMethods(this.compiler, workspace);
+	}
+
+	@Benchmark
+	public org.fulib.webapp.tool.model.Result run() throws Exception
+	{
+		return this.runCodeGen.run(this.input);
+	}
+}
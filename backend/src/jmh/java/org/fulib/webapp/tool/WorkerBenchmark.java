@@ -0,0 +1,98 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running the pipeline in-process with running it in a {@link WorkerPool},
+ * i.e. the cost of the protocol and of the JIT state of a worker that is replaced every {@code maxJobs} jobs.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=WorkerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WorkerBenchmark
+{
+	// =============== Fields ===============
+
+	@Param({ "definitions/Basics.md", "testing/ObjectDiagrams.md", "synthetic-100" })
+	public String scenario;
+
+	/**
+	 * {@code 0} runs in-process, otherwise the number of jobs after which a worker is replaced.
+	 */
+	@Param({ "0", "200", "20" })
+	public int maxJobs;
+
+	private Path tempDir;
+	private Path srcDir;
+	private Path modelSrcDir;
+	private Path testSrcDir;
+
+	private JavaCompilerService compiler;
+	private SandboxClassLoaders sandbox;
+	private TestExecutor testExecutor;
+	private RunLimits limits;
+	private WorkerPool workers;
+
+	// =============== Methods ===============
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		final CodeGenData input = BenchmarkScenarios.load(this.scenario);
+
+		this.tempDir = Files.createTempDirectory("fulib-benchmark");
+		this.srcDir = this.tempDir.resolve("src");
+		this.modelSrcDir = this.tempDir.resolve("model_src");
+		this.testSrcDir = this.tempDir.resolve("test_src");
+
+		final Path packageDir = this.srcDir.resolve(input.getPackageName().replace('.', '/'));
+		Files.createDirectories(packageDir);
+		Files.write(packageDir.resolve(input.getScenarioFileName()),
+		            input.getScenarioText().getBytes(StandardCharsets.UTF_8));
+
+		this.compiler = new JavaCompilerService();
+		this.sandbox = new SandboxClassLoaders();
+		this.testExecutor = new TestExecutor(1);
+		this.limits = new RunLimits();
+		this.workers = new WorkerPool(this.maxJobs > 0 ? 1 : 0, this.maxJobs, Long.MAX_VALUE, 60_000, List.of());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		this.workers.shutdown();
+		this.limits.shutdown();
+		this.testExecutor.shutdown();
+		this.compiler.close();
+		Tools.deleteRecursively(this.tempDir);
+	}
+
+	@Benchmark
+	public int genCompileRun() throws Exception
+	{
+		// the scenario compiler overwrites its output, so the directories can be reused
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final String[] args = { "--class-diagram-svg", "--object-diagram-svg", "--marker-end-columns" };
+		if (this.workers.isEnabled())
+		{
+			return this.workers.genCompileRun(PipelineListener.NONE, out, this.srcDir, this.modelSrcDir,
+			                                  this.testSrcDir, args);
+		}
+		return Tools.genCompileRun(this.compiler, this.sandbox, this.testExecutor.getComputer(), this.limits,
+		                           PipelineListener.NONE, out, out, this.srcDir, this.modelSrcDir, this.testSrcDir,
+		                           args);
+	}
+}
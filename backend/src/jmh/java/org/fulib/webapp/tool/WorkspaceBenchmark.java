@@ -0,0 +1,126 @@
+package org.fulib.webapp.tool;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares indexing the files of a run with {@link WorkspaceScanner} to the separate walks the pipeline used before:
+ * {@code model_src} and {@code test_src} twice each (for javac and for the methods), an existence check
+ * for the class diagram, and a walk of the package directory with one more stat per object diagram.
+ * Every walk opens and reads each directory and stats each entry, so the difference is mostly syscalls;
+ * to count them, run the benchmark under {@code strace -f -c}.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=WorkspaceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkspaceBenchmark
+{
+	// =============== Fields ===============
+
+	/**
+	 * The number of model classes, each with a test class and an object diagram.
+	 */
+	@Param({ "5", "50", "500" })
+	public int classes;
+
+	private Path projectDir;
+	private Path srcDir;
+	private Path packageDir;
+	private Path modelSrcDir;
+	private Path testSrcDir;
+
+	// =============== Methods ===============
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		this.projectDir = Files.createTempDirectory("fulib-benchmark");
+		this.srcDir = this.projectDir.resolve("src");
+		this.packageDir = this.srcDir.resolve("org/example");
+		this.modelSrcDir = this.projectDir.resolve("model_src");
+		this.testSrcDir = this.projectDir.resolve("test_src");
+
+		final Path modelPackageDir = this.modelSrcDir.resolve("org/example");
+		final Path testPackageDir = this.testSrcDir.resolve("org/example");
+		Files.createDirectories(this.packageDir);
+		Files.createDirectories(modelPackageDir);
+		Files.createDirectories(testPackageDir);
+
+		Files.writeString(this.packageDir.resolve("Scenario.md"), "# Scenario\n");
+		Files.writeString(modelPackageDir.resolve(WorkspaceScanner.CLASS_DIAGRAM), "<svg/>");
+		for (int i = 0; i < this.classes; i++)
+		{
+			Files.writeString(modelPackageDir.resolve("Class" + i + ".java"), "class Class" + i + " {}\n");
+			Files.writeString(testPackageDir.resolve("Class" + i + "Test.java"), "class Class" + i + "Test {}\n");
+			Files.writeString(this.packageDir.resolve("diagram" + i + ".svg"), "<svg/>");
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		Tools.deleteRecursively(this.projectDir);
+	}
+
+	@Benchmark
+	public int separateWalks() throws IOException
+	{
+		// compiling
+		int count = Tools.collectJavaFiles(this.modelSrcDir).size();
+		count += Tools.collectJavaFiles(this.testSrcDir).size();
+
+		// collecting methods
+		count += walk(this.testSrcDir, Tools::isJava).size();
+		count += walk(this.modelSrcDir, Tools::isJava).size();
+
+		// collecting diagrams
+		if (Files.exists(this.modelSrcDir.resolve("org/example").resolve(WorkspaceScanner.CLASS_DIAGRAM)))
+		{
+			count++;
+		}
+		for (final Path diagram : walk(this.packageDir, WorkspaceScanner::isDiagram))
+		{
+			count += (int) Files.size(diagram);
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int scanner() throws IOException
+	{
+		final WorkspaceScanner workspace = new WorkspaceScanner(this.srcDir, this.modelSrcDir, this.testSrcDir);
+		workspace.scanSources();
+		workspace.scanDiagrams();
+
+		int count = workspace.getModelSources().size() + workspace.getTestSources().size();
+		if (workspace.getClassDiagram("org/example") != null)
+		{
+			count++;
+		}
+		for (final long size : workspace.getDiagrams().values())
+		{
+			count += (int) size;
+		}
+		return count;
+	}
+
+	private static List<Path> walk(Path dir, Predicate<Path> filter) throws IOException
+	{
+		try (final Stream<Path> stream = Files.walk(dir))
+		{
+			return stream.filter(filter).sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.fulib.webapp;
+
+import org.fulib.webapp.projectzip.ProjectData;
+import org.fulib.webapp.tool.CodeGenWarmup;
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The training workload for the class data sharing archive, see the {@code cdsArchive} task in {@code build.gradle}.
+ * Starts the service, sends the example scenarios to {@code /api/runcodegen} and {@code /api/projectzip},
+ * and exits, so that the JVM can dump all classes loaded on the way
+ * ({@code -XX:ArchiveClassesAtExit}).
+ */
+public class CdsTraining
+{
+	public static void main(String[] args) throws Exception
+	{
+		final Main main = DaggerMainFactory.create().main();
+		main.start();
+		main.awaitStart();
+
+		try
+		{
+			request("GET", "/api/versions", null);
+
+			for (final CodeGenData example : CodeGenWarmup.loadExamples())
+			{
+				final JSONObject codeGen = new JSONObject();
+				codeGen.put(CodeGenData.PROPERTY_scenarioText, example.getScenarioText());
+				codeGen.put(CodeGenData.PROPERTY_packageName, example.getPackageName());
+				codeGen.put(CodeGenData.PROPERTY_scenarioFileName, "Scenario.md");
+				request("POST", "/api/runcodegen", codeGen.toString());
+
+				final JSONObject projectZip = new JSONObject();
+				projectZip.put(ProjectData.PROPERTY_SCENARIO_TEXT, example.getScenarioText());
+				projectZip.put(ProjectData.PROPERTY_PACKAGE_NAME, example.getPackageName());
+				projectZip.put(ProjectData.PROPERTY_SCENARIO_FILE_NAME, "Scenario.md");
+				projectZip.put(ProjectData.PROPERTY_PROJECT_NAME, "training");
+				projectZip.put(ProjectData.PROPERTY_PROJECT_VERSION, "0.1.0");
+				request("POST", "/api/projectzip", projectZip.toString());
+			}
+		}
+		finally
+		{
+			main.stop();
+		}
+
+		// the archive is written when the JVM exits, which must not wait for worker threads
+		System.exit(0);
+	}
+
+	private static void request(String method, String path, String body) throws IOException
+	{
+		final URL url = new URL("http", "localhost", Main.PORT, path);
+		final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestMethod(method);
+		try
+		{
+			if (body != null)
+			{
+				conn.setDoOutput(true);
+				conn.setRequestProperty("Content-Type", "application/json");
+				try (final OutputStream output = conn.getOutputStream())
+				{
+					output.write(body.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+
+			if (conn.getResponseCode() != 200)
+			{
+				throw new IOException(method + " " + path + " failed with " + conn.getResponseCode());
+			}
+			try (final InputStream input = conn.getInputStream())
+			{
+				input.transferTo(OutputStream.nullOutputStream());
+			}
+		}
+		finally
+		{
+			conn.disconnect();
+		}
+	}
+}
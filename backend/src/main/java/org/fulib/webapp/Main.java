@@ -1,19 +1,26 @@
 package org.fulib.webapp;
 
+import org.fulib.webapp.metrics.MetricsController;
 import org.fulib.webapp.projectzip.ProjectZipController;
+import org.fulib.webapp.tool.CodeGenWarmup;
+import org.fulib.webapp.tool.Env;
 import org.fulib.webapp.tool.RunCodeGen;
+import org.fulib.webapp.tool.RunCodeGenJobs;
+import org.fulib.webapp.tool.RunFiles;
+import org.fulib.webapp.tool.TempSpaceManager;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Service;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 import javax.inject.Inject;
-import java.io.File;
 import java.util.Properties;
 
 public class Main
 {
-	private static final int PORT = 4567;
+	static final int PORT = 4567;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
@@ -35,15 +42,27 @@ public class Main
 
 	private Service service;
 	private final RunCodeGen runCodeGen;
+	private final RunCodeGenJobs runCodeGenJobs;
+	private final RunFiles runFiles;
 	private final ProjectZipController projectZipController;
+	private final MetricsController metricsController;
+	private final CodeGenWarmup warmup;
+	private final TempSpaceManager tempSpace;
 
 	// =============== Constructors ===============
 
 	@Inject
-	Main(RunCodeGen runCodeGen, ProjectZipController projectZipController)
+	Main(RunCodeGen runCodeGen, RunCodeGenJobs runCodeGenJobs, RunFiles runFiles,
+		ProjectZipController projectZipController, MetricsController metricsController, CodeGenWarmup warmup,
+		TempSpaceManager tempSpace)
 	{
 		this.runCodeGen = runCodeGen;
+		this.runCodeGenJobs = runCodeGenJobs;
+		this.runFiles = runFiles;
 		this.projectZipController = projectZipController;
+		this.metricsController = metricsController;
+		this.warmup = warmup;
+		this.tempSpace = tempSpace;
 	}
 
 	// =============== Static Methods ===============
@@ -60,11 +79,9 @@ public class Main
 	{
 		service = Service.ignite();
 		service.port(PORT);
+		configureThreadPool();
 
-		new File(this.runCodeGen.getTempDir()).mkdirs();
-
-		service.staticFiles.externalLocation(this.runCodeGen.getTempDir());
-		service.staticFiles.expireTime(60 * 60);
+		this.tempSpace.start();
 
 		if (System.getenv("FULIB_CORS") != null)
 		{
@@ -76,13 +93,30 @@ public class Main
 		setupExceptionHandler();
 
 		LOGGER.info("fulib.org service started on http://localhost:4567");
+
+		// /api/ready only reports ready once this is done
+		this.warmup.start();
 	}
 
 	private void addApiRoutes()
 	{
 		service.post("/runcodegen", runCodeGen::handle);
+		service.post("/runcodegen/jobs", runCodeGenJobs::submit);
+		service.get("/runcodegen/jobs/:id", runCodeGenJobs::get);
+		service.get("/runcodegen/jobs/:id/events", runCodeGenJobs::events);
+		// after the job routes, so that it does not match them
+		service.get("/runcodegen/:id/*", runFiles::handle);
 		service.get("/versions", (req, res) -> new JSONObject(VERSIONS).toString(2));
 		service.post("/projectzip", projectZipController::handle);
+		service.get("/projectzip/:key", projectZipController::handleGet);
+		service.get("/metrics", metricsController::handle);
+		service.get("/ready", warmup::handleReady);
+	}
+
+	public void stop()
+	{
+		service.stop();
+		service.awaitStop();
 	}
 
 	void awaitStart()
@@ -97,6 +131,26 @@ public class Main
 
 	// --------------- Helpers ---------------
 
+	private void configureThreadPool()
+	{
+		// code generation runs on the CodeGenExecutor, so request threads mostly wait for I/O
+		if (Env.getBoolean("FULIB_VIRTUAL_THREADS"))
+		{
+			if (VirtualThreadPool.isSupported())
+			{
+				EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+				                    new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool()));
+				LOGGER.info("handling requests on virtual threads");
+				return;
+			}
+			LOGGER.warn("FULIB_VIRTUAL_THREADS is set, but virtual threads need Java 21 or later");
+		}
+
+		// the defaults of Jetty
+		service.threadPool(Env.getInt("FULIB_HTTP_THREADS", 200), Env.getInt("FULIB_HTTP_MIN_THREADS", 8),
+		                   Env.getInt("FULIB_HTTP_IDLE_TIMEOUT", 60_000));
+	}
+
 	private void setupExceptionHandler()
 	{
 		service.exception(Exception.class, (exception, request, response) -> {
@@ -106,8 +160,6 @@ public class Main
 
 	private void enableCORS()
 	{
-		service.staticFiles.header("Access-Control-Allow-Origin", "*");
-
 		service.before((request, response) -> response.header("Access-Control-Allow-Origin", "*"));
 
 		service.options("/*", (req, res) -> {
@@ -2,6 +2,9 @@ package org.fulib.webapp;
 
 import dagger.Component;
 
+import javax.inject.Singleton;
+
+@Singleton
 @Component
 public interface MainFactory
 {
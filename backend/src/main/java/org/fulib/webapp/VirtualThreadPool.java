@@ -0,0 +1,129 @@
+package org.fulib.webapp;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Jetty thread pool that runs every task on a new virtual thread,
+ * so that the number of connections and requests blocked on I/O is not limited by a number of platform threads.
+ * CPU-heavy work must not run on it directly, but on a bounded platform pool like the
+ * {@link org.fulib.webapp.tool.CodeGenExecutor}.
+ * Virtual threads need Java 21; the backend still builds for and runs on older versions,
+ * hence the reflection, see {@link #isSupported()}.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool
+{
+	// =============== Constants ===============
+
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getNewVirtualThreadPerTaskExecutor();
+
+	// =============== Fields ===============
+
+	private final AtomicInteger threads = new AtomicInteger();
+
+	private volatile ExecutorService executor;
+
+	// =============== Static Methods ===============
+
+	private static Method getNewVirtualThreadPerTaskExecutor()
+	{
+		try
+		{
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException ex)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return {@code true} if the JVM supports virtual threads
+	 */
+	public static boolean isSupported()
+	{
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	// =============== Properties ===============
+
+	/**
+	 * @return the number of tasks running
+	 */
+	@Override
+	public int getThreads()
+	{
+		return this.threads.get();
+	}
+
+	@Override
+	public int getIdleThreads()
+	{
+		return 0;
+	}
+
+	@Override
+	public boolean isLowOnThreads()
+	{
+		// there is always another virtual thread
+		return false;
+	}
+
+	// =============== Methods ===============
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		if (!isSupported())
+		{
+			throw new IllegalStateException("virtual threads need Java 21 or later");
+		}
+		this.executor = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+	}
+
+	@Override
+	protected void doStop()
+	{
+		this.executor.shutdown();
+	}
+
+	@Override
+	public void execute(Runnable task)
+	{
+		this.threads.incrementAndGet();
+		try
+		{
+			this.executor.execute(() -> {
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					this.threads.decrementAndGet();
+				}
+			});
+		}
+		catch (RuntimeException ex)
+		{
+			this.threads.decrementAndGet();
+			throw ex;
+		}
+	}
+
+	@Override
+	public void join() throws InterruptedException
+	{
+		final ExecutorService executor = this.executor;
+		if (executor != null)
+		{
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+}
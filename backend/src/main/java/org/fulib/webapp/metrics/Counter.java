@@ -0,0 +1,35 @@
+package org.fulib.webapp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements MetricsRegistry.Metric
+{
+	// =============== Fields ===============
+
+	private final LongAdder value = new LongAdder();
+
+	// =============== Properties ===============
+
+	public long get()
+	{
+		return this.value.sum();
+	}
+
+	// =============== Methods ===============
+
+	public void increment()
+	{
+		this.value.increment();
+	}
+
+	public void add(long amount)
+	{
+		this.value.add(amount);
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels)
+	{
+		MetricsRegistry.writeSample(out, name, labels, this.value.sum());
+	}
+}
@@ -0,0 +1,74 @@
+package org.fulib.webapp.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket upper bounds, written as cumulative Prometheus buckets.
+ */
+public class Histogram implements MetricsRegistry.Metric
+{
+	// =============== Fields ===============
+
+	private final double[] bounds;
+	private final LongAdder[] counts; // one more than bounds, for +Inf
+	private final DoubleAdder sum = new DoubleAdder();
+
+	// =============== Constructors ===============
+
+	Histogram(double[] bounds)
+	{
+		this.bounds = bounds;
+		this.counts = new LongAdder[bounds.length + 1];
+		for (int i = 0; i < this.counts.length; i++)
+		{
+			this.counts[i] = new LongAdder();
+		}
+	}
+
+	// =============== Properties ===============
+
+	public long getCount()
+	{
+		long count = 0;
+		for (final LongAdder adder : this.counts)
+		{
+			count += adder.sum();
+		}
+		return count;
+	}
+
+	public double getSum()
+	{
+		return this.sum.sum();
+	}
+
+	// =============== Methods ===============
+
+	public void observe(double value)
+	{
+		int bucket = 0;
+		while (bucket < this.bounds.length && value > this.bounds[bucket])
+		{
+			bucket++;
+		}
+		this.counts[bucket].increment();
+		this.sum.add(value);
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels)
+	{
+		final String prefix = labels.isEmpty() ? "" : labels + ",";
+		long cumulative = 0;
+		for (int i = 0; i < this.counts.length; i++)
+		{
+			cumulative += this.counts[i].sum();
+			final double bound = i < this.bounds.length ? this.bounds[i] : Double.POSITIVE_INFINITY;
+			MetricsRegistry.writeSample(out, name + "_bucket",
+			                            prefix + "le=\"" + MetricsRegistry.formatValue(bound) + "\"", cumulative);
+		}
+		MetricsRegistry.writeSample(out, name + "_sum", labels, this.sum.sum());
+		MetricsRegistry.writeSample(out, name + "_count", labels, cumulative);
+	}
+}
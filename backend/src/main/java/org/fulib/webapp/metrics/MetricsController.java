@@ -0,0 +1,118 @@
+package org.fulib.webapp.metrics;
+
+import org.fulib.webapp.projectzip.ProjectZipCache;
+import org.fulib.webapp.tool.CheckExecutor;
+import org.fulib.webapp.tool.CodeGenExecutor;
+import org.fulib.webapp.tool.ModelCache;
+import org.fulib.webapp.tool.ResultCache;
+import org.fulib.webapp.tool.RunLimits;
+import org.fulib.webapp.tool.SandboxClassLoaders;
+import org.fulib.webapp.tool.TempSpaceManager;
+import org.fulib.webapp.tool.TestExecutor;
+import org.fulib.webapp.tool.WorkerPool;
+import spark.Request;
+import spark.Response;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Serves the metrics from {@code GET /api/metrics} in the Prometheus text format.
+ * Besides the metrics recorded by the services, it exposes the state of the worker pool,
+ * the result cache, the model cache, the project zip cache, the temp space, the run limits, the worker processes
+ * and the sandbox class loaders.
+ */
+@Singleton
+public class MetricsController
+{
+	// =============== Fields ===============
+
+	private final MetricsRegistry registry;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public MetricsController(MetricsRegistry registry, CodeGenExecutor executor, ResultCache resultCache,
+		TempSpaceManager tempSpace, SandboxClassLoaders sandbox, RunLimits limits, WorkerPool workers,
+		ProjectZipCache projectZipCache, ModelCache modelCache, TestExecutor testExecutor,
+		CheckExecutor checkExecutor)
+	{
+		this.registry = registry;
+
+		registry.gauge("fulib_codegen_threads", "Worker threads for code generation.", executor::getThreads);
+		registry.gauge("fulib_codegen_active", "Code generation tasks running.", executor::getActiveCount);
+		registry.gauge("fulib_codegen_queue_depth", "Code generation tasks waiting for a thread.",
+		               executor::getQueueDepth);
+		registry.counter("fulib_codegen_submitted_total", "Code generation tasks accepted.", executor::getSubmitted);
+		registry.counter("fulib_codegen_rejected_total", "Code generation tasks rejected because the queue was full.",
+		                 executor::getRejected);
+		registry.counter("fulib_codegen_queue_wait_seconds_total", "Time code generation tasks spent in the queue.",
+		                 () -> executor.getTotalWaitNanos() / 1e9);
+
+		registry.gauge("fulib_check_active", "Checks running.", checkExecutor::getActiveCount);
+		registry.gauge("fulib_check_queue_depth", "Checks waiting for a thread.", checkExecutor::getQueueDepth);
+		registry.counter("fulib_check_rejected_total", "Checks rejected because the queue was full.",
+		                 checkExecutor::getRejected);
+
+		registry.counter("fulib_result_cache_hits_total", "Result cache hits.", resultCache::getHits);
+		registry.counter("fulib_result_cache_misses_total", "Result cache misses.", resultCache::getMisses);
+		registry.counter("fulib_result_cache_evictions_total", "Result cache evictions.", resultCache::getEvictions);
+		registry.gauge("fulib_result_cache_entries", "Results in the cache.", resultCache::getSize);
+
+		registry.counter("fulib_model_cache_hits_total", "Compiled model cache hits.", modelCache::getHits);
+		registry.counter("fulib_model_cache_misses_total", "Compiled model cache misses.", modelCache::getMisses);
+		registry.counter("fulib_model_cache_evictions_total", "Compiled model cache evictions.",
+		                 modelCache::getEvictions);
+		registry.gauge("fulib_model_cache_entries", "Compiled models in the cache.", modelCache::getSize);
+		registry.gauge("fulib_model_cache_bytes", "Bytes of class files in the compiled model cache.",
+		               modelCache::getBytes);
+
+		registry.counter("fulib_project_zip_cache_hits_total", "Project zip cache hits.", projectZipCache::getHits);
+		registry.counter("fulib_project_zip_cache_misses_total", "Project zip cache misses.",
+		                 projectZipCache::getMisses);
+		registry.counter("fulib_project_zip_cache_evictions_total", "Project zip cache evictions.",
+		                 projectZipCache::getEvictions);
+		registry.gauge("fulib_project_zip_cache_entries", "Project zips in the cache.", projectZipCache::getSize);
+		registry.gauge("fulib_project_zip_cache_bytes", "Bytes of project zips in the cache.",
+		               projectZipCache::getBytes);
+
+		registry.gauge("fulib_temp_bytes", "Bytes held in run directories.", tempSpace::getBytes);
+		registry.gauge("fulib_temp_directories", "Run directories held.", tempSpace::getDirectories);
+		registry.counter("fulib_temp_deleted_total", "Run directories deleted.", tempSpace::getDeletedDirectories);
+		registry.counter("fulib_temp_quota_evictions_total", "Run directories deleted early because of the quota.",
+		                 tempSpace::getQuotaEvictions);
+
+		registry.gauge("fulib_run_threads_busy",
+		               "Threads running generated code, including runs that were stopped but did not react yet.",
+		               limits::getBusyThreads);
+		registry.gauge("fulib_run_threads_stuck", "Threads of runs that were stopped but did not end yet.",
+		               limits::getStuckThreads);
+		registry.gauge("fulib_test_threads_abandoned",
+		               "Test pool threads held by test methods of stopped runs, each replaced by a new thread.",
+		               testExecutor::getAbandonedThreads);
+
+		registry.gauge("fulib_workers", "Worker processes for code generation.", workers::getWorkers);
+		registry.gauge("fulib_workers_idle", "Worker processes waiting for a job.", workers::getIdle);
+		registry.counter("fulib_workers_started_total", "Worker processes started.", workers::getStarted);
+		registry.counter("fulib_workers_recycled_total", "Worker processes replaced after jobs, memory or failures.",
+		                 workers::getRecycled);
+
+		registry.gauge("fulib_sandbox_loaders_open", "Class loaders of runs that were not closed yet.",
+		               sandbox::getOpen);
+		registry.counter("fulib_sandbox_loaders_created_total", "Class loaders created for runs.", sandbox::getCreated);
+		registry.gauge("jvm_metaspace_used_bytes", "Bytes of metaspace in use.", SandboxClassLoaders::getMetaspaceUsed);
+		registry.gauge("jvm_metaspace_committed_bytes", "Bytes of metaspace committed.",
+		               SandboxClassLoaders::getMetaspaceCommitted);
+		registry.gauge("jvm_classes_loaded", "Classes currently loaded.", SandboxClassLoaders::getLoadedClassCount);
+		registry.counter("jvm_classes_unloaded_total", "Classes unloaded since the JVM started.",
+		                 SandboxClassLoaders::getUnloadedClassCount);
+	}
+
+	// =============== Methods ===============
+
+	public Object handle(Request req, Response res)
+	{
+		res.type(MetricsRegistry.CONTENT_TYPE);
+		return this.registry.scrape();
+	}
+}
@@ -0,0 +1,216 @@
+package org.fulib.webapp.metrics;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds the metrics of the service and writes them in the Prometheus text exposition format.
+ * Metrics are identified by name and label pairs, and created on first use.
+ */
+@Singleton
+public class MetricsRegistry
+{
+	// =============== Constants ===============
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * Buckets for durations in seconds.
+	 */
+	public static final double[] DURATION_BUCKETS = {
+		0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30,
+	};
+
+	/**
+	 * Buckets for sizes in bytes, from 1 KiB to 1 GiB in powers of 4.
+	 */
+	public static final double[] SIZE_BUCKETS = {
+		1L << 10, 1L << 12, 1L << 14, 1L << 16, 1L << 18, 1L << 20, 1L << 22, 1L << 24, 1L << 26, 1L << 28, 1L << 30,
+	};
+
+	// =============== Fields ===============
+
+	private final Map<String, Family> families = new LinkedHashMap<>(); // guarded by this
+
+	// =============== Constructors ===============
+
+	@Inject
+	public MetricsRegistry()
+	{
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param labels
+	 * 	alternating label names and values
+	 */
+	public Counter counter(String name, String help, String... labels)
+	{
+		final Family family = this.family(name, help, "counter");
+		return (Counter) family.children.computeIfAbsent(formatLabels(labels), key -> new Counter());
+	}
+
+	/**
+	 * @param labels
+	 * 	alternating label names and values
+	 */
+	public Histogram histogram(String name, String help, double[] buckets, String... labels)
+	{
+		final Family family = this.family(name, help, "histogram");
+		return (Histogram) family.children.computeIfAbsent(formatLabels(labels), key -> new Histogram(buckets));
+	}
+
+	/**
+	 * Registers a gauge whose value is read when the metrics are written.
+	 */
+	public void gauge(String name, String help, DoubleSupplier value)
+	{
+		this.family(name, help, "gauge").children.put("", new SuppliedValue(value));
+	}
+
+	/**
+	 * Registers a counter whose value is maintained elsewhere and read when the metrics are written.
+	 */
+	public void counter(String name, String help, DoubleSupplier value)
+	{
+		this.family(name, help, "counter").children.put("", new SuppliedValue(value));
+	}
+
+	private synchronized Family family(String name, String help, String type)
+	{
+		final Family family = this.families.computeIfAbsent(name, key -> new Family(help, type));
+		if (!family.type.equals(type))
+		{
+			throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+		}
+		return family;
+	}
+
+	public String scrape()
+	{
+		final StringBuilder out = new StringBuilder();
+		final Map<String, Family> families;
+		synchronized (this)
+		{
+			families = new LinkedHashMap<>(this.families);
+		}
+
+		for (final Map.Entry<String, Family> entry : families.entrySet())
+		{
+			final String name = entry.getKey();
+			final Family family = entry.getValue();
+			out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+			for (final Map.Entry<String, Metric> child : family.children.entrySet())
+			{
+				child.getValue().write(out, name, child.getKey());
+			}
+		}
+		return out.toString();
+	}
+
+	// --------------- Helpers ---------------
+
+	private static String formatLabels(String[] labels)
+	{
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i + 1 < labels.length; i += 2)
+		{
+			if (i > 0)
+			{
+				builder.append(',');
+			}
+			builder.append(labels[i]).append("=\"");
+			escape(builder, labels[i + 1]);
+			builder.append('"');
+		}
+		return builder.toString();
+	}
+
+	private static void escape(StringBuilder builder, String value)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			final char c = value.charAt(i);
+			switch (c)
+			{
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			default:
+				builder.append(c);
+			}
+		}
+	}
+
+	static void writeSample(StringBuilder out, String name, String labels, double value)
+	{
+		out.append(name);
+		if (!labels.isEmpty())
+		{
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ').append(formatValue(value)).append('\n');
+	}
+
+	static String formatValue(double value)
+	{
+		if (value == Double.POSITIVE_INFINITY)
+		{
+			return "+Inf";
+		}
+		if (value == (long) value)
+		{
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	// =============== Classes ===============
+
+	interface Metric
+	{
+		void write(StringBuilder out, String name, String labels);
+	}
+
+	private static class Family
+	{
+		final String help;
+		final String type;
+		// sorted by labels, so the output is stable
+		final Map<String, Metric> children = new ConcurrentSkipListMap<>();
+
+		Family(String help, String type)
+		{
+			this.help = help;
+			this.type = type;
+		}
+	}
+
+	private static class SuppliedValue implements Metric
+	{
+		private final DoubleSupplier value;
+
+		SuppliedValue(DoubleSupplier value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public void write(StringBuilder out, String name, String labels)
+		{
+			writeSample(out, name, labels, this.value.getAsDouble());
+		}
+	}
+}
@@ -1,93 +1,146 @@
 package org.fulib.webapp.projectzip;
 
-import org.apache.commons.io.IOUtils;
-import org.fulib.webapp.Main;
-
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
 
+/**
+ * Generates the files of a Gradle project for a scenario.
+ * The resources are loaded once: static files are kept deflated, templated files are kept parsed,
+ * so a project only needs the scenario and the templated files compressed.
+ * The generator holds no per-request state; deflaters and buffers come from a pool, so it is safe to share.
+ */
+@Singleton
 public class ProjectGenerator
 {
-	public interface FileGenerator
+	// =============== Constants ===============
+
+	// resource name and file name
+	private static final String[][] STATIC_FILES = {
+		{ "default.gitignore", ".gitignore" },
+		{ "gradlew", "gradlew" },
+		{ "gradlew.bat", "gradlew.bat" },
+		{ "gradle/wrapper/gradle-wrapper.jar.zip", "gradle/wrapper/gradle-wrapper.jar" },
+		{ "gradle/wrapper/gradle-wrapper.properties", "gradle/wrapper/gradle-wrapper.properties" },
+	};
+
+	// =============== Fields ===============
+
+	private final List<ZipEntryData> staticEntries;
+	private final Template settingsGradle;
+	private final Template buildGradle;
+	private final Template decorator;
+
+	private final ZipBufferPool bufferPool = new ZipBufferPool(2 * Runtime.getRuntime().availableProcessors());
+
+	// =============== Constructors ===============
+
+	@Inject
+	public ProjectGenerator()
 	{
-		void generate(String name, OutputStreamConsumer output) throws IOException;
+		// the static files are compressed only once, so it may take longer
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try
+		{
+			final List<ZipEntryData> staticEntries = new ArrayList<>(STATIC_FILES.length);
+			for (final String[] file : STATIC_FILES)
+			{
+				staticEntries.add(ZipEntryData.deflate(file[1], load(file[0]), deflater));
+			}
+			this.staticEntries = Collections.unmodifiableList(staticEntries);
+
+			this.settingsGradle = loadTemplate("settings.gradle");
+			this.buildGradle = loadTemplate("build.gradle");
+			this.decorator = loadTemplate("Decorator.java.txt");
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	// =============== Static Methods ===============
+
+	private static byte[] load(String resourceName) throws IOException
+	{
+		try (final InputStream input = ProjectGenerator.class.getResourceAsStream(resourceName))
+		{
+			if (input == null)
+			{
+				throw new IOException("missing resource " + resourceName);
+			}
+			return input.readAllBytes();
+		}
 	}
 
-	public interface OutputStreamConsumer
+	private static Template loadTemplate(String resourceName) throws IOException
 	{
-		void accept(OutputStream output) throws IOException;
+		return Template.parse(new String(load(resourceName), StandardCharsets.UTF_8));
 	}
 
-	private final byte[] buffer = new byte[8192];
+	// =============== Methods ===============
 
-	@Inject
-	public ProjectGenerator()
+	/**
+	 * @return the zip of the project. The same data always gives the same bytes.
+	 */
+	public byte[] generate(ProjectData data) throws IOException
 	{
+		final ZipBufferPool.Buffers buffers = this.bufferPool.acquire();
+		try
+		{
+			final ZipWriter zip = new ZipWriter(buffers.output, buffers.deflater);
+			this.generate(data, zip);
+			zip.finish();
+			return buffers.output.toByteArray();
+		}
+		finally
+		{
+			this.bufferPool.release(buffers);
+		}
 	}
 
-	public void generate(ProjectData data, FileGenerator generator) throws IOException
+	public void generate(ProjectData data, ZipWriter zip) throws IOException
 	{
 		final String packageDir = data.getPackageName().replace('.', '/');
 		final String fileName = data.getScenarioFileName();
 
-		generator.generate("src/main/scenarios/" + packageDir + "/" + fileName, output -> {
-			final String scenarioText = data.getScenarioText();
-			if (scenarioText != null)
-			{
-				output.write(scenarioText.getBytes(StandardCharsets.UTF_8));
-			}
-		});
+		final String scenarioText = data.getScenarioText();
+		zip.write("src/main/scenarios/" + packageDir + "/" + fileName,
+		          scenarioText != null ? scenarioText.getBytes(StandardCharsets.UTF_8) : new byte[0]);
 
-		copy(generator, "default.gitignore", ".gitignore");
-		copy(generator, "gradlew");
-		copy(generator, "gradlew.bat");
-		copy(generator, "gradle/wrapper/gradle-wrapper.jar.zip", "gradle/wrapper/gradle-wrapper.jar");
-		copy(generator, "gradle/wrapper/gradle-wrapper.properties");
+		for (final ZipEntryData entry : this.staticEntries)
+		{
+			zip.write(entry);
+		}
 
-		copy(generator, "settings.gradle", "settings.gradle", //
-		     "$$projectName$$", data.getProjectName());
-		copy(generator, "build.gradle", "build.gradle", //
-		     "$$packageName$$", data.getPackageName(), "$$projectVersion$$", data.getProjectVersion());
+		write(zip, "settings.gradle", this.settingsGradle, //
+		      Map.of("projectName", data.getProjectName()));
+		write(zip, "build.gradle", this.buildGradle, //
+		      Map.of("packageName", data.getPackageName(), "projectVersion", data.getProjectVersion()));
 
 		final String decorator = data.getDecoratorClassName();
 		if (decorator != null)
 		{
-			copy(generator, "Decorator.java.txt", "src/gen/java/" + packageDir + "/" + decorator + ".java", //
-			     "$$packageName$$", data.getPackageName(), "$$decoratorClassName$$", data.getDecoratorClassName());
+			write(zip, "src/gen/java/" + packageDir + "/" + decorator + ".java", this.decorator, //
+			      Map.of("packageName", data.getPackageName(), "decoratorClassName", decorator));
 		}
 	}
 
-	private void copy(FileGenerator generator, String file) throws IOException
-	{
-		copy(generator, file, file);
-	}
-
-	private void copy(FileGenerator generator, String resourceName, String file) throws IOException
-	{
-		generator.generate(file, output -> {
-			try (final InputStream fileInput = ProjectGenerator.class.getResourceAsStream(resourceName))
-			{
-				IOUtils.copyLarge(fileInput, output, buffer);
-			}
-		});
-	}
-
-	private void copy(FileGenerator generator, String resourceName, String file, String... replacements)
+	private static void write(ZipWriter zip, String file, Template template, Map<String, String> values)
 		throws IOException
 	{
-		generator.generate(file, output -> {
-			try (final InputStream input = ProjectGenerator.class.getResourceAsStream(resourceName))
-			{
-				String content = IOUtils.toString(input, StandardCharsets.UTF_8);
-				for (int i = 0; i < replacements.length; i += 2)
-				{
-					content = content.replace(replacements[i], replacements[i + 1]);
-				}
-				output.write(content.getBytes(StandardCharsets.UTF_8));
-			}
-		});
+		zip.write(file, template.render(values).getBytes(StandardCharsets.UTF_8));
 	}
 }
@@ -0,0 +1,111 @@
+package org.fulib.webapp.projectzip;
+
+import org.fulib.webapp.Main;
+import org.fulib.webapp.tool.Env;
+import org.fulib.webapp.tool.KeyHasher;
+import org.fulib.webapp.tool.LruCache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * A bounded LRU cache of finished project zips, keyed by a hash of the {@link ProjectData} and the versions.
+ * Since the zips are deterministic, the key also serves as the ETag of a zip, whether it is cached or not.
+ * Configured with the {@code FULIB_PROJECT_ZIP_CACHE_BYTES} environment variable
+ * (total size of the cached zips, {@code 0} disables the cache).
+ */
+@Singleton
+public class ProjectZipCache
+{
+	// =============== Constants ===============
+
+	private static final long DEFAULT_MAX_BYTES = 32 << 20;
+
+	// =============== Fields ===============
+
+	private final LruCache<String, byte[]> entries;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public ProjectZipCache()
+	{
+		this(Env.getLong("FULIB_PROJECT_ZIP_CACHE_BYTES", DEFAULT_MAX_BYTES));
+	}
+
+	ProjectZipCache(long maxBytes)
+	{
+		this.entries = new LruCache<>(maxBytes, zip -> zip.length);
+	}
+
+	// =============== Properties ===============
+
+	public boolean isEnabled()
+	{
+		return this.entries.isEnabled();
+	}
+
+	public long getHits()
+	{
+		return this.entries.getHits();
+	}
+
+	public long getMisses()
+	{
+		return this.entries.getMisses();
+	}
+
+	public long getEvictions()
+	{
+		return this.entries.getEvictions();
+	}
+
+	public int getSize()
+	{
+		return this.entries.getSize();
+	}
+
+	public long getBytes()
+	{
+		return this.entries.getWeight();
+	}
+
+	// =============== Static Methods ===============
+
+	public static String key(ProjectData data)
+	{
+		return new KeyHasher()
+			.add(data.getPackageName())
+			.add(data.getScenarioFileName())
+			.add(data.getProjectName())
+			.add(data.getProjectVersion())
+			.add(data.getScenarioText())
+			.add(data.getDecoratorClassName())
+			// the versions end up in build.gradle, and a new deployment may generate different files
+			.add(Main.VERSIONS)
+			.hash();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param key
+	 * 	the cache key, see {@link #key(ProjectData)}
+	 *
+	 * @return the cached zip, or {@code null} if there is none. The array must not be modified.
+	 */
+	public byte[] get(String key)
+	{
+		return this.entries.get(key);
+	}
+
+	public void put(String key, byte[] zip)
+	{
+		this.entries.put(key, zip);
+	}
+
+	public void clear()
+	{
+		this.entries.clear();
+	}
+}
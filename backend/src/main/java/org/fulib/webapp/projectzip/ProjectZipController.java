@@ -4,20 +4,22 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import spark.Request;
 import spark.Response;
+import spark.Spark;
 
 import javax.inject.Inject;
 import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.io.OutputStream;
 
 public class ProjectZipController
 {
 	private final ProjectGenerator projectGenerator;
+	private final ProjectZipCache projectZipCache;
 
 	@Inject
-	public ProjectZipController(ProjectGenerator projectGenerator)
+	public ProjectZipController(ProjectGenerator projectGenerator, ProjectZipCache projectZipCache)
 	{
 		this.projectGenerator = projectGenerator;
+		this.projectZipCache = projectZipCache;
 	}
 
 	public Object handle(Request request, Response response) throws IOException, JSONException
@@ -26,18 +28,91 @@ public class ProjectZipController
 		final JSONObject jsonObject = new JSONObject(body);
 		final ProjectData projectData = readJson(jsonObject);
 
+		// the zip only depends on the project data, so the cache key identifies the content
+		final String key = ProjectZipCache.key(projectData);
+		final String etag = '"' + key + '"';
+		response.header("ETag", etag);
+		// where the same zip can be requested conditionally while it is cached, see handleGet
+		response.header("Content-Location", "/api/projectzip/" + key);
+
+		if (matches(request.headers("If-None-Match"), etag))
+		{
+			// only GET and HEAD may answer 304, other methods fail the precondition (RFC 9110, section 13.1.2)
+			response.status(412);
+			return "";
+		}
+
+		byte[] zip = this.projectZipCache.get(key);
+		if (zip == null)
+		{
+			zip = this.projectGenerator.generate(projectData);
+			this.projectZipCache.put(key, zip);
+		}
+
+		return write(zip, response);
+	}
+
+	/**
+	 * Serves a zip that was generated before by its key, as long as it is cached,
+	 * so that clients can revalidate it with {@code If-None-Match}.
+	 */
+	public Object handleGet(Request request, Response response) throws IOException
+	{
+		final String key = request.params(":key");
+		final byte[] zip = key != null ? this.projectZipCache.get(key) : null;
+		if (zip == null)
+		{
+			// language=JSON
+			throw Spark.halt(404, "{\n" + "  \"error\": \"project zip not found, please generate it again\"\n" + "}");
+		}
+
+		final String etag = '"' + key + '"';
+		response.header("ETag", etag);
+
+		if (matches(request.headers("If-None-Match"), etag))
+		{
+			response.status(304);
+			return "";
+		}
+
+		return write(zip, response);
+	}
+
+	private static Object write(byte[] zip, Response response) throws IOException
+	{
 		response.type("application/zip");
-		try (final ZipOutputStream zip = new ZipOutputStream(response.raw().getOutputStream()))
+		response.header("Content-Length", Integer.toString(zip.length));
+		try (final OutputStream output = response.raw().getOutputStream())
 		{
-			this.projectGenerator.generate(projectData, (name, output) -> {
-				zip.putNextEntry(new ZipEntry(name));
-				output.accept(zip);
-			});
+			output.write(zip);
 		}
 
 		return response.raw();
 	}
 
+	public static boolean matches(String ifNoneMatch, String etag)
+	{
+		if (ifNoneMatch == null)
+		{
+			return false;
+		}
+
+		for (String candidate : ifNoneMatch.split(","))
+		{
+			candidate = candidate.trim();
+			// weak comparison, as If-None-Match requires
+			if (candidate.startsWith("W/"))
+			{
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private static ProjectData readJson(JSONObject json)
 	{
 		final ProjectData projectData = new ProjectData();
@@ -0,0 +1,116 @@
+package org.fulib.webapp.projectzip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A text with {@code $$name$$} placeholders, split into literal and placeholder segments once,
+ * so rendering it only appends the segments.
+ */
+public class Template
+{
+	// =============== Constants ===============
+
+	private static final String DELIMITER = "$$";
+
+	// =============== Fields ===============
+
+	// even indices are literals, odd indices are placeholder names
+	private final String[] segments;
+	private final int literalLength;
+
+	// =============== Constructors ===============
+
+	private Template(String[] segments)
+	{
+		this.segments = segments;
+		int literalLength = 0;
+		for (int i = 0; i < segments.length; i += 2)
+		{
+			literalLength += segments[i].length();
+		}
+		this.literalLength = literalLength;
+	}
+
+	// =============== Static Methods ===============
+
+	public static Template parse(String text)
+	{
+		final List<String> segments = new ArrayList<>();
+		int literalStart = 0;
+		int from = 0;
+		int start;
+		while ((start = text.indexOf(DELIMITER, from)) >= 0)
+		{
+			final int end = text.indexOf(DELIMITER, start + DELIMITER.length());
+			if (end < 0)
+			{
+				break;
+			}
+
+			final String name = text.substring(start + DELIMITER.length(), end);
+			if (!isName(name))
+			{
+				// e.g. the $$ of a shell script
+				from = start + 1;
+				continue;
+			}
+
+			segments.add(text.substring(literalStart, start));
+			segments.add(name);
+			literalStart = from = end + DELIMITER.length();
+		}
+		segments.add(text.substring(literalStart));
+		return new Template(segments.toArray(new String[0]));
+	}
+
+	private static boolean isName(String name)
+	{
+		if (name.isEmpty())
+		{
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (!Character.isJavaIdentifierPart(name.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param values
+	 * 	the values by placeholder name; placeholders without value are kept as they are
+	 *
+	 * @return the text with the placeholders replaced
+	 */
+	public String render(Map<String, String> values)
+	{
+		final StringBuilder builder = new StringBuilder(this.literalLength + 16 * (this.segments.length / 2));
+		for (int i = 0; i < this.segments.length; i++)
+		{
+			final String segment = this.segments[i];
+			if (i % 2 == 0)
+			{
+				builder.append(segment);
+				continue;
+			}
+
+			final String value = values.get(segment);
+			if (value != null)
+			{
+				builder.append(value);
+			}
+			else
+			{
+				builder.append(DELIMITER).append(segment).append(DELIMITER);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,74 @@
+package org.fulib.webapp.projectzip;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * A pool of deflaters and output buffers for writing zips.
+ * A {@link Deflater} holds native memory that is only released by {@link Deflater#end()} or the GC,
+ * so reusing them is cheaper than creating one per request.
+ * Pooled rather than thread-local, so that virtual threads do not each keep a deflater.
+ */
+class ZipBufferPool
+{
+	// =============== Constants ===============
+
+	// larger output buffers are dropped instead of kept in the pool, see release
+	private static final int MAX_RETAINED_OUTPUT = 1 << 20;
+
+	// =============== Fields ===============
+
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<Buffers> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	// =============== Constructors ===============
+
+	ZipBufferPool(int maxIdle)
+	{
+		this.maxIdle = maxIdle;
+	}
+
+	// =============== Methods ===============
+
+	Buffers acquire()
+	{
+		final Buffers buffers = this.idle.poll();
+		if (buffers == null)
+		{
+			return new Buffers();
+		}
+		this.idleCount.decrementAndGet();
+		return buffers;
+	}
+
+	void release(Buffers buffers)
+	{
+		if (buffers.output.size() > MAX_RETAINED_OUTPUT)
+		{
+			buffers.deflater.end();
+			return;
+		}
+		if (this.idleCount.incrementAndGet() > this.maxIdle)
+		{
+			this.idleCount.decrementAndGet();
+			buffers.deflater.end();
+			return;
+		}
+
+		buffers.deflater.reset();
+		buffers.output.reset();
+		this.idle.add(buffers);
+	}
+
+	// =============== Classes ===============
+
+	static final class Buffers
+	{
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		// reset keeps the capacity, so the buffer only grows during the first few zips
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(64 << 10);
+	}
+}
@@ -0,0 +1,93 @@
+package org.fulib.webapp.projectzip;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An immutable zip entry whose content is already deflated, so {@link ZipWriter} can copy it as is.
+ */
+public class ZipEntryData
+{
+	// =============== Fields ===============
+
+	private final byte[] name;
+	private final long crc;
+	private final int size;
+	private final byte[] deflated;
+
+	// =============== Constructors ===============
+
+	ZipEntryData(byte[] name, long crc, int size, byte[] deflated)
+	{
+		this.name = name;
+		this.crc = crc;
+		this.size = size;
+		this.deflated = deflated;
+	}
+
+	// =============== Static Methods ===============
+
+	/**
+	 * @param deflater
+	 * 	a deflater for raw deflate data ({@code nowrap}), which is reset before use
+	 */
+	public static ZipEntryData deflate(String name, byte[] content, Deflater deflater)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+
+		final byte[] buffer = deflate(deflater, content, new byte[Math.max(64, content.length / 2)]);
+		final int length = (int) deflater.getBytesWritten();
+
+		return new ZipEntryData(name.getBytes(StandardCharsets.UTF_8), crc.getValue(), content.length,
+		                        Arrays.copyOf(buffer, length));
+	}
+
+	/**
+	 * Deflates the content into the buffer, which grows if necessary.
+	 * The length of the deflated data is {@link Deflater#getBytesWritten()}.
+	 *
+	 * @return the buffer, or a larger copy of it
+	 */
+	static byte[] deflate(Deflater deflater, byte[] content, byte[] buffer)
+	{
+		deflater.reset();
+		deflater.setInput(content);
+		deflater.finish();
+
+		int length = 0;
+		while (!deflater.finished())
+		{
+			if (length == buffer.length)
+			{
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+		return buffer;
+	}
+
+	// =============== Properties ===============
+
+	byte[] getName()
+	{
+		return this.name;
+	}
+
+	long getCrc()
+	{
+		return this.crc;
+	}
+
+	int getSize()
+	{
+		return this.size;
+	}
+
+	byte[] getDeflated()
+	{
+		return this.deflated;
+	}
+}
@@ -0,0 +1,163 @@
+package org.fulib.webapp.projectzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive of deflated entries.
+ * Unlike {@link java.util.zip.ZipOutputStream}, it accepts entries that are already compressed
+ * ({@link ZipEntryData}), and it uses a fixed timestamp, so the same entries always give the same bytes.
+ * Only supports archives below 4 GiB and 65535 entries, which is plenty for project templates.
+ */
+public class ZipWriter
+{
+	// =============== Constants ===============
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+	private static final int VERSION = 20;
+	private static final int FLAG_UTF8 = 1 << 11;
+	private static final int METHOD_DEFLATED = 8;
+
+	// 1980-02-01 00:00 in MS-DOS format, like reproducible Gradle archives
+	private static final int DOS_TIME = 0;
+	private static final int DOS_DATE = 2 << 5 | 1;
+
+	// =============== Fields ===============
+
+	private final OutputStream out;
+	private final Deflater deflater;
+	private final byte[] header = new byte[46];
+	// for deflating plain content, reused across entries
+	private byte[] buffer = new byte[4096];
+
+	private final List<ZipEntryData> entries = new ArrayList<>();
+	private final List<Long> offsets = new ArrayList<>();
+	private long written;
+
+	// =============== Constructors ===============
+
+	/**
+	 * @param deflater
+	 * 	a deflater for raw deflate data ({@code nowrap}), used for the entries passed as plain content
+	 */
+	public ZipWriter(OutputStream out, Deflater deflater)
+	{
+		this.out = out;
+		this.deflater = deflater;
+	}
+
+	// =============== Methods ===============
+
+	public void write(String name, byte[] content) throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		this.buffer = ZipEntryData.deflate(this.deflater, content, this.buffer);
+		final byte[] deflated = Arrays.copyOf(this.buffer, (int) this.deflater.getBytesWritten());
+		this.write(new ZipEntryData(name.getBytes(StandardCharsets.UTF_8), crc.getValue(), content.length, deflated));
+	}
+
+	public void write(ZipEntryData entry) throws IOException
+	{
+		this.entries.add(entry);
+		this.offsets.add(this.written);
+
+		final byte[] name = entry.getName();
+		int pos = 0;
+		pos = putInt(this.header, pos, LOCAL_HEADER);
+		pos = putShort(this.header, pos, VERSION);
+		pos = this.putEntryInfo(pos, entry);
+		pos = putShort(this.header, pos, 0); // extra field length
+		this.writeHeader(pos);
+		this.writeBytes(name);
+		this.writeBytes(entry.getDeflated());
+	}
+
+	/**
+	 * Writes the central directory. Does not close the stream.
+	 */
+	public void finish() throws IOException
+	{
+		final long start = this.written;
+		for (int i = 0; i < this.entries.size(); i++)
+		{
+			final ZipEntryData entry = this.entries.get(i);
+			int pos = 0;
+			pos = putInt(this.header, pos, CENTRAL_HEADER);
+			pos = putShort(this.header, pos, VERSION); // made by
+			pos = putShort(this.header, pos, VERSION); // needed to extract
+			pos = this.putEntryInfo(pos, entry);
+			pos = putShort(this.header, pos, 0); // extra field length
+			pos = putShort(this.header, pos, 0); // comment length
+			pos = putShort(this.header, pos, 0); // disk number
+			pos = putShort(this.header, pos, 0); // internal attributes
+			pos = putInt(this.header, pos, 0); // external attributes
+			pos = putInt(this.header, pos, (int) (long) this.offsets.get(i));
+			this.writeHeader(pos);
+			this.writeBytes(entry.getName());
+		}
+		final long size = this.written - start;
+
+		int pos = 0;
+		pos = putInt(this.header, pos, END_OF_CENTRAL_DIRECTORY);
+		pos = putShort(this.header, pos, 0); // this disk
+		pos = putShort(this.header, pos, 0); // disk with the central directory
+		pos = putShort(this.header, pos, this.entries.size());
+		pos = putShort(this.header, pos, this.entries.size());
+		pos = putInt(this.header, pos, (int) size);
+		pos = putInt(this.header, pos, (int) start);
+		pos = putShort(this.header, pos, 0); // comment length
+		this.writeHeader(pos);
+	}
+
+	// the part shared by local and central headers, from the flags to the name length
+	private int putEntryInfo(int pos, ZipEntryData entry)
+	{
+		pos = putShort(this.header, pos, FLAG_UTF8);
+		pos = putShort(this.header, pos, METHOD_DEFLATED);
+		pos = putShort(this.header, pos, DOS_TIME);
+		pos = putShort(this.header, pos, DOS_DATE);
+		pos = putInt(this.header, pos, (int) entry.getCrc());
+		pos = putInt(this.header, pos, entry.getDeflated().length);
+		pos = putInt(this.header, pos, entry.getSize());
+		pos = putShort(this.header, pos, entry.getName().length);
+		return pos;
+	}
+
+	private void writeHeader(int length) throws IOException
+	{
+		this.out.write(this.header, 0, length);
+		this.written += length;
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException
+	{
+		this.out.write(bytes);
+		this.written += bytes.length;
+	}
+
+	private static int putShort(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte) value;
+		buffer[pos + 1] = (byte) (value >>> 8);
+		return pos + 2;
+	}
+
+	private static int putInt(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte) value;
+		buffer[pos + 1] = (byte) (value >>> 8);
+		buffer[pos + 2] = (byte) (value >>> 16);
+		buffer[pos + 3] = (byte) (value >>> 24);
+		return pos + 4;
+	}
+}
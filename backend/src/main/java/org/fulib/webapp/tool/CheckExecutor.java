@@ -0,0 +1,32 @@
+package org.fulib.webapp.tool;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * A small bounded pool for checks ({@code "mode": "check"}), which only run the scenario compiler,
+ * so that they do not wait in the queue of the {@link CodeGenExecutor} behind full runs.
+ * Configured with the {@code FULIB_CHECK_THREADS} (default: 2)
+ * and {@code FULIB_CHECK_QUEUE} (default: 4 times the number of threads) environment variables.
+ */
+@Singleton
+public class CheckExecutor extends CodeGenExecutor
+{
+	// =============== Constructors ===============
+
+	@Inject
+	public CheckExecutor()
+	{
+		this(Env.getInt("FULIB_CHECK_THREADS", 2));
+	}
+
+	private CheckExecutor(int threads)
+	{
+		this(threads, Env.getInt("FULIB_CHECK_QUEUE", 4 * threads));
+	}
+
+	public CheckExecutor(int threads, int queueCapacity)
+	{
+		super("check", threads, queueCapacity);
+	}
+}
@@ -0,0 +1,179 @@
+package org.fulib.webapp.tool;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded worker pool for the CPU-heavy code generation pipeline.
+ * Configured with the {@code FULIB_CODEGEN_THREADS} (default: number of processors)
+ * and {@code FULIB_CODEGEN_QUEUE} (default: 4 times the number of threads) environment variables.
+ * When all threads are busy and the queue is full, new tasks are rejected with a {@link RejectedExecutionException}.
+ */
+@Singleton
+public class CodeGenExecutor
+{
+	// =============== Fields ===============
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	// =============== Constructors ===============
+
+	@Inject
+	public CodeGenExecutor()
+	{
+		this(Env.getInt("FULIB_CODEGEN_THREADS", Runtime.getRuntime().availableProcessors()));
+	}
+
+	private CodeGenExecutor(int threads)
+	{
+		this(threads, Env.getInt("FULIB_CODEGEN_QUEUE", 4 * threads));
+	}
+
+	public CodeGenExecutor(int threads, int queueCapacity)
+	{
+		this("codegen", threads, queueCapacity);
+	}
+
+	/**
+	 * @param name
+	 * 	the prefix of the thread names
+	 */
+	protected CodeGenExecutor(String name, int threads, int queueCapacity)
+	{
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			final Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+		                                       new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+		                                       new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	// =============== Properties ===============
+
+	public int getThreads()
+	{
+		return this.executor.getMaximumPoolSize();
+	}
+
+	public int getActiveCount()
+	{
+		return this.executor.getActiveCount();
+	}
+
+	public int getQueueDepth()
+	{
+		return this.executor.getQueue().size();
+	}
+
+	public int getQueueCapacity()
+	{
+		return this.executor.getQueue().size() + this.executor.getQueue().remainingCapacity();
+	}
+
+	public long getSubmitted()
+	{
+		return this.submitted.get();
+	}
+
+	public long getRejected()
+	{
+		return this.rejected.get();
+	}
+
+	public long getCompleted()
+	{
+		return this.completed.get();
+	}
+
+	/**
+	 * @return the total time tasks spent in the queue before a thread picked them up, in nanoseconds
+	 */
+	public long getTotalWaitNanos()
+	{
+		return this.totalWaitNanos.get();
+	}
+
+	public long getMaxWaitNanos()
+	{
+		return this.maxWaitNanos.get();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Submits a task to the pool.
+	 *
+	 * @param task
+	 * 	the task, which receives the time in nanoseconds it waited in the queue
+	 *
+	 * @return a future for the result of the task
+	 *
+	 * @throws RejectedExecutionException
+	 * 	if the queue is full
+	 */
+	public <T> Future<T> submit(Task<T> task)
+	{
+		final long queuedAt = System.nanoTime();
+		try
+		{
+			final Future<T> future = this.executor.submit(() -> {
+				final long waitNanos = System.nanoTime() - queuedAt;
+				this.totalWaitNanos.addAndGet(waitNanos);
+				this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+				try
+				{
+					return task.call(waitNanos);
+				}
+				finally
+				{
+					this.completed.incrementAndGet();
+				}
+			});
+			this.submitted.incrementAndGet();
+			return future;
+		}
+		catch (RejectedExecutionException ex)
+		{
+			this.rejected.incrementAndGet();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Estimates how long it takes until a rejected task would be accepted,
+	 * based on the average wait time so far.
+	 *
+	 * @return the estimate in seconds, at least {@code 1}
+	 */
+	public long estimateRetryAfterSeconds()
+	{
+		final long completed = this.completed.get();
+		final long averageWaitNanos = completed == 0 ? 0 : this.totalWaitNanos.get() / completed;
+		return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(averageWaitNanos));
+	}
+
+	public void shutdown()
+	{
+		this.executor.shutdown();
+	}
+
+	// =============== Classes ===============
+
+	@FunctionalInterface
+	public interface Task<T>
+	{
+		T call(long waitNanos) throws Exception;
+	}
+}
@@ -0,0 +1,299 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.Result;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of an asynchronous code generation run, see {@link RunCodeGenJobs}.
+ * Every state change is recorded as an event, so that clients can follow the progress.
+ * Output events point into one buffer of the output, which is replaced by the output of the result once it is done.
+ */
+public class CodeGenJob implements PipelineListener
+{
+	// =============== Constants ===============
+
+	public static final String PROPERTY_id = "id";
+	public static final String PROPERTY_status = "status";
+	public static final String PROPERTY_stage = "stage";
+	public static final String PROPERTY_result = "result";
+	public static final String PROPERTY_error = "error";
+
+	public static final String EVENT_STATUS = "status";
+	public static final String EVENT_STAGE = "stage";
+	public static final String EVENT_OUTPUT = "output";
+	public static final String EVENT_RESULT = "result";
+	public static final String EVENT_ERROR = "error";
+
+	// =============== Enums ===============
+
+	public enum Status
+	{
+		QUEUED, RUNNING, DONE, FAILED;
+
+		public String getId()
+		{
+			return this.name().toLowerCase();
+		}
+	}
+
+	// =============== Fields ===============
+
+	private final String id;
+	private final boolean diagramReferences;
+
+	// all guarded by this
+	private Status status = Status.QUEUED;
+	private Stage stage;
+	private Result result;
+	private String error;
+	private long finishedMillis;
+	private final List<Event> events = new ArrayList<>();
+	private CharSequence output = new StringBuilder(); // the lines of the output events, each followed by \n
+	private final List<Runnable> listeners = new ArrayList<>();
+
+	// =============== Constructors ===============
+
+	public CodeGenJob(String id, boolean diagramReferences)
+	{
+		this.id = id;
+		this.diagramReferences = diagramReferences;
+		this.addEvent(EVENT_STATUS, new JSONObject().put(PROPERTY_status, this.status.getId()));
+	}
+
+	// =============== Properties ===============
+
+	public String getId()
+	{
+		return this.id;
+	}
+
+	public synchronized Status getStatus()
+	{
+		return this.status;
+	}
+
+	public synchronized Result getResult()
+	{
+		return this.result;
+	}
+
+	public synchronized boolean isFinished()
+	{
+		return this.status == Status.DONE || this.status == Status.FAILED;
+	}
+
+	public synchronized long getFinishedMillis()
+	{
+		return this.finishedMillis;
+	}
+
+	// =============== Methods ===============
+
+	public synchronized void start()
+	{
+		this.setStatus(Status.RUNNING);
+	}
+
+	public synchronized void complete(Result result)
+	{
+		this.result = result;
+		this.shareOutput(result.getOutput());
+		this.finishedMillis = System.currentTimeMillis();
+		this.setStatus(Status.DONE);
+		// the payload is serialized on demand, see Event#writeData
+		this.addEvent(EVENT_RESULT, null);
+	}
+
+	/**
+	 * Lets the output events point into the output of the result, if it consists of the same lines,
+	 * so that the output is kept only once.
+	 */
+	private void shareOutput(String text)
+	{
+		final int length = this.output.length();
+		if (text == null || length == 0 || text.length() != length && text.length() != length - 1)
+		{
+			return;
+		}
+		if (text.contentEquals(this.output.subSequence(0, text.length())))
+		{
+			this.output = text;
+		}
+	}
+
+	public synchronized void fail(String error)
+	{
+		this.error = error;
+		this.finishedMillis = System.currentTimeMillis();
+		this.setStatus(Status.FAILED);
+		this.addEvent(EVENT_ERROR, new JSONObject().put(PROPERTY_error, error));
+	}
+
+	private void setStatus(Status status)
+	{
+		this.status = status;
+		this.addEvent(EVENT_STATUS, new JSONObject().put(PROPERTY_status, status.getId()));
+	}
+
+	@Override
+	public synchronized void stageStarted(Stage stage)
+	{
+		this.stage = stage;
+		this.addEvent(EVENT_STAGE, new JSONObject().put(PROPERTY_stage, stage.getId()).put("state", "started"));
+	}
+
+	@Override
+	public synchronized void stageFinished(Stage stage, int exitCode)
+	{
+		this.addEvent(EVENT_STAGE, new JSONObject()
+			.put(PROPERTY_stage, stage.getId())
+			.put("state", "finished")
+			.put("exitCode", exitCode));
+	}
+
+	@Override
+	public synchronized void output(String line)
+	{
+		if (this.isFinished())
+		{
+			// the output now points into the result
+			return;
+		}
+
+		final StringBuilder builder = (StringBuilder) this.output;
+		final int start = builder.length();
+		builder.append(line).append('\n');
+		this.addEvent(new Event(this.events.size(), EVENT_OUTPUT, null, start, start + line.length()));
+	}
+
+	private void addEvent(String type, JSONObject data)
+	{
+		this.addEvent(new Event(this.events.size(), type, data, 0, 0));
+	}
+
+	private void addEvent(Event event)
+	{
+		this.events.add(event);
+		for (final Runnable listener : this.listeners)
+		{
+			listener.run();
+		}
+	}
+
+	/**
+	 * Registers a listener that is called whenever an event is added.
+	 * It is called with the lock of the job held, so it must not block.
+	 */
+	public synchronized void addListener(Runnable listener)
+	{
+		this.listeners.add(listener);
+	}
+
+	public synchronized void removeListener(Runnable listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * All events are added with the lock of the job held,
+	 * so if the job is finished while the caller holds the lock, there will be no more events.
+	 *
+	 * @return the events from index {@code from}, possibly empty
+	 */
+	public synchronized List<Event> getEvents(int from)
+	{
+		return from < this.events.size() ? new ArrayList<>(this.events.subList(from, this.events.size())) : List.of();
+	}
+
+	public void writeJson(Writer writer) throws IOException
+	{
+		final JSONObject obj = new JSONObject();
+		final Result result;
+		synchronized (this)
+		{
+			obj.put(PROPERTY_id, this.id);
+			obj.put(PROPERTY_status, this.status.getId());
+			if (this.stage != null)
+			{
+				obj.put(PROPERTY_stage, this.stage.getId());
+			}
+			if (this.error != null)
+			{
+				obj.put(PROPERTY_error, this.error);
+			}
+			result = this.result;
+		}
+
+		final String json = obj.toString();
+		if (result == null)
+		{
+			writer.write(json);
+			return;
+		}
+
+		// the result is streamed in place of the closing brace
+		writer.write(json, 0, json.length() - 1);
+		writer.write(",\"" + PROPERTY_result + "\":");
+		RunCodeGen.writeJson(result, writer, this.diagramReferences);
+		writer.write('}');
+	}
+
+	// =============== Classes ===============
+
+	public class Event
+	{
+		private final int index;
+		private final String type;
+		private final JSONObject data;
+		// the line of an output event in the output of the job
+		private final int outputStart;
+		private final int outputEnd;
+
+		Event(int index, String type, JSONObject data, int outputStart, int outputEnd)
+		{
+			this.index = index;
+			this.type = type;
+			this.data = data;
+			this.outputStart = outputStart;
+			this.outputEnd = outputEnd;
+		}
+
+		public int getIndex()
+		{
+			return this.index;
+		}
+
+		public String getType()
+		{
+			return this.type;
+		}
+
+		public void writeData(Writer writer) throws IOException
+		{
+			if (this.data != null)
+			{
+				writer.write(this.data.toString());
+			}
+			else if (EVENT_OUTPUT.equals(this.type))
+			{
+				final String line;
+				synchronized (CodeGenJob.this)
+				{
+					line = CodeGenJob.this.output.subSequence(this.outputStart, this.outputEnd).toString();
+				}
+				writer.write("{\"line\":");
+				JSONObject.quote(line, writer);
+				writer.write('}');
+			}
+			else
+			{
+				RunCodeGen.writeJson(CodeGenJob.this.getResult(), writer, CodeGenJob.this.diagramReferences);
+			}
+		}
+	}
+}
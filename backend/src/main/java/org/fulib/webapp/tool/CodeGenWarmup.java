@@ -0,0 +1,255 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Result;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Warms up the JIT and class loading for the code generation pipeline on startup,
+ * by running the bundled example scenarios through {@link RunCodeGen#runUncached(CodeGenData)} in the background,
+ * so they take no entries of the result cache and no temp space.
+ * Enabled with the {@code FULIB_WARMUP} environment variable, which also sets the number of rounds
+ * over all examples ({@code true} means {@value #DEFAULT_ROUNDS}).
+ * Until the warm-up is done, {@code GET /api/ready} answers {@code 503 Service Unavailable},
+ * so load balancers only send traffic to warm instances.
+ * Without warm-up, the service is ready right away.
+ * It also answers {@code 503} while the instance is not {@link RunCodeGen#isHealthy() healthy}.
+ */
+@Singleton
+public class CodeGenWarmup
+{
+	// =============== Constants ===============
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CodeGenWarmup.class);
+
+	static final int DEFAULT_ROUNDS = 3;
+
+	private static final String PACKAGE_NAME = "org.fulib.warmup";
+
+	// the examples of the frontend, copied by processResources
+	private static final String EXAMPLES_DIR = "/org/fulib/webapp/examples";
+	// a file next to the examples, to find them in the jar
+	private static final String ANCHOR = "/org/fulib/webapp/version.properties";
+
+	// =============== Fields ===============
+
+	private final RunCodeGen runCodeGen;
+	private final int rounds;
+
+	private volatile boolean ready;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public CodeGenWarmup(RunCodeGen runCodeGen)
+	{
+		this(runCodeGen, getRounds(System.getenv("FULIB_WARMUP")));
+	}
+
+	public CodeGenWarmup(RunCodeGen runCodeGen, int rounds)
+	{
+		this.runCodeGen = runCodeGen;
+		this.rounds = rounds;
+		this.ready = rounds <= 0;
+	}
+
+	// =============== Static Methods ===============
+
+	private static int getRounds(String value)
+	{
+		if (value == null || value.isEmpty() || "false".equalsIgnoreCase(value))
+		{
+			return 0;
+		}
+		if ("true".equalsIgnoreCase(value))
+		{
+			return DEFAULT_ROUNDS;
+		}
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * @return the bundled examples, or a generated scenario if the examples were not bundled
+	 */
+	public static List<CodeGenData> loadExamples() throws IOException
+	{
+		final List<String> texts = new ArrayList<>();
+		final URL anchor = CodeGenWarmup.class.getResource(ANCHOR);
+		if (anchor != null)
+		{
+			final URI uri;
+			try
+			{
+				uri = anchor.toURI();
+			}
+			catch (URISyntaxException ex)
+			{
+				throw new IOException(ex);
+			}
+
+			if ("jar".equals(uri.getScheme()))
+			{
+				try (final FileSystem jar = FileSystems.newFileSystem(uri, Collections.emptyMap()))
+				{
+					readExamples(jar.getPath(EXAMPLES_DIR), texts);
+				}
+			}
+			else
+			{
+				readExamples(Paths.get(uri).getParent().resolve("examples"), texts);
+			}
+		}
+
+		if (texts.isEmpty())
+		{
+			texts.add(syntheticScenario(20));
+		}
+
+		final List<CodeGenData> examples = new ArrayList<>(texts.size());
+		for (final String text : texts)
+		{
+			final CodeGenData input = new CodeGenData();
+			input.setScenarioText(text);
+			input.setPackageName(PACKAGE_NAME);
+			examples.add(input);
+		}
+		return examples;
+	}
+
+	private static void readExamples(Path dir, List<String> texts) throws IOException
+	{
+		if (!Files.isDirectory(dir))
+		{
+			return;
+		}
+
+		final List<Path> files;
+		try (final Stream<Path> stream = Files.walk(dir))
+		{
+			files = stream.filter(file -> file.toString().endsWith(".md")).sorted().collect(Collectors.toList());
+		}
+		for (final Path file : files)
+		{
+			texts.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Generates a scenario with the given number of objects, spread over scenarios of ten objects each.
+	 * Every scenario declares attributes and associations, checks them, and draws an object diagram,
+	 * so all stages of the pipeline grow with the size.
+	 */
+	public static String syntheticScenario(int size)
+	{
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < size; i++)
+		{
+			if (i % 10 == 0)
+			{
+				builder.append("# Part").append(i / 10).append("\n\n");
+				builder.append("There is the University Uni").append(i / 10).append(".\n\n");
+			}
+
+			builder.append("There is a Student with name S").append(i).append(" and with credits ").append(i)
+				.append(".\n");
+			builder.append("S").append(i).append(" has uni and is one of the students of the Uni").append(i / 10)
+				.append(".\n");
+			builder.append("We expect that S").append(i).append(" has credits ").append(i).append(".\n\n");
+
+			if (i % 10 == 9 || i == size - 1)
+			{
+				builder.append("![Uni").append(i / 10).append("](images/part").append(i / 10).append(".svg)\n\n");
+			}
+		}
+		return builder.toString();
+	}
+
+	// =============== Properties ===============
+
+	public boolean isReady()
+	{
+		return this.ready;
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Starts the warm-up on a background thread, if enabled.
+	 */
+	public void start()
+	{
+		if (this.ready)
+		{
+			return;
+		}
+
+		final Thread thread = new Thread(this::run, "warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void run()
+	{
+		final long start = System.nanoTime();
+		int runs = 0;
+		try
+		{
+			final List<CodeGenData> examples = loadExamples();
+			for (int round = 1; round <= this.rounds; round++)
+			{
+				for (int i = 0; i < examples.size(); i++)
+				{
+					final CodeGenData input = examples.get(i);
+					input.setScenarioFileName("Warmup" + i + ".md");
+					final Result result = this.runCodeGen.runUncached(input);
+					if (result.getExitCode() != 0)
+					{
+						LOGGER.warn("warm-up example " + i + " failed with exit code " + result.getExitCode());
+					}
+					runs++;
+				}
+			}
+		}
+		catch (Exception ex)
+		{
+			LOGGER.error("warm-up failed", ex);
+		}
+		finally
+		{
+			// a failed warm-up must not keep the instance out of service forever
+			this.ready = true;
+			LOGGER.info("warm-up finished after " + runs + " runs in " + (System.nanoTime() - start) / 1_000_000
+			            + " ms");
+		}
+	}
+
+	public Object handleReady(Request req, Response res)
+	{
+		res.type("application/json");
+		final boolean ready = this.ready;
+		final boolean healthy = this.runCodeGen.isHealthy();
+		if (!ready || !healthy)
+		{
+			res.status(503);
+		}
+		return new JSONObject().put("ready", ready).put("healthy", healthy).toString();
+	}
+}
@@ -0,0 +1,140 @@
+package org.fulib.webapp.tool;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The main class of the worker processes started by {@link WorkerPool}.
+ * Runs the jobs it receives on stdin one after another with {@link Tools#genCompileRun}
+ * and reports the results on stdout, see {@link WorkerProtocol}.
+ * Anything else printed to {@link System#out}, e.g. by generated code, goes to stderr instead.
+ * Exits when stdin is closed.
+ */
+public class CodeGenWorker
+{
+	public static void main(String[] args) throws Exception
+	{
+		final DataOutputStream out = new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		System.setOut(System.err);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+		final SandboxClassLoaders sandbox = new SandboxClassLoaders();
+		final TestExecutor testExecutor = new TestExecutor();
+		final RunLimits limits = new RunLimits();
+		try (final JavaCompilerService compiler = new JavaCompilerService())
+		{
+			out.writeByte(WorkerProtocol.READY);
+			out.flush();
+
+			while (true)
+			{
+				final String[] job;
+				try
+				{
+					job = WorkerProtocol.readJob(in);
+				}
+				catch (EOFException ex)
+				{
+					break;
+				}
+
+				final int exitCode = run(compiler, sandbox, testExecutor, limits, out, job);
+				synchronized (out)
+				{
+					out.writeByte(WorkerProtocol.END);
+					out.writeInt(exitCode);
+					out.writeLong(getRetainedHeap());
+					out.flush();
+				}
+			}
+		}
+		finally
+		{
+			limits.shutdown();
+			testExecutor.shutdown();
+		}
+	}
+
+	private static int run(JavaCompilerService compiler, SandboxClassLoaders sandbox, TestExecutor testExecutor,
+		RunLimits limits, DataOutputStream out, String[] job) throws Exception
+	{
+		final OutputStream output = new BufferedOutputStream(WorkerProtocol.outputFrames(out));
+		final PipelineListener listener = new PipelineListener()
+		{
+			@Override
+			public void stageStarted(Stage stage)
+			{
+				send(WorkerProtocol.STAGE_STARTED, stage, 0);
+			}
+
+			@Override
+			public void stageAllocated(Stage stage, long bytes)
+			{
+				send(WorkerProtocol.STAGE_ALLOCATED, stage, bytes);
+			}
+
+			@Override
+			public void stageFinished(Stage stage, int exitCode)
+			{
+				send(WorkerProtocol.STAGE_FINISHED, stage, exitCode);
+			}
+
+			private void send(byte type, Stage stage, long value)
+			{
+				try
+				{
+					// keep the output in order with the stage
+					output.flush();
+					synchronized (out)
+					{
+						out.writeByte(type);
+						out.writeByte(stage.ordinal());
+						if (type == WorkerProtocol.STAGE_FINISHED)
+						{
+							out.writeInt((int) value);
+						}
+						else if (type == WorkerProtocol.STAGE_ALLOCATED)
+						{
+							out.writeLong(value);
+						}
+						out.flush();
+					}
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}
+		};
+
+		final int exitCode = Tools.genCompileRun(compiler, sandbox, testExecutor.getComputer(), limits, listener,
+		                                         output, output, Path.of(job[0]), Path.of(job[1]), Path.of(job[2]),
+		                                         Arrays.copyOfRange(job, 3, job.length));
+		output.flush();
+		return exitCode;
+	}
+
+	/**
+	 * @return the bytes of heap in use after the last GC, i.e. without garbage, or the current usage if unknown
+	 */
+	private static long getRetainedHeap()
+	{
+		long retained = 0;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() != MemoryType.HEAP)
+			{
+				continue;
+			}
+			final MemoryUsage usage = pool.getCollectionUsage();
+			retained += (usage != null ? usage : pool.getUsage()).getUsed();
+		}
+		return retained;
+	}
+}
@@ -0,0 +1,22 @@
+package org.fulib.webapp.tool;
+
+public class Env
+{
+	public static int getInt(String name, int defaultValue)
+	{
+		final String value = System.getenv(name);
+		return value != null && !value.isEmpty() ? Integer.parseInt(value) : defaultValue;
+	}
+
+	public static long getLong(String name, long defaultValue)
+	{
+		final String value = System.getenv(name);
+		return value != null && !value.isEmpty() ? Long.parseLong(value) : defaultValue;
+	}
+
+	public static boolean getBoolean(String name)
+	{
+		final String value = System.getenv(name);
+		return value != null && !value.isEmpty() && !"false".equalsIgnoreCase(value) && !"0".equals(value);
+	}
+}
@@ -0,0 +1,446 @@
+package org.fulib.webapp.tool;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.Trees;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.tools.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A long-lived javac front end.
+ * All compilations share one {@link StandardJavaFileManager} for the platform modules and library class path,
+ * so the JDK image and dependency jars are opened and indexed only once.
+ * Each compilation layers its own sources and in-memory classes on top of it.
+ */
+@Singleton
+public class JavaCompilerService implements AutoCloseable
+{
+	// =============== Constants ===============
+
+	private static final List<String> OPTIONS = Collections.singletonList("-proc:none");
+
+	// the packages of the platform and class path are finite, but compiled code can make javac list any package name,
+	// e.g. with an import of a package that does not exist
+	private static final int LIST_CACHE_SIZE = 4096;
+
+	// =============== Fields ===============
+
+	private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+	private final List<Path> classPath;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// set while holding the read lock and this, cleared while holding the write lock
+	private volatile SharedFileManager sharedFileManager;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public JavaCompilerService()
+	{
+		this(System.getProperty("java.class.path"));
+	}
+
+	public JavaCompilerService(String classPath)
+	{
+		this.classPath = new ArrayList<>();
+		for (final String entry : classPath.split(File.pathSeparator))
+		{
+			if (!entry.isEmpty())
+			{
+				this.classPath.add(Paths.get(entry));
+			}
+		}
+	}
+
+	// =============== Properties ===============
+
+	public List<Path> getClassPath()
+	{
+		return Collections.unmodifiableList(this.classPath);
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Compiles the given source files in memory.
+	 * The classes in {@code classPathClasses} are visible to the compiled code,
+	 * and the compiled classes are put into {@code outputClasses} (binary name to class file bytes).
+	 *
+	 * @return the javac exit code, i.e. {@code 0} on success
+	 */
+	public int compile(OutputStream err, Map<String, byte[]> classPathClasses, Map<String, byte[]> outputClasses,
+		List<Path> sourceFiles) throws IOException
+	{
+		return this.compile(err, classPathClasses, outputClasses, sourceFiles, null);
+	}
+
+	/**
+	 * Like {@link #compile(OutputStream, Map, Map, List)},
+	 * but passes each compilation unit to the given consumer (unless {@code null}) as soon as javac parsed it,
+	 * together with the source positions of its trees.
+	 */
+	public int compile(OutputStream err, Map<String, byte[]> classPathClasses, Map<String, byte[]> outputClasses,
+		List<Path> sourceFiles, BiConsumer<CompilationUnitTree, SourcePositions> parsed) throws IOException
+	{
+		final PrintWriter diagnostics = new PrintWriter(
+			new OutputStreamWriter(err != null ? err : System.err, StandardCharsets.UTF_8));
+
+		if (sourceFiles.isEmpty())
+		{
+			// same message and exit code as the command line tool
+			diagnostics.println("error: no source files");
+			diagnostics.flush();
+			return 2;
+		}
+
+		final List<JavaFileObject> units = sourceUnits(sourceFiles);
+
+		this.lock.readLock().lock();
+		try
+		{
+			final MemoryFileManager fileManager = new MemoryFileManager(this.getSharedFileManager(), classPathClasses,
+			                                                            outputClasses);
+			final JavacTask task = (JavacTask) this.compiler.getTask(diagnostics, fileManager, null, OPTIONS, null,
+			                                                         units);
+			if (parsed != null)
+			{
+				final SourcePositions positions = Trees.instance(task).getSourcePositions();
+				task.addTaskListener(new TaskListener()
+				{
+					@Override
+					public void finished(TaskEvent event)
+					{
+						if (event.getKind() == TaskEvent.Kind.PARSE)
+						{
+							parsed.accept(event.getCompilationUnit(), positions);
+						}
+					}
+				});
+			}
+			final boolean success = task.call();
+			return success ? 0 : 1;
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+			diagnostics.flush();
+		}
+	}
+
+	/**
+	 * Only parses the given source files, and passes each compilation unit to the given consumer.
+	 * Syntax errors are not reported; the trees contain error nodes instead.
+	 */
+	public void parse(List<Path> sourceFiles, BiConsumer<CompilationUnitTree, SourcePositions> parsed)
+		throws IOException
+	{
+		if (sourceFiles.isEmpty())
+		{
+			return;
+		}
+
+		final List<JavaFileObject> units = sourceUnits(sourceFiles);
+
+		this.lock.readLock().lock();
+		try
+		{
+			final MemoryFileManager fileManager = new MemoryFileManager(this.getSharedFileManager(),
+			                                                            Collections.emptyMap(), new HashMap<>());
+			final JavacTask task = (JavacTask) this.compiler.getTask(new PrintWriter(Writer.nullWriter()),
+			                                                         fileManager, null, OPTIONS, null, units);
+			final SourcePositions positions = Trees.instance(task).getSourcePositions();
+			for (final CompilationUnitTree unit : task.parse())
+			{
+				parsed.accept(unit, positions);
+			}
+		}
+		finally
+		{
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private static List<JavaFileObject> sourceUnits(List<Path> sourceFiles)
+	{
+		final List<JavaFileObject> units = new ArrayList<>(sourceFiles.size());
+		for (final Path sourceFile : sourceFiles)
+		{
+			units.add(new SourceFile(sourceFile));
+		}
+		return units;
+	}
+
+	private SharedFileManager getSharedFileManager() throws IOException
+	{
+		// called with the read lock held, so only other compilations race to create it.
+		// double-checked, so that the monitor is only taken until the first compilation created it
+		final SharedFileManager existing = this.sharedFileManager;
+		if (existing != null)
+		{
+			return existing;
+		}
+
+		synchronized (this)
+		{
+			if (this.sharedFileManager == null)
+			{
+				final StandardJavaFileManager fileManager = this.compiler.getStandardFileManager(null, null,
+				                                                                                StandardCharsets.UTF_8);
+				fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, this.classPath);
+				this.sharedFileManager = new SharedFileManager(fileManager);
+			}
+			return this.sharedFileManager;
+		}
+	}
+
+	/**
+	 * Discards the shared file manager and its index.
+	 * Waits for running compilations to finish; the next compilation re-opens the platform and class path.
+	 */
+	public void invalidate() throws IOException
+	{
+		this.lock.writeLock().lock();
+		try
+		{
+			if (this.sharedFileManager != null)
+			{
+				this.sharedFileManager.closeShared();
+				this.sharedFileManager = null;
+			}
+		}
+		finally
+		{
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.invalidate();
+	}
+
+	// =============== Classes ===============
+
+	/**
+	 * Wraps the shared file manager so that concurrent compilations can use it.
+	 * Listings of read-only locations (platform modules and library class path) are cached,
+	 * dropping the least recently used beyond {@code LIST_CACHE_SIZE} listings.
+	 * Closing it has no effect, only {@link #closeShared()} releases the underlying file manager.
+	 */
+	private static class SharedFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+	{
+		// every listing weighs 1, so the cache is bounded by the number of listings
+		private final LruCache<ListKey, List<JavaFileObject>> listCache = new LruCache<>(LIST_CACHE_SIZE,
+		                                                                                 listing -> 1);
+
+		SharedFileManager(StandardJavaFileManager fileManager)
+		{
+			super(fileManager);
+		}
+
+		@Override
+		public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+			boolean recurse) throws IOException
+		{
+			final ListKey key = new ListKey(location, packageName, kinds, recurse);
+			final List<JavaFileObject> cached = this.listCache.get(key);
+			if (cached != null)
+			{
+				return cached;
+			}
+
+			final List<JavaFileObject> result = new ArrayList<>();
+			synchronized (this)
+			{
+				super.list(location, packageName, kinds, recurse).forEach(result::add);
+			}
+			final List<JavaFileObject> unmodifiable = Collections.unmodifiableList(result);
+			this.listCache.put(key, unmodifiable);
+			return unmodifiable;
+		}
+
+		@Override
+		public synchronized String inferBinaryName(Location location, JavaFileObject file)
+		{
+			return super.inferBinaryName(location, file);
+		}
+
+		@Override
+		public synchronized boolean isSameFile(FileObject a, FileObject b)
+		{
+			return super.isSameFile(a, b);
+		}
+
+		@Override
+		public synchronized boolean handleOption(String current, Iterator<String> remaining)
+		{
+			return super.handleOption(current, remaining);
+		}
+
+		@Override
+		public synchronized boolean hasLocation(Location location)
+		{
+			return super.hasLocation(location);
+		}
+
+		@Override
+		public synchronized JavaFileObject getJavaFileForInput(Location location, String className,
+			JavaFileObject.Kind kind) throws IOException
+		{
+			return super.getJavaFileForInput(location, className, kind);
+		}
+
+		@Override
+		public synchronized FileObject getFileForInput(Location location, String packageName, String relativeName)
+			throws IOException
+		{
+			return super.getFileForInput(location, packageName, relativeName);
+		}
+
+		@Override
+		public synchronized ClassLoader getClassLoader(Location location)
+		{
+			return super.getClassLoader(location);
+		}
+
+		@Override
+		public synchronized Location getLocationForModule(Location location, String moduleName) throws IOException
+		{
+			return super.getLocationForModule(location, moduleName);
+		}
+
+		@Override
+		public synchronized Location getLocationForModule(Location location, JavaFileObject fo) throws IOException
+		{
+			return super.getLocationForModule(location, fo);
+		}
+
+		@Override
+		public synchronized String inferModuleName(Location location) throws IOException
+		{
+			return super.inferModuleName(location);
+		}
+
+		@Override
+		public synchronized Iterable<Set<Location>> listLocationsForModules(Location location) throws IOException
+		{
+			final List<Set<Location>> result = new ArrayList<>();
+			super.listLocationsForModules(location).forEach(result::add);
+			return result;
+		}
+
+		@Override
+		public synchronized boolean contains(Location location, FileObject fo) throws IOException
+		{
+			return super.contains(location, fo);
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+
+		synchronized void closeShared() throws IOException
+		{
+			this.listCache.clear();
+			super.close();
+		}
+	}
+
+	private static final class ListKey
+	{
+		private final JavaFileManager.Location location;
+		private final String packageName;
+		private final Set<JavaFileObject.Kind> kinds;
+		private final boolean recurse;
+
+		ListKey(JavaFileManager.Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse)
+		{
+			this.location = location;
+			this.packageName = packageName;
+			this.kinds = EnumSet.copyOf(kinds);
+			this.recurse = recurse;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof ListKey))
+			{
+				return false;
+			}
+			final ListKey that = (ListKey) o;
+			return this.recurse == that.recurse && this.location.equals(that.location) && this.packageName.equals(
+				that.packageName) && this.kinds.equals(that.kinds);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.location, this.packageName, this.kinds, this.recurse);
+		}
+	}
+
+	/**
+	 * A generated source file that is read by the compilation that uses it,
+	 * rather than through the shared file manager and its content cache.
+	 * The content is kept, so that consumers of the parsed trees can use it without reading the file again.
+	 */
+	private static class SourceFile extends SimpleJavaFileObject
+	{
+		private final Path path;
+		private String content;
+
+		SourceFile(Path path)
+		{
+			super(path.toUri(), Kind.SOURCE);
+			this.path = path;
+		}
+
+		@Override
+		public String getName()
+		{
+			return this.path.toString();
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException
+		{
+			if (this.content == null)
+			{
+				this.content = new String(Files.readAllBytes(this.path), StandardCharsets.UTF_8);
+			}
+			return this.content;
+		}
+
+		@Override
+		public InputStream openInputStream() throws IOException
+		{
+			return Files.newInputStream(this.path);
+		}
+	}
+}
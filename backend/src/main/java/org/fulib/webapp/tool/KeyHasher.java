@@ -0,0 +1,86 @@
+package org.fulib.webapp.tool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes cache keys as the hex-encoded SHA-256 hash of a sequence of values.
+ * Every value is prefixed with its length, so that ("ab", "c") and ("a", "bc") give different keys.
+ */
+public class KeyHasher
+{
+	// =============== Fields ===============
+
+	private final MessageDigest digest;
+
+	// =============== Constructors ===============
+
+	public KeyHasher()
+	{
+		try
+		{
+			this.digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Adds a number, e.g. the count of the values that follow.
+	 */
+	public KeyHasher add(int value)
+	{
+		this.digest.update(ByteBuffer.allocate(4).putInt(value).array());
+		return this;
+	}
+
+	public KeyHasher add(byte[] bytes)
+	{
+		this.add(bytes.length);
+		this.digest.update(bytes);
+		return this;
+	}
+
+	/**
+	 * Adds a string, where {@code null} is distinguished from the empty string.
+	 */
+	public KeyHasher add(String value)
+	{
+		if (value == null)
+		{
+			return this.add(-1);
+		}
+		return this.add(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Adds the entries of the map as strings, sorted by key,
+	 * so that the hash does not depend on the iteration order of the map.
+	 */
+	public KeyHasher add(Map<?, ?> map)
+	{
+		for (final Map.Entry<?, ?> entry : new TreeMap<>(map).entrySet())
+		{
+			this.add(entry.getKey().toString());
+			this.add(entry.getValue().toString());
+		}
+		return this;
+	}
+
+	/**
+	 * @return the hash of all values added so far, as 64 lowercase hex digits
+	 */
+	public String hash()
+	{
+		return HexFormat.of().formatHex(this.digest.digest());
+	}
+}
@@ -0,0 +1,157 @@
+package org.fulib.webapp.tool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe LRU cache that bounds the total weight of its values, e.g. their size in bytes,
+ * and counts hits, misses and evictions.
+ * A value that weighs more than the whole cache is not stored, as it would only evict everything else.
+ *
+ * @param <K>
+ * 	the type of the keys
+ * @param <V>
+ * 	the type of the values
+ */
+public class LruCache<K, V>
+{
+	// =============== Fields ===============
+
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+
+	// in access order, so iteration starts with the least recently used entry
+	private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+	private long weight; // guarded by this
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	// =============== Constructors ===============
+
+	/**
+	 * @param maxWeight
+	 * 	the total weight of all values, {@code 0} disables the cache
+	 * @param weigher
+	 * 	computes the weight of a value, which must not change while it is cached
+	 */
+	public LruCache(long maxWeight, ToLongFunction<? super V> weigher)
+	{
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	// =============== Properties ===============
+
+	public boolean isEnabled()
+	{
+		return this.maxWeight > 0;
+	}
+
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
+
+	public long getEvictions()
+	{
+		return this.evictions.get();
+	}
+
+	public synchronized int getSize()
+	{
+		return this.entries.size();
+	}
+
+	public synchronized long getWeight()
+	{
+		return this.weight;
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @return the cached value, or {@code null} if there is none
+	 */
+	public V get(K key)
+	{
+		return this.get(key, value -> true);
+	}
+
+	/**
+	 * @param isValid
+	 * 	checks if a cached value is still usable, e.g. if it did not expire.
+	 * 	It is called without holding the lock of the cache. Values that are no longer valid are evicted.
+	 *
+	 * @return the cached value, or {@code null} if there is none or it is no longer valid
+	 */
+	public V get(K key, Predicate<? super V> isValid)
+	{
+		final V value;
+		synchronized (this)
+		{
+			value = this.entries.get(key);
+		}
+
+		if (value != null)
+		{
+			if (isValid.test(value))
+			{
+				this.hits.incrementAndGet();
+				return value;
+			}
+			this.evict(key, value);
+		}
+		this.misses.incrementAndGet();
+		return null;
+	}
+
+	private synchronized void evict(K key, V value)
+	{
+		// unless it was replaced in the meantime
+		if (this.entries.remove(key, value))
+		{
+			this.weight -= this.weigher.applyAsLong(value);
+			this.evictions.incrementAndGet();
+		}
+	}
+
+	public synchronized void put(K key, V value)
+	{
+		final long weight = this.weigher.applyAsLong(value);
+		if (weight > this.maxWeight)
+		{
+			return;
+		}
+
+		final V old = this.entries.put(key, value);
+		if (old != null)
+		{
+			this.weight -= this.weigher.applyAsLong(old);
+		}
+		this.weight += weight;
+
+		final Iterator<V> iterator = this.entries.values().iterator();
+		while (this.weight > this.maxWeight)
+		{
+			this.weight -= this.weigher.applyAsLong(iterator.next());
+			iterator.remove();
+			this.evictions.incrementAndGet();
+		}
+	}
+
+	public synchronized void clear()
+	{
+		this.entries.clear();
+		this.weight = 0;
+	}
+}
@@ -0,0 +1,76 @@
+package org.fulib.webapp.tool;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * A class loader that defines classes from in-memory class file bytes, as produced by {@link MemoryFileManager}.
+ * Closing the loader releases the class file bytes and makes it refuse to define further classes,
+ * so that it and its classes can be unloaded as soon as the classes that were already loaded are unreachable.
+ */
+public class MemoryClassLoader extends ClassLoader implements Closeable
+{
+	static
+	{
+		registerAsParallelCapable();
+	}
+
+	// =============== Fields ===============
+
+	private volatile Map<String, byte[]> classes;
+	private final Runnable onClose;
+
+	// =============== Constructors ===============
+
+	public MemoryClassLoader(ClassLoader parent, Map<String, byte[]> classes)
+	{
+		this(parent, classes, null);
+	}
+
+	/**
+	 * @param onClose
+	 * 	called once when the loader is closed, may be {@code null}
+	 */
+	public MemoryClassLoader(ClassLoader parent, Map<String, byte[]> classes, Runnable onClose)
+	{
+		super(parent);
+		this.classes = classes;
+		this.onClose = onClose;
+	}
+
+	// =============== Methods ===============
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException
+	{
+		final Map<String, byte[]> classes = this.classes;
+		if (classes == null)
+		{
+			throw new ClassNotFoundException(name + " (class loader is closed)");
+		}
+
+		final byte[] bytes = classes.get(name);
+		if (bytes == null)
+		{
+			throw new ClassNotFoundException(name);
+		}
+		return this.defineClass(name, bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (this.classes == null)
+			{
+				return;
+			}
+			this.classes = null;
+		}
+		if (this.onClose != null)
+		{
+			this.onClose.run();
+		}
+	}
+}
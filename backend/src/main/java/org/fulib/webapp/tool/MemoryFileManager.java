@@ -0,0 +1,140 @@
+package org.fulib.webapp.tool;
+
+import javax.tools.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A file manager that writes compiled classes to a map instead of the file system,
+ * and optionally makes previously compiled in-memory classes available on the class path.
+ */
+public class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager>
+{
+	// =============== Fields ===============
+
+	private final Map<String, byte[]> classPathClasses;
+	private final Map<String, byte[]> outputClasses;
+
+	// =============== Constructors ===============
+
+	public MemoryFileManager(JavaFileManager fileManager, Map<String, byte[]> classPathClasses,
+		Map<String, byte[]> outputClasses)
+	{
+		super(fileManager);
+		this.classPathClasses = classPathClasses;
+		this.outputClasses = outputClasses;
+	}
+
+	// =============== Methods ===============
+
+	@Override
+	public boolean hasLocation(Location location)
+	{
+		return location == StandardLocation.CLASS_OUTPUT || super.hasLocation(location);
+	}
+
+	@Override
+	public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+		FileObject sibling)
+	{
+		return new MemoryClassFile(className, null);
+	}
+
+	@Override
+	public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+		boolean recurse) throws IOException
+	{
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+		if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)
+		    || this.classPathClasses.isEmpty())
+		{
+			return files;
+		}
+
+		final List<JavaFileObject> result = new ArrayList<>();
+		files.forEach(result::add);
+
+		final String prefix = packageName.isEmpty() ? "" : packageName + '.';
+		for (final Map.Entry<String, byte[]> entry : this.classPathClasses.entrySet())
+		{
+			final String className = entry.getKey();
+			if (!className.startsWith(prefix))
+			{
+				continue;
+			}
+			if (!recurse && className.indexOf('.', prefix.length()) >= 0)
+			{
+				continue;
+			}
+			result.add(new MemoryClassFile(className, entry.getValue()));
+		}
+		return result;
+	}
+
+	@Override
+	public String inferBinaryName(Location location, JavaFileObject file)
+	{
+		if (file instanceof MemoryClassFile)
+		{
+			return ((MemoryClassFile) file).getClassName();
+		}
+		return super.inferBinaryName(location, file);
+	}
+
+	@Override
+	public boolean isSameFile(FileObject a, FileObject b)
+	{
+		if (a instanceof MemoryClassFile || b instanceof MemoryClassFile)
+		{
+			return a.equals(b);
+		}
+		return super.isSameFile(a, b);
+	}
+
+	// =============== Classes ===============
+
+	private class MemoryClassFile extends SimpleJavaFileObject
+	{
+		private final String className;
+		private final byte[] bytes;
+
+		MemoryClassFile(String className, byte[] bytes)
+		{
+			super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		String getClassName()
+		{
+			return this.className;
+		}
+
+		@Override
+		public InputStream openInputStream()
+		{
+			return new ByteArrayInputStream(this.bytes);
+		}
+
+		@Override
+		public OutputStream openOutputStream()
+		{
+			return new ByteArrayOutputStream()
+			{
+				@Override
+				public void close()
+				{
+					MemoryFileManager.this.outputClasses.put(MemoryClassFile.this.className, this.toByteArray());
+				}
+			};
+		}
+	}
+}
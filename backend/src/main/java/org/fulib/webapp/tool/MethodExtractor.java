@@ -0,0 +1,225 @@
+package org.fulib.webapp.tool;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.SourcePositions;
+import org.fulib.webapp.tool.model.Method;
+
+import javax.lang.model.element.Modifier;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Extracts the public methods of the generated classes from their syntax trees.
+ * The trees come from the compilation in the pipeline (see {@link #extractor(boolean)}),
+ * so the sources are neither read nor parsed again.
+ * Sources that were not compiled, e.g. because an earlier stage failed or the pipeline ran in a worker process,
+ * are parsed when the methods are requested.
+ * Not thread-safe; an extractor belongs to one run.
+ */
+public class MethodExtractor
+{
+	// =============== Fields ===============
+
+	private final Map<URI, List<Method>> methods = new HashMap<>();
+
+	// =============== Methods ===============
+
+	/**
+	 * @param model
+	 * 	whether the sources are model classes, whose property accessors and default methods are skipped
+	 *
+	 * @return a consumer for {@link JavaCompilerService#compile(java.io.OutputStream, Map, Map, List, BiConsumer)}
+	 */
+	public BiConsumer<CompilationUnitTree, SourcePositions> extractor(boolean model)
+	{
+		return (unit, positions) -> this.methods.put(unit.getSourceFile().toUri(), extract(unit, positions, model));
+	}
+
+	/**
+	 * @return the methods extracted from the file so far, or {@code null} if it was not parsed yet
+	 */
+	List<Method> getExtracted(Path file)
+	{
+		return this.methods.get(file.toUri());
+	}
+
+	/**
+	 * Sets the methods of a file that was not parsed, e.g. because its compiled classes were cached.
+	 */
+	void putExtracted(Path file, List<Method> methods)
+	{
+		this.methods.put(file.toUri(), methods);
+	}
+
+	/**
+	 * @return the methods of the test sources, then those of the model sources, in the order of the files
+	 */
+	public List<Method> getMethods(JavaCompilerService compiler, WorkspaceScanner workspace) throws IOException
+	{
+		final List<Method> result = new ArrayList<>();
+		this.collect(compiler, workspace.getTestSources(), false, result);
+		this.collect(compiler, workspace.getModelSources(), true, result);
+		return result;
+	}
+
+	private void collect(JavaCompilerService compiler, List<Path> files, boolean model, List<Method> result)
+		throws IOException
+	{
+		final List<Path> missing = new ArrayList<>();
+		for (final Path file : files)
+		{
+			if (!this.methods.containsKey(file.toUri()))
+			{
+				missing.add(file);
+			}
+		}
+		compiler.parse(missing, this.extractor(model));
+
+		for (final Path file : files)
+		{
+			result.addAll(this.methods.getOrDefault(file.toUri(), Collections.emptyList()));
+		}
+	}
+
+	static List<Method> extract(CompilationUnitTree unit, SourcePositions positions, boolean model)
+	{
+		final String source;
+		try
+		{
+			// the compiler keeps the content it parsed, see JavaCompilerService.SourceFile
+			source = unit.getSourceFile().getCharContent(true).toString();
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+
+		final List<Method> methods = new ArrayList<>();
+		for (final Tree typeDecl : unit.getTypeDecls())
+		{
+			if (!(typeDecl instanceof ClassTree))
+			{
+				continue;
+			}
+
+			final ClassTree classTree = (ClassTree) typeDecl;
+			final String className = classTree.getSimpleName().toString();
+			final Set<String> properties = model ? collectProperties(classTree) : null;
+
+			for (final Tree member : classTree.getMembers())
+			{
+				if (!(member instanceof MethodTree))
+				{
+					continue;
+				}
+
+				final MethodTree methodTree = (MethodTree) member;
+				if (methodTree.getBody() == null || !methodTree.getModifiers().getFlags().contains(Modifier.PUBLIC))
+				{
+					continue;
+				}
+
+				final String decl = declaration(unit, positions, source, methodTree);
+				if (decl == null || model && RunCodeGen.shouldSkip(decl, properties))
+				{
+					continue;
+				}
+
+				final Method method = new Method();
+				method.setClassName(className);
+				method.setName(decl);
+				method.setBody(body(unit, positions, source, methodTree.getBody()));
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+
+	/**
+	 * @return the values of the {@code PROPERTY_} constants of the class
+	 */
+	private static Set<String> collectProperties(ClassTree classTree)
+	{
+		final Set<String> properties = new HashSet<>();
+		for (final Tree member : classTree.getMembers())
+		{
+			if (!(member instanceof VariableTree))
+			{
+				continue;
+			}
+
+			final VariableTree variable = (VariableTree) member;
+			final ExpressionTree initializer = variable.getInitializer();
+			if (variable.getName().toString().startsWith("PROPERTY_") && initializer instanceof LiteralTree
+			    && ((LiteralTree) initializer).getValue() instanceof String)
+			{
+				properties.add((String) ((LiteralTree) initializer).getValue());
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * @return the declaration between the modifiers and the end of the parameter list, e.g. {@code void test()},
+	 * with whitespace collapsed, or {@code null} if the positions are not available
+	 */
+	private static String declaration(CompilationUnitTree unit, SourcePositions positions, String source,
+		MethodTree methodTree)
+	{
+		final long start = positions.getEndPosition(unit, methodTree.getModifiers());
+		final long bodyStart = positions.getStartPosition(unit, methodTree.getBody());
+		if (start < 0 || bodyStart < start)
+		{
+			return null;
+		}
+
+		final String header = source.substring((int) start, (int) bodyStart);
+		// drops the throws clause
+		final int end = header.lastIndexOf(')');
+		if (end < 0)
+		{
+			return null;
+		}
+		return header.substring(0, end + 1).trim().replaceAll("\\s+", " ");
+	}
+
+	/**
+	 * @return the lines between the braces of the body without their common indentation, omitting blank lines.
+	 * For generated code, that is the same as removing the six spaces of fulib's formatting.
+	 */
+	private static String body(CompilationUnitTree unit, SourcePositions positions, String source, BlockTree body)
+	{
+		final long start = positions.getStartPosition(unit, body);
+		final long end = positions.getEndPosition(unit, body);
+		if (start < 0 || end <= start + 1)
+		{
+			return "";
+		}
+
+		final String[] lines = source.substring((int) start + 1, (int) end - 1).split("\r?\n");
+
+		int indent = Integer.MAX_VALUE;
+		for (final String line : lines)
+		{
+			if (!line.isBlank())
+			{
+				indent = Math.min(indent, line.length() - line.stripLeading().length());
+			}
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		for (final String line : lines)
+		{
+			if (!line.isBlank())
+			{
+				final String trimmed = line.stripTrailing();
+				builder.append(trimmed, indent, trimmed.length()).append('\n');
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,188 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.Method;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of compiled model classes, keyed by a hash of the generated model sources and the class path.
+ * Different scenarios often generate the same model, e.g. the classes of an assignment,
+ * so a run whose model is cached skips compiling it and compiles the tests against the cached classes.
+ * The methods extracted from the model sources and the output of the compiler, e.g. warnings,
+ * are cached along with the classes, so that a run prints the same output whether its model is cached or not.
+ * Configured with the {@code FULIB_MODEL_CACHE_BYTES} environment variable
+ * (total size of the cached class files, {@code 0} disables the cache).
+ */
+@Singleton
+public class ModelCache
+{
+	// =============== Constants ===============
+
+	private static final long DEFAULT_MAX_BYTES = 64 << 20;
+
+	// =============== Fields ===============
+
+	private final LruCache<String, Entry> entries;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public ModelCache()
+	{
+		this(Env.getLong("FULIB_MODEL_CACHE_BYTES", DEFAULT_MAX_BYTES));
+	}
+
+	ModelCache(long maxBytes)
+	{
+		this.entries = new LruCache<>(maxBytes, entry -> entry.bytes);
+	}
+
+	// =============== Properties ===============
+
+	public boolean isEnabled()
+	{
+		return this.entries.isEnabled();
+	}
+
+	public long getHits()
+	{
+		return this.entries.getHits();
+	}
+
+	public long getMisses()
+	{
+		return this.entries.getMisses();
+	}
+
+	public long getEvictions()
+	{
+		return this.entries.getEvictions();
+	}
+
+	public int getSize()
+	{
+		return this.entries.getSize();
+	}
+
+	public long getBytes()
+	{
+		return this.entries.getWeight();
+	}
+
+	// =============== Static Methods ===============
+
+	/**
+	 * @param sources
+	 * 	the model sources, sorted
+	 */
+	public static String key(List<Path> classPath, Path modelSrcDir, List<Path> sources) throws IOException
+	{
+		final KeyHasher hasher = new KeyHasher();
+
+		hasher.add(classPath.size());
+		for (final Path entry : classPath)
+		{
+			hasher.add(entry.toString());
+		}
+
+		// the relative paths, because the run directories differ
+		hasher.add(sources.size());
+		for (final Path source : sources)
+		{
+			hasher.add(modelSrcDir.relativize(source).toString());
+			hasher.add(Files.readAllBytes(source));
+		}
+
+		return hasher.hash();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param key
+	 * 	the cache key, see {@link #key(List, Path, List)}
+	 *
+	 * @return the cached model, or {@code null} if there is none
+	 */
+	public Entry get(String key)
+	{
+		return this.entries.get(key);
+	}
+
+	public void put(String key, Entry entry)
+	{
+		this.entries.put(key, entry);
+	}
+
+	public void clear()
+	{
+		this.entries.clear();
+	}
+
+	// =============== Classes ===============
+
+	/**
+	 * The classes of a model, the methods of its sources by path relative to {@code model_src},
+	 * and the output of the compiler.
+	 * Sources that were not parsed when the model was compiled have no methods here.
+	 */
+	public static final class Entry
+	{
+		private final Map<String, byte[]> classes;
+		private final Map<String, List<Method>> methods;
+		private final String output;
+		private final String modelSrcDir;
+		private final long bytes;
+
+		/**
+		 * @param output
+		 * 	the output of the compiler, which names the sources by their path in {@code modelSrcDir}
+		 * @param modelSrcDir
+		 * 	the {@code model_src} directory of the run that compiled the model
+		 */
+		public Entry(Map<String, byte[]> classes, Map<String, List<Method>> methods, String output,
+			Path modelSrcDir)
+		{
+			this.classes = Collections.unmodifiableMap(new HashMap<>(classes));
+			this.methods = Collections.unmodifiableMap(new HashMap<>(methods));
+			this.output = output;
+			this.modelSrcDir = modelSrcDir.toString();
+
+			long bytes = output.length();
+			for (final byte[] classFile : classes.values())
+			{
+				bytes += classFile.length;
+			}
+			this.bytes = bytes;
+		}
+
+		public Map<String, byte[]> getClasses()
+		{
+			return this.classes;
+		}
+
+		public Map<String, List<Method>> getMethods()
+		{
+			return this.methods;
+		}
+
+		/**
+		 * @param modelSrcDir
+		 * 	the {@code model_src} directory of the run that uses the cached model
+		 *
+		 * @return the output of the compiler, as if it had compiled the sources in {@code modelSrcDir}
+		 */
+		public String getOutput(Path modelSrcDir)
+		{
+			return this.output.isEmpty() ? this.output : this.output.replace(this.modelSrcDir, modelSrcDir.toString());
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package org.fulib.webapp.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Collects tool output with a hard size limit.
+ * Occurrences of a path are replaced while the output is written, even if they span multiple writes,
+ * and every completed line is passed to a consumer, so the output can be streamed to a client.
+ * Output beyond the limit is dropped and a note is appended instead.
+ * The output is cut at a character boundary, so that the kept bytes remain valid UTF-8.
+ */
+public class OutputSink extends OutputStream
+{
+	// =============== Fields ===============
+
+	private final int limit;
+	private final byte[] pattern;
+	private final byte[] replacement;
+	private final int[] failure;
+	private final Consumer<String> lineConsumer;
+
+	private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+	private final byte[] single = new byte[1];
+
+	private int matched; // number of bytes matching the beginning of the pattern
+	private long dropped;
+	private long written;
+
+	// =============== Constructors ===============
+
+	/**
+	 * @param limit
+	 * 	the maximum number of bytes to keep
+	 * @param search
+	 * 	the text to replace, must not be empty
+	 * @param replacement
+	 * 	the replacement text
+	 * @param lineConsumer
+	 * 	receives every completed line (without the line terminator), up to the limit
+	 */
+	public OutputSink(int limit, String search, String replacement, Consumer<String> lineConsumer)
+	{
+		this.limit = limit;
+		this.pattern = search.getBytes(StandardCharsets.UTF_8);
+		this.replacement = replacement.getBytes(StandardCharsets.UTF_8);
+		this.lineConsumer = lineConsumer;
+
+		// Knuth-Morris-Pratt failure function
+		this.failure = new int[this.pattern.length];
+		for (int i = 1, k = 0; i < this.pattern.length; i++)
+		{
+			while (k > 0 && this.pattern[i] != this.pattern[k])
+			{
+				k = this.failure[k - 1];
+			}
+			if (this.pattern[i] == this.pattern[k])
+			{
+				k++;
+			}
+			this.failure[i] = k;
+		}
+	}
+
+	// =============== Properties ===============
+
+	public boolean isTruncated()
+	{
+		return this.dropped > 0;
+	}
+
+	/**
+	 * @return the number of bytes written to this sink so far, before replacement and truncation
+	 */
+	public synchronized long getWritten()
+	{
+		return this.written;
+	}
+
+	// =============== Methods ===============
+
+	@Override
+	public synchronized void write(int b)
+	{
+		this.written++;
+		this.process((byte) b);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+	{
+		this.written += len;
+
+		final int end = off + len;
+		int i = off;
+		while (i < end)
+		{
+			if (this.matched == 0)
+			{
+				// bytes before the next possible start of a match are emitted as a whole
+				final int start = this.indexOfFirst(b, i, end);
+				this.emit(b, i, start - i);
+				i = start;
+				if (i == end)
+				{
+					break;
+				}
+			}
+			this.process(b[i++]);
+		}
+	}
+
+	private int indexOfFirst(byte[] b, int from, int end)
+	{
+		final byte first = this.pattern[0];
+		for (int i = from; i < end; i++)
+		{
+			if (b[i] == first)
+			{
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private void process(byte value)
+	{
+		while (this.matched > 0 && this.pattern[this.matched] != value)
+		{
+			// the bytes that can no longer be part of a match are released
+			final int fallback = this.failure[this.matched - 1];
+			this.emit(this.pattern, 0, this.matched - fallback);
+			this.matched = fallback;
+		}
+		if (this.pattern[this.matched] == value)
+		{
+			this.matched++;
+			if (this.matched == this.pattern.length)
+			{
+				this.emit(this.replacement, 0, this.replacement.length);
+				this.matched = 0;
+			}
+			return;
+		}
+		this.single[0] = value;
+		this.emit(this.single, 0, 1);
+	}
+
+	private void emit(byte[] bytes, int off, int len)
+	{
+		// once truncated, nothing is kept anymore, even if cutting the last character made room
+		final int kept = this.dropped > 0 ? 0 : Math.min(len, Math.max(this.limit - this.content.size(), 0));
+		final boolean truncating = this.dropped == 0 && kept < len;
+		this.dropped += len - kept;
+		this.content.write(bytes, off, kept);
+
+		final int end = off + kept;
+		int lineStart = off;
+		for (int i = off; i < end; i++)
+		{
+			if (bytes[i] == '\n')
+			{
+				this.line.write(bytes, lineStart, i - lineStart);
+				this.lineConsumer.accept(this.line.toString(StandardCharsets.UTF_8));
+				this.line.reset();
+				lineStart = i + 1;
+			}
+		}
+		this.line.write(bytes, lineStart, end - lineStart);
+
+		if (truncating)
+		{
+			this.cutIncompleteCharacter();
+		}
+	}
+
+	/**
+	 * Drops the bytes of a character that the limit cut in two, as they would decode to U+FFFD.
+	 * As they are not line terminators, they are all in the last, incomplete line.
+	 */
+	private void cutIncompleteCharacter()
+	{
+		final byte[] bytes = this.content.toByteArray();
+		final int cut = bytes.length - completeLength(bytes);
+		if (cut == 0)
+		{
+			return;
+		}
+
+		this.content.reset();
+		this.content.write(bytes, 0, bytes.length - cut);
+
+		final byte[] lineBytes = this.line.toByteArray();
+		this.line.reset();
+		this.line.write(lineBytes, 0, lineBytes.length - cut);
+
+		this.dropped += cut;
+	}
+
+	/**
+	 * @return the length of the UTF-8 bytes without an incomplete character at the end
+	 */
+	private static int completeLength(byte[] bytes)
+	{
+		final int length = bytes.length;
+		// the last character starts at most 3 continuation bytes (10xxxxxx) before the end
+		int start = length - 1;
+		while (start >= 0 && length - start < 4 && (bytes[start] & 0xC0) == 0x80)
+		{
+			start--;
+		}
+		if (start < 0)
+		{
+			return length;
+		}
+
+		final int lead = bytes[start] & 0xFF;
+		final int charLength = lead < 0xC0 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+		return length - start < charLength ? start : length;
+	}
+
+	/**
+	 * Releases a pending partial match and the last incomplete line.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		this.emit(this.pattern, 0, this.matched);
+		this.matched = 0;
+
+		if (this.line.size() > 0)
+		{
+			this.lineConsumer.accept(this.line.toString(StandardCharsets.UTF_8));
+			this.line.reset();
+		}
+		if (this.dropped > 0)
+		{
+			this.lineConsumer.accept(this.getTruncationNote());
+		}
+	}
+
+	private String getTruncationNote()
+	{
+		return "(output truncated, " + this.dropped + " more bytes)";
+	}
+
+	/**
+	 * @return the collected output, with a note about truncation if the limit was exceeded
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		final String text = this.content.toString(StandardCharsets.UTF_8);
+		if (this.dropped == 0)
+		{
+			return text;
+		}
+		return text + "\n" + this.getTruncationNote() + "\n";
+	}
+}
@@ -0,0 +1,97 @@
+package org.fulib.webapp.tool;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Like JUnit's {@code ParallelComputer} with parallel methods, but runs the test methods on a shared, bounded pool.
+ * Test classes still run one after another, so that only test methods occupy pool threads
+ * and a class never waits for a pool thread while holding one.
+ * The time and memory the pool threads spend on a run count towards its {@link RunBudget}.
+ * When the run is stopped, its test methods are cancelled, see {@link TestThreadPool#cancel(Future)}.
+ */
+public class ParallelTestComputer extends Computer
+{
+	// =============== Fields ===============
+
+	private final TestThreadPool executor;
+
+	// =============== Constructors ===============
+
+	ParallelTestComputer(TestThreadPool executor)
+	{
+		this.executor = executor;
+	}
+
+	// =============== Methods ===============
+
+	@Override
+	protected Runner getRunner(RunnerBuilder builder, Class<?> testClass) throws Throwable
+	{
+		final Runner runner = super.getRunner(builder, testClass);
+		if (runner instanceof ParentRunner)
+		{
+			((ParentRunner<?>) runner).setScheduler(new PoolScheduler(this.executor));
+		}
+		return runner;
+	}
+
+	// =============== Classes ===============
+
+	private static class PoolScheduler implements RunnerScheduler
+	{
+		private final TestThreadPool executor;
+		private final List<Future<?>> futures = new ArrayList<>();
+
+		PoolScheduler(TestThreadPool executor)
+		{
+			this.executor = executor;
+		}
+
+		@Override
+		public void schedule(Runnable childStatement)
+		{
+			// the pool threads work on behalf of the run that schedules the test
+			final RunBudget budget = RunBudget.current();
+			final Runnable task = budget != null ? budget.wrap(childStatement) : childStatement;
+			this.futures.add(this.executor.submit(task));
+		}
+
+		@Override
+		public void finished()
+		{
+			try
+			{
+				for (final Future<?> future : this.futures)
+				{
+					future.get();
+				}
+			}
+			catch (InterruptedException ex)
+			{
+				for (final Future<?> future : this.futures)
+				{
+					this.executor.cancel(future);
+				}
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException ex)
+			{
+				// the child statements report their failures to the notifier, so this is a bug in JUnit
+				throw new IllegalStateException(ex.getCause());
+			}
+			finally
+			{
+				this.futures.clear();
+			}
+		}
+	}
+}
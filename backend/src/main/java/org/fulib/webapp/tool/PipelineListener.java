@@ -0,0 +1,76 @@
+package org.fulib.webapp.tool;
+
+/**
+ * Receives progress notifications from {@link Tools#genCompileRun}.
+ */
+public interface PipelineListener
+{
+	PipelineListener NONE = new PipelineListener() {};
+
+	/**
+	 * @return a listener that notifies {@code first} and then {@code second}
+	 */
+	static PipelineListener compose(PipelineListener first, PipelineListener second)
+	{
+		return new PipelineListener()
+		{
+			@Override
+			public void stageStarted(Stage stage)
+			{
+				first.stageStarted(stage);
+				second.stageStarted(stage);
+			}
+
+			@Override
+			public void stageAllocated(Stage stage, long bytes)
+			{
+				first.stageAllocated(stage, bytes);
+				second.stageAllocated(stage, bytes);
+			}
+
+			@Override
+			public void stageFinished(Stage stage, int exitCode)
+			{
+				first.stageFinished(stage, exitCode);
+				second.stageFinished(stage, exitCode);
+			}
+
+			@Override
+			public void output(String line)
+			{
+				first.output(line);
+				second.output(line);
+			}
+		};
+	}
+
+	default void stageStarted(Stage stage)
+	{
+	}
+
+	/**
+	 * Reports the bytes a stage allocated on threads other than the one that runs the pipeline.
+	 * Called before {@link #stageFinished(Stage, int)}, only for stages that hand work to other threads.
+	 */
+	default void stageAllocated(Stage stage, long bytes)
+	{
+	}
+
+	/**
+	 * @param stage
+	 * 	the stage
+	 * @param exitCode
+	 * 	the exit code of the tool that ran in this stage, or the number of failed tests
+	 */
+	default void stageFinished(Stage stage, int exitCode)
+	{
+	}
+
+	/**
+	 * @param line
+	 * 	a line of compiler or test output, without the line terminator
+	 */
+	default void output(String line)
+	{
+	}
+}
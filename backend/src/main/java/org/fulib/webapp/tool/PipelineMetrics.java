@@ -0,0 +1,208 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.metrics.MetricsRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Records latency, allocated bytes and output size per stage of the code generation pipeline,
+ * and the number of runs by the stage they failed in.
+ * Besides the {@link Stage}s, {@link RunCodeGen} records the {@link #COLLECT} and {@link #SERIALIZE} phases.
+ */
+@Singleton
+public class PipelineMetrics
+{
+	// =============== Constants ===============
+
+	public static final String COLLECT = "collect";
+	public static final String SERIALIZE = "serialize";
+	public static final String CHECK = "check";
+
+	private static final String DURATION = "fulib_codegen_stage_duration_seconds";
+	private static final String ALLOCATED = "fulib_codegen_stage_allocated_bytes";
+	private static final String OUTPUT = "fulib_codegen_stage_output_bytes";
+	private static final String RUNS = "fulib_codegen_runs_total";
+
+	private static final com.sun.management.ThreadMXBean THREADS = getThreadMXBean();
+
+	// =============== Fields ===============
+
+	private final MetricsRegistry registry;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public PipelineMetrics(MetricsRegistry registry)
+	{
+		this.registry = registry;
+	}
+
+	// =============== Static Methods ===============
+
+	/**
+	 * @return the thread bean if it supports measuring allocated bytes per thread, otherwise {@code null}
+	 */
+	static com.sun.management.ThreadMXBean getThreadMXBean()
+	{
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+			{
+				return sunBean;
+			}
+		}
+		return null;
+	}
+
+	private static long allocatedBytes()
+	{
+		return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Starts measuring a stage on the current thread.
+	 */
+	public Timer start()
+	{
+		return new Timer(System.nanoTime(), allocatedBytes());
+	}
+
+	/**
+	 * Records the latency and allocations of a stage since the timer was started on the current thread.
+	 */
+	public void finish(String stage, Timer timer)
+	{
+		this.finish(stage, timer, THREADS != null ? allocatedBytes() - timer.startAllocated : -1);
+	}
+
+	/**
+	 * Records the latency of a stage since the timer was started, and the given allocations.
+	 *
+	 * @param allocatedBytes
+	 * 	the bytes the stage allocated on all threads it used, or {@code -1} if unknown
+	 */
+	public void finish(String stage, Timer timer, long allocatedBytes)
+	{
+		final long nanos = System.nanoTime() - timer.startNanos;
+		this.registry
+			.histogram(DURATION, "Duration of code generation stages.", MetricsRegistry.DURATION_BUCKETS, "stage",
+			           stage)
+			.observe(nanos / 1e9);
+
+		if (THREADS != null && allocatedBytes >= 0)
+		{
+			this.registry
+				.histogram(ALLOCATED, "Bytes allocated by code generation stages.", MetricsRegistry.SIZE_BUCKETS,
+				           "stage", stage)
+				.observe(allocatedBytes);
+		}
+	}
+
+	public void recordOutput(String stage, long bytes)
+	{
+		this.registry
+			.histogram(OUTPUT, "Bytes of output produced by code generation stages.", MetricsRegistry.SIZE_BUCKETS,
+			           "stage", stage)
+			.observe(bytes);
+	}
+
+	/**
+	 * Counts a finished run by the class of its exit code:
+	 * {@code ok}, the id of the {@link Stage} that failed, the id of the {@link RunLimit} that was exceeded,
+	 * or {@code error} for internal errors.
+	 */
+	public void recordRun(int exitCode)
+	{
+		final RunLimit limit = RunLimit.fromExitCode(exitCode);
+		final String result;
+		if (exitCode == 0)
+		{
+			result = "ok";
+		}
+		else if (exitCode < 0)
+		{
+			result = "error";
+		}
+		else if (limit != null)
+		{
+			result = limit.getId();
+		}
+		else
+		{
+			result = Stage.values()[exitCode & 3].getId();
+		}
+		this.registry.counter(RUNS, "Code generation runs by result.", "result", result).increment();
+	}
+
+	/**
+	 * @param outputBytes
+	 * 	supplies the number of bytes the tools have written so far
+	 *
+	 * @return a listener that records every stage of {@link Tools#genCompileRun} it is notified of
+	 */
+	public PipelineListener listener(LongSupplier outputBytes)
+	{
+		return new PipelineListener()
+		{
+			private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+			private final Map<Stage, Long> outputs = new EnumMap<>(Stage.class);
+			private final Map<Stage, Long> allocations = new EnumMap<>(Stage.class);
+
+			@Override
+			public void stageStarted(Stage stage)
+			{
+				this.outputs.put(stage, outputBytes.getAsLong());
+				this.timers.put(stage, PipelineMetrics.this.start());
+			}
+
+			@Override
+			public void stageAllocated(Stage stage, long bytes)
+			{
+				this.allocations.put(stage, bytes);
+			}
+
+			@Override
+			public void stageFinished(Stage stage, int exitCode)
+			{
+				final Timer timer = this.timers.remove(stage);
+				final Long allocated = this.allocations.remove(stage);
+				if (timer == null)
+				{
+					return;
+				}
+				if (allocated != null)
+				{
+					PipelineMetrics.this.finish(stage.getId(), timer, allocated);
+				}
+				else
+				{
+					PipelineMetrics.this.finish(stage.getId(), timer);
+				}
+				PipelineMetrics.this.recordOutput(stage.getId(), outputBytes.getAsLong() - this.outputs.remove(stage));
+			}
+		};
+	}
+
+	// =============== Classes ===============
+
+	public static class Timer
+	{
+		final long startNanos;
+		final long startAllocated;
+
+		Timer(long startNanos, long startAllocated)
+		{
+			this.startNanos = startNanos;
+			this.startAllocated = startAllocated;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.Main;
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Result;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A bounded LRU cache of finished code generation results,
+ * keyed by a hash of the scenario input and the fulib library versions.
+ * Configured with the {@code FULIB_RESULT_CACHE_SIZE} (number of entries, {@code 0} disables the cache)
+ * and {@code FULIB_RESULT_CACHE_AGE} (seconds) environment variables.
+ */
+@Singleton
+public class ResultCache
+{
+	// =============== Constants ===============
+
+	private static final int DEFAULT_MAX_SIZE = 256;
+	// cached results refer to the object diagram files of the original run,
+	// so this must stay well below the time after which TempSpaceManager deletes them.
+	private static final long DEFAULT_MAX_AGE_SECONDS = 30 * 60;
+
+	// =============== Fields ===============
+
+	private final long maxAgeNanos;
+	private final LongSupplier clock;
+
+	// every entry weighs 1, so the cache is bounded by the number of entries
+	private final LruCache<String, Entry> entries;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public ResultCache()
+	{
+		this(Env.getInt("FULIB_RESULT_CACHE_SIZE", DEFAULT_MAX_SIZE),
+		     TimeUnit.SECONDS.toNanos(Env.getLong("FULIB_RESULT_CACHE_AGE", DEFAULT_MAX_AGE_SECONDS)),
+		     System::nanoTime);
+	}
+
+	ResultCache(int maxSize, long maxAgeNanos, LongSupplier clock)
+	{
+		this.maxAgeNanos = maxAgeNanos;
+		this.clock = clock;
+		this.entries = new LruCache<>(maxSize, entry -> 1);
+	}
+
+	// =============== Properties ===============
+
+	public boolean isEnabled()
+	{
+		return this.entries.isEnabled();
+	}
+
+	public long getHits()
+	{
+		return this.entries.getHits();
+	}
+
+	public long getMisses()
+	{
+		return this.entries.getMisses();
+	}
+
+	/**
+	 * @return the number of results removed because the cache was full, or because they expired or became invalid
+	 */
+	public long getEvictions()
+	{
+		return this.entries.getEvictions();
+	}
+
+	public int getSize()
+	{
+		return this.entries.getSize();
+	}
+
+	// =============== Static Methods ===============
+
+	public static String key(CodeGenData input)
+	{
+		return new KeyHasher()
+			.add(input.getScenarioText())
+			.add(input.getPackageName())
+			.add(input.getScenarioFileName())
+			.add(Main.VERSIONS)
+			.hash();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param key
+	 * 	the cache key, see {@link #key(CodeGenData)}
+	 * @param isValid
+	 * 	checks if a cached result is still usable, e.g. if its files were not deleted yet
+	 *
+	 * @return the cached result, or {@code null} if there is none, it expired or it is no longer valid
+	 */
+	public Result get(String key, Predicate<Result> isValid)
+	{
+		final Entry entry = this.entries.get(key, e -> this.isFresh(e) && isValid.test(e.result));
+		return entry != null ? entry.result : null;
+	}
+
+	private boolean isFresh(Entry entry)
+	{
+		return this.clock.getAsLong() - entry.created <= this.maxAgeNanos;
+	}
+
+	public void put(String key, Result result)
+	{
+		this.entries.put(key, new Entry(result, this.clock.getAsLong()));
+	}
+
+	public void clear()
+	{
+		this.entries.clear();
+	}
+
+	// =============== Classes ===============
+
+	private static final class Entry
+	{
+		final Result result;
+		final long created;
+
+		Entry(Result result, long created)
+		{
+			this.result = result;
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.Diagnostic;
+import org.fulib.webapp.tool.model.Diagram;
+import org.fulib.webapp.tool.model.Method;
+import org.fulib.webapp.tool.model.Result;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Writes {@link Result}s as compact JSON.
+ * Diagram content that is not held in memory is streamed from its file in chunks,
+ * base64-encoded for PNG files and escaped for text files.
+ * <p>
+ * With diagram references, object diagrams are written with their path, size and hash instead,
+ * and the client fetches them from {@code GET /api/runcodegen/:id/*}, see {@link RunFiles}.
+ * Only text diagrams up to {@code FULIB_DIAGRAM_INLINE_LIMIT} bytes (default 4 KiB) are still inlined.
+ */
+public class ResultJsonWriter
+{
+	// =============== Constants ===============
+
+	// a multiple of 3, so that base64 chunks can be concatenated without padding in between
+	private static final int BASE64_CHUNK_SIZE = 3 * 1024;
+	private static final int TEXT_CHUNK_SIZE = 4096;
+
+	private static final long INLINE_LIMIT = Env.getLong("FULIB_DIAGRAM_INLINE_LIMIT", 4096);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// =============== Fields ===============
+
+	private final Writer writer;
+	private final boolean diagramReferences;
+
+	private byte[] byteBuffer;
+	private char[] charBuffer;
+
+	// =============== Constructors ===============
+
+	public ResultJsonWriter(Writer writer)
+	{
+		this(writer, false);
+	}
+
+	public ResultJsonWriter(Writer writer, boolean diagramReferences)
+	{
+		this.writer = writer;
+		this.diagramReferences = diagramReferences;
+	}
+
+	// =============== Methods ===============
+
+	public void write(Result result) throws IOException
+	{
+		this.writer.write('{');
+		// the results of checks have no id, as nothing of them is kept to refer to
+		if (result.getId() != null)
+		{
+			this.writeProperty(Result.PROPERTY_id, result.getId());
+			this.writer.write(',');
+		}
+		this.writeKey(Result.PROPERTY_exitCode);
+		this.writer.write(Integer.toString(result.getExitCode()));
+		this.writeOptionalProperty(Result.PROPERTY_output, result.getOutput());
+		this.writeOptionalProperty(Result.PROPERTY_classDiagram, result.getClassDiagram());
+
+		this.writer.write(',');
+		this.writeKey(Result.PROPERTY_objectDiagrams);
+		this.writer.write('[');
+		boolean first = true;
+		for (final Diagram diagram : result.getObjectDiagrams())
+		{
+			if (!first)
+			{
+				this.writer.write(',');
+			}
+			first = false;
+			this.write(diagram);
+		}
+		this.writer.write(']');
+
+		this.writer.write(',');
+		this.writeKey(Result.PROPERTY_methods);
+		this.writer.write('[');
+		first = true;
+		for (final Method method : result.getMethods())
+		{
+			if (!first)
+			{
+				this.writer.write(',');
+			}
+			first = false;
+			this.write(method);
+		}
+		this.writer.write(']');
+
+		if (result.getDiagnostics() != null)
+		{
+			this.writer.write(',');
+			this.writeKey(Result.PROPERTY_diagnostics);
+			this.writer.write('[');
+			first = true;
+			for (final Diagnostic diagnostic : result.getDiagnostics())
+			{
+				if (!first)
+				{
+					this.writer.write(',');
+				}
+				first = false;
+				this.write(diagnostic);
+			}
+			this.writer.write(']');
+		}
+
+		this.writer.write('}');
+	}
+
+	public void write(Diagram diagram) throws IOException
+	{
+		this.writer.write('{');
+		this.writeProperty(Diagram.PROPERTY_name, diagram.getName());
+		this.writeOptionalProperty(Diagram.PROPERTY_path, diagram.getPath());
+		if (this.diagramReferences)
+		{
+			this.writer.write(',');
+			this.writeKey(Diagram.PROPERTY_size);
+			this.writer.write(Long.toString(diagram.getSize()));
+			this.writeOptionalProperty(Diagram.PROPERTY_hash, hash(diagram));
+			if (diagram.getName().endsWith(".png") || diagram.getSize() > INLINE_LIMIT)
+			{
+				this.writer.write('}');
+				return;
+			}
+		}
+
+		if (diagram.getContent() != null)
+		{
+			this.writeOptionalProperty(Diagram.PROPERTY_content, diagram.getContent());
+		}
+		else if (diagram.getFile() != null)
+		{
+			this.writer.write(',');
+			this.writeKey(Diagram.PROPERTY_content);
+			if (diagram.getName().endsWith(".png"))
+			{
+				this.writeBase64(diagram.getFile());
+			}
+			else
+			{
+				this.writeText(diagram.getFile());
+			}
+		}
+		this.writer.write('}');
+	}
+
+	public void write(Method method) throws IOException
+	{
+		this.writer.write('{');
+		this.writeProperty(Method.PROPERTY_className, method.getClassName());
+		this.writeOptionalProperty(Method.PROPERTY_name, method.getName());
+		this.writeOptionalProperty(Method.PROPERTY_body, method.getBody());
+		this.writer.write('}');
+	}
+
+	public void write(Diagnostic diagnostic) throws IOException
+	{
+		this.writer.write('{');
+		this.writeProperty(Diagnostic.PROPERTY_file, diagnostic.getFile());
+		this.writeIntProperty(Diagnostic.PROPERTY_line, diagnostic.getLine());
+		this.writeIntProperty(Diagnostic.PROPERTY_column, diagnostic.getColumn());
+		this.writeIntProperty(Diagnostic.PROPERTY_endColumn, diagnostic.getEndColumn());
+		this.writeOptionalProperty(Diagnostic.PROPERTY_severity, diagnostic.getSeverity());
+		this.writeOptionalProperty(Diagnostic.PROPERTY_message, diagnostic.getMessage());
+		this.writer.write('}');
+	}
+
+	// --------------- Helpers ---------------
+
+	/**
+	 * Only references need the hash, so it is computed when a diagram is first written as one,
+	 * and kept for later responses with the same (cached) result.
+	 */
+	private static String hash(Diagram diagram) throws IOException
+	{
+		final String hash = diagram.getHash();
+		if (hash != null || diagram.getFile() == null)
+		{
+			return hash;
+		}
+
+		final MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		try (final InputStream input = new DigestInputStream(Files.newInputStream(diagram.getFile()), digest))
+		{
+			input.transferTo(OutputStream.nullOutputStream());
+		}
+		final String computed = HexFormat.of().formatHex(digest.digest());
+		diagram.setHash(computed);
+		return computed;
+	}
+
+	private void writeIntProperty(String key, int value) throws IOException
+	{
+		this.writer.write(',');
+		this.writeKey(key);
+		this.writer.write(Integer.toString(value));
+	}
+
+	private void writeProperty(String key, String value) throws IOException
+	{
+		this.writeKey(key);
+		this.writeString(value);
+	}
+
+	// like JSONObject.put, null values are omitted
+	private void writeOptionalProperty(String key, String value) throws IOException
+	{
+		if (value != null)
+		{
+			this.writer.write(',');
+			this.writeProperty(key, value);
+		}
+	}
+
+	private void writeKey(String key) throws IOException
+	{
+		this.writeString(key);
+		this.writer.write(':');
+	}
+
+	private void writeString(String value) throws IOException
+	{
+		if (value == null)
+		{
+			this.writer.write("null");
+			return;
+		}
+
+		this.writer.write('"');
+		this.writeEscaped(value, 0, value.length());
+		this.writer.write('"');
+	}
+
+	private void writeEscaped(CharSequence text, int start, int end) throws IOException
+	{
+		int unescaped = start;
+		for (int i = start; i < end; i++)
+		{
+			final char c = text.charAt(i);
+			if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029')
+			{
+				continue;
+			}
+
+			this.writer.append(text, unescaped, i);
+			unescaped = i + 1;
+
+			switch (c)
+			{
+			case '"':
+				this.writer.write("\\\"");
+				break;
+			case '\\':
+				this.writer.write("\\\\");
+				break;
+			case '\n':
+				this.writer.write("\\n");
+				break;
+			case '\r':
+				this.writer.write("\\r");
+				break;
+			case '\t':
+				this.writer.write("\\t");
+				break;
+			case '\b':
+				this.writer.write("\\b");
+				break;
+			case '\f':
+				this.writer.write("\\f");
+				break;
+			default:
+				this.writer.write("\\u");
+				this.writer.write(HEX[c >> 12 & 0xf]);
+				this.writer.write(HEX[c >> 8 & 0xf]);
+				this.writer.write(HEX[c >> 4 & 0xf]);
+				this.writer.write(HEX[c & 0xf]);
+				break;
+			}
+		}
+		this.writer.append(text, unescaped, end);
+	}
+
+	private void writeText(Path file) throws IOException
+	{
+		if (this.charBuffer == null)
+		{
+			this.charBuffer = new char[TEXT_CHUNK_SIZE];
+		}
+
+		this.writer.write('"');
+		try (final Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))
+		{
+			final CharSequence chars = CharBuffer.wrap(this.charBuffer);
+			int read;
+			while ((read = reader.read(this.charBuffer)) >= 0)
+			{
+				this.writeEscaped(chars, 0, read);
+			}
+		}
+		this.writer.write('"');
+	}
+
+	private void writeBase64(Path file) throws IOException
+	{
+		if (this.byteBuffer == null)
+		{
+			this.byteBuffer = new byte[BASE64_CHUNK_SIZE];
+		}
+
+		final Base64.Encoder encoder = Base64.getEncoder();
+		final byte[] encoded = new byte[BASE64_CHUNK_SIZE / 3 * 4];
+		final char[] chars = new char[encoded.length];
+
+		this.writer.write('"');
+		try (final InputStream input = Files.newInputStream(file))
+		{
+			int read;
+			// readNBytes fills the whole chunk unless the end of the file is reached,
+			// so only the last chunk can be padded
+			while ((read = input.readNBytes(this.byteBuffer, 0, BASE64_CHUNK_SIZE)) > 0)
+			{
+				final byte[] chunk = read == BASE64_CHUNK_SIZE ? this.byteBuffer : Arrays.copyOf(this.byteBuffer, read);
+				final int length = encoder.encode(chunk, encoded);
+				for (int i = 0; i < length; i++)
+				{
+					chars[i] = (char) encoded[i];
+				}
+				this.writer.write(chars, 0, length);
+			}
+		}
+		this.writer.write('"');
+	}
+}
@@ -0,0 +1,198 @@
+package org.fulib.webapp.tool;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts the wall time, CPU time and allocated bytes of one run, over all threads that work on it.
+ * Threads take part from {@link #enter()} to {@link #exit()};
+ * code that hands work to other threads, like {@link ParallelTestComputer}, passes it through {@link #wrap(Runnable)}.
+ * The budget of the current thread is available from {@link #current()}.
+ */
+public class RunBudget
+{
+	// =============== Constants ===============
+
+	private static final ThreadLocal<RunBudget> CURRENT = new ThreadLocal<>();
+
+	private static final ThreadMXBean CPU = getCpuMXBean();
+	private static final com.sun.management.ThreadMXBean MEMORY = PipelineMetrics.getThreadMXBean();
+
+	// =============== Fields ===============
+
+	private final long startNanos;
+
+	// baseline CPU time and allocated bytes of the threads currently working on the run
+	private final Map<Thread, long[]> threads = new ConcurrentHashMap<>();
+	// totals of the threads that finished their work
+	private final AtomicLong cpuNanos = new AtomicLong();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	private volatile RunLimit exceeded;
+	private volatile Future<?> future;
+
+	// =============== Constructors ===============
+
+	RunBudget(long startNanos)
+	{
+		this.startNanos = startNanos;
+	}
+
+	// =============== Static Methods ===============
+
+	private static ThreadMXBean getCpuMXBean()
+	{
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean.isThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled() ? bean : null;
+	}
+
+	/**
+	 * @return the budget the current thread works on, or {@code null}
+	 */
+	public static RunBudget current()
+	{
+		return CURRENT.get();
+	}
+
+	private static long cpuNanos(Thread thread)
+	{
+		// -1 if the thread died in the meantime
+		return CPU != null ? Math.max(0, CPU.getThreadCpuTime(thread.getId())) : 0;
+	}
+
+	private static long allocatedBytes(Thread thread)
+	{
+		return MEMORY != null ? Math.max(0, MEMORY.getThreadAllocatedBytes(thread.getId())) : 0;
+	}
+
+	// =============== Properties ===============
+
+	public long getWallNanos(long nowNanos)
+	{
+		return nowNanos - this.startNanos;
+	}
+
+	public long getCpuNanos()
+	{
+		long total = this.cpuNanos.get();
+		for (final Map.Entry<Thread, long[]> entry : this.threads.entrySet())
+		{
+			total += cpuNanos(entry.getKey()) - entry.getValue()[0];
+		}
+		return total;
+	}
+
+	public long getAllocatedBytes()
+	{
+		long total = this.allocatedBytes.get();
+		for (final Map.Entry<Thread, long[]> entry : this.threads.entrySet())
+		{
+			total += allocatedBytes(entry.getKey()) - entry.getValue()[1];
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of threads currently working on the run
+	 */
+	public int getThreadCount()
+	{
+		return this.threads.size();
+	}
+
+	/**
+	 * @return the limit this run exceeded, or {@code null}
+	 */
+	public RunLimit getExceeded()
+	{
+		return this.exceeded;
+	}
+
+	void setFuture(Future<?> future)
+	{
+		this.future = future;
+	}
+
+	// =============== Methods ===============
+
+	public void enter()
+	{
+		final Thread thread = Thread.currentThread();
+		CURRENT.set(this);
+		this.threads.put(thread, new long[] { cpuNanos(thread), allocatedBytes(thread) });
+	}
+
+	public void exit()
+	{
+		final Thread thread = Thread.currentThread();
+		final long[] baseline = this.threads.remove(thread);
+		CURRENT.remove();
+		if (baseline != null)
+		{
+			this.cpuNanos.addAndGet(cpuNanos(thread) - baseline[0]);
+			this.allocatedBytes.addAndGet(allocatedBytes(thread) - baseline[1]);
+		}
+	}
+
+	<T> T call(Callable<T> task) throws Exception
+	{
+		this.enter();
+		try
+		{
+			return task.call();
+		}
+		finally
+		{
+			this.exit();
+		}
+	}
+
+	/**
+	 * @return a task that runs the given task as part of this run, on whatever thread it is executed
+	 */
+	public Runnable wrap(Runnable task)
+	{
+		return () -> {
+			this.enter();
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				this.exit();
+			}
+		};
+	}
+
+	/**
+	 * Marks the run as over budget and interrupts all threads working on it.
+	 * Only the first limit counts.
+	 *
+	 * @return {@code true} if the run was not over budget before
+	 */
+	synchronized boolean exceed(RunLimit limit)
+	{
+		if (this.exceeded != null)
+		{
+			return false;
+		}
+
+		this.exceeded = limit;
+		final Future<?> future = this.future;
+		if (future != null)
+		{
+			future.cancel(true);
+		}
+		for (final Thread thread : this.threads.keySet())
+		{
+			thread.interrupt();
+		}
+		return true;
+	}
+}
@@ -1,30 +1,29 @@
 package org.fulib.webapp.tool;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.fulib.StrUtil;
 import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Diagnostic;
 import org.fulib.webapp.tool.model.Diagram;
 import org.fulib.webapp.tool.model.Method;
 import org.fulib.webapp.tool.model.Result;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import spark.HaltException;
 import spark.Request;
 import spark.Response;
+import spark.Spark;
 
 import javax.inject.Inject;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.IOException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,46 +33,213 @@ public class RunCodeGen
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RunCodeGen.class);
 
-	private static final Pattern PROPERTY_CONSTANT_PATTERN = Pattern.compile("^\\s*public static final String PROPERTY_\\w+ = \"(\\w+)\";$");
+	private static final int OUTPUT_LIMIT = Env.getInt("FULIB_OUTPUT_LIMIT", 1024 * 1024);
+
+	static final String PROPERTY_diagrams = "diagrams";
+	static final String DIAGRAMS_INLINE = "inline";
+	static final String DIAGRAMS_REFERENCE = "reference";
+
+	static final String EXPIRED = "the files of the result were deleted, please run it again";
+
+	static final String PROPERTY_mode = "mode";
+	static final String MODE_RUN = "run";
+	static final String MODE_CHECK = "check";
+
+	// the same format as the frontend's LintService expects
+	private static final Pattern DIAGNOSTIC_PATTERN = Pattern.compile(
+		"^(.*\\.md):(\\d+):(\\d+)(?:-(\\d+))?: (error|syntax|warning|note): (.*)$", Pattern.MULTILINE);
 
 	// =============== Fields ===============
 
-	private final String tempDir = System.getProperty("java.io.tmpdir") + "/fulib.org/";
-	private final ScheduledExecutorService deleter = Executors.newScheduledThreadPool(1);
+	private final JavaCompilerService compiler;
+	private final ResultCache resultCache;
+	private final CodeGenExecutor executor;
+	private final CheckExecutor checkExecutor;
+	private final TempSpaceManager tempSpace;
+	private final PipelineMetrics metrics;
+	private final SandboxClassLoaders sandbox;
+	private final TestExecutor testExecutor;
+	private final RunLimits limits;
+	private final WorkerPool workers;
+	private final ModelCache modelCache;
 
 	// =============== Constructors ===============
 
 	@Inject
-	public RunCodeGen()
+	public RunCodeGen(JavaCompilerService compiler, ResultCache resultCache, CodeGenExecutor executor,
+		CheckExecutor checkExecutor, TempSpaceManager tempSpace, PipelineMetrics metrics, SandboxClassLoaders sandbox,
+		TestExecutor testExecutor, RunLimits limits, WorkerPool workers, ModelCache modelCache)
 	{
+		this.compiler = compiler;
+		this.resultCache = resultCache;
+		this.executor = executor;
+		this.checkExecutor = checkExecutor;
+		this.tempSpace = tempSpace;
+		this.metrics = metrics;
+		this.sandbox = sandbox;
+		this.testExecutor = testExecutor;
+		this.limits = limits;
+		this.workers = workers;
+		this.modelCache = modelCache;
 	}
 
 	// =============== Methods ===============
 
-	public String getTempDir()
-	{
-		return this.tempDir;
-	}
-
-	public String handle(Request req, Response res) throws Exception
+	public Object handle(Request req, Response res) throws Exception
 	{
 		final String body = req.body();
 		final JSONObject jsonObject = new JSONObject(body);
 
 		final CodeGenData input = fromJson(jsonObject);
+		final boolean diagramReferences = isDiagramReferences(jsonObject);
+
+		if (isCheck(jsonObject))
+		{
+			// only the scenario compiler runs, on a pool of its own, so checks do not wait behind full runs
+			final Future<Result> future;
+			try
+			{
+				future = this.checkExecutor.submit(waitNanos -> this.check(input));
+			}
+			catch (RejectedExecutionException ex)
+			{
+				throw this.reject(res, this.checkExecutor);
+			}
+			return this.write(await(future), res, diagramReferences);
+		}
 
-		final Result result = run(input);
+		if (!this.isHealthy())
+		{
+			throw this.reject(res);
+		}
 
-		final JSONObject resultObj = toJson(result);
+		final AtomicLong queueNanos = new AtomicLong();
+		final Future<Result> future;
+		try
+		{
+			future = this.executor.submit(waitNanos -> {
+				queueNanos.set(waitNanos);
+				return this.run(input);
+			});
+		}
+		catch (RejectedExecutionException ex)
+		{
+			throw this.reject(res);
+		}
+
+		final Result result;
+		try
+		{
+			result = await(future);
+		}
+		catch (RejectedExecutionException ex)
+		{
+			// no run thread was free
+			throw this.reject(res);
+		}
+
+		res.header("Server-Timing", "queue;dur=" + TimeUnit.NANOSECONDS.toMillis(queueNanos.get()));
+
+		// diagrams are read from the project directory while the response is written
+		final TempSpaceManager.Lease lease = this.leaseFiles(result);
+		if (lease == null)
+		{
+			throw expired();
+		}
+		try (lease)
+		{
+			return this.write(result, res, diagramReferences);
+		}
+	}
+
+	private static Result await(Future<Result> future) throws Exception
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException ex)
+		{
+			final Throwable cause = ex.getCause();
+			throw cause instanceof Exception ? (Exception) cause : ex;
+		}
+	}
 
+	private Object write(Result result, Response res, boolean diagramReferences) throws IOException
+	{
 		res.type("application/json");
 
-		return resultObj.toString(3);
+		final HttpServletResponse raw = res.raw();
+		final PipelineMetrics.Timer timer = this.metrics.start();
+		final CountingOutputStream counter = new CountingOutputStream(raw.getOutputStream());
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8)))
+		{
+			writeJson(result, writer, diagramReferences);
+		}
+		this.metrics.finish(PipelineMetrics.SERIALIZE, timer);
+		this.metrics.recordOutput(PipelineMetrics.SERIALIZE, counter.getByteCount());
+		return raw;
+	}
+
+	/**
+	 * Keeps the files the result refers to from being deleted until the lease is closed.
+	 *
+	 * @return the lease, or {@code null} if the files were deleted already
+	 */
+	TempSpaceManager.Lease leaseFiles(Result result)
+	{
+		final TempSpaceManager.Lease lease = this.tempSpace.lease(result.getId());
+		if (lease.isAvailable() || !hasFiles(result))
+		{
+			return lease;
+		}
+		lease.close();
+		return null;
+	}
+
+	private static boolean hasFiles(Result result)
+	{
+		for (final Diagram diagram : result.getObjectDiagrams())
+		{
+			if (diagram.getFile() != null)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static HaltException expired()
+	{
+		// language=JSON
+		return Spark.halt(410, "{\n" + "  \"error\": \"" + EXPIRED + "\"\n" + "}");
+	}
+
+	/**
+	 * @return {@code false} if too many threads are held by runs that were stopped, see {@link RunLimits#isHealthy()}
+	 */
+	public boolean isHealthy()
+	{
+		return this.limits.isHealthy();
+	}
+
+	HaltException reject(Response res)
+	{
+		return this.reject(res, this.executor);
+	}
+
+	private HaltException reject(Response res, CodeGenExecutor executor)
+	{
+		LOGGER.warn("rejected code generation request, queue depth " + executor.getQueueDepth()
+		            + ", stuck run threads " + this.limits.getStuckThreads());
+		res.header("Retry-After", String.valueOf(executor.estimateRetryAfterSeconds()));
+		// language=JSON
+		return Spark.halt(503, "{\n" + "  \"error\": \"too many requests, try again later\"\n" + "}");
 	}
 
 	// =============== Static Methods ===============
 
-	private static CodeGenData fromJson(JSONObject obj)
+	static CodeGenData fromJson(JSONObject obj)
 	{
 		final CodeGenData input = new CodeGenData();
 		input.setScenarioText(obj.getString("scenarioText"));
@@ -82,61 +248,148 @@ public class RunCodeGen
 		return input;
 	}
 
-	private static JSONObject toJson(Result result)
+	/**
+	 * @return {@code true} if the request asks for object diagrams by reference ({@code "diagrams": "reference"})
+	 * instead of inline content (the default)
+	 */
+	static boolean isDiagramReferences(JSONObject obj)
 	{
-		final JSONObject resultObj = new JSONObject();
+		return DIAGRAMS_REFERENCE.equals(obj.optString(PROPERTY_diagrams, DIAGRAMS_INLINE));
+	}
 
-		resultObj.put(Result.PROPERTY_id, result.getId());
-		resultObj.put(Result.PROPERTY_exitCode, result.getExitCode());
-		resultObj.put(Result.PROPERTY_output, result.getOutput());
+	/**
+	 * @return {@code true} if the request only asks for the diagnostics of the scenario ({@code "mode": "check"})
+	 * instead of a full run (the default)
+	 */
+	static boolean isCheck(JSONObject obj)
+	{
+		return MODE_CHECK.equals(obj.optString(PROPERTY_mode, MODE_RUN));
+	}
 
-		resultObj.put(Result.PROPERTY_classDiagram, result.getClassDiagram());
+	static void writeJson(Result result, Writer writer, boolean diagramReferences) throws IOException
+	{
+		new ResultJsonWriter(writer, diagramReferences).write(result);
+	}
 
-		final JSONArray objectDiagramArray = new JSONArray();
-		for (final Diagram diagram : result.getObjectDiagrams())
+	public Result run(CodeGenData input) throws Exception
+	{
+		return this.run(IDGenerator.generateID(), input, PipelineListener.NONE);
+	}
+
+	/**
+	 * @param id
+	 * 	the id of the run, which also names the directory the generated files are served from.
+	 * 	A cached result keeps the id of the run that produced it.
+	 * @param input
+	 * 	the input
+	 * @param listener
+	 * 	the listener for stage progress, which is not notified if the result is cached
+	 *
+	 * @return the result
+	 */
+	public Result run(String id, CodeGenData input, PipelineListener listener) throws Exception
+	{
+		if (!this.resultCache.isEnabled())
+		{
+			return this.generate(id, input, listener, true);
+		}
+
+		final String cacheKey = ResultCache.key(input);
+		// the object diagrams of a cached result are served from the project directory of the original run
+		final Result cached = this.resultCache.get(cacheKey, r -> this.tempSpace.touch(r.getId()));
+		if (cached != null)
 		{
-			objectDiagramArray.put(toJson(diagram));
+			return cached;
 		}
-		resultObj.put(Result.PROPERTY_objectDiagrams, objectDiagramArray);
 
-		final JSONArray methodsArray = new JSONArray();
-		for (final Method method : result.getMethods())
+		final Result result = this.generate(id, input, listener, true);
+		// do not cache internal errors, nor runs that exceeded a limit, which may be due to the load of the host
+		if (result.getExitCode() >= 0 && RunLimit.fromExitCode(result.getExitCode()) == null)
 		{
-			methodsArray.put(toJson(method));
+			this.resultCache.put(cacheKey, result);
 		}
-		resultObj.put(Result.PROPERTY_methods, methodsArray);
+		return result;
+	}
 
-		return resultObj;
+	/**
+	 * Runs the whole pipeline like {@link #run(CodeGenData)}, but neither caches the result nor keeps the files,
+	 * so that e.g. the warm-up takes no cache entries and temp space from real runs.
+	 * The files of the object diagrams are deleted before it returns, so the result must not be written.
+	 *
+	 * @param input
+	 * 	the input
+	 *
+	 * @return the result
+	 */
+	public Result runUncached(CodeGenData input) throws Exception
+	{
+		return this.generate("uncached-" + IDGenerator.generateID(), input, PipelineListener.NONE, false);
 	}
 
-	private static JSONObject toJson(Diagram diagram)
+	/**
+	 * Only runs the scenario compiler, without diagrams, javac and tests, for validation as the user types.
+	 * Nothing is kept, so the result has no id and the generated files are deleted.
+	 * The files are written to a directory of the {@link TempSpaceManager}, which is not registered with it,
+	 * but deleted when the service starts if a crash left it behind.
+	 *
+	 * @param input
+	 * 	the input
+	 *
+	 * @return the result with the output and diagnostics of the scenario compiler
+	 */
+	public Result check(CodeGenData input) throws IOException
 	{
-		final JSONObject methodObj = new JSONObject();
-		methodObj.put(Diagram.PROPERTY_name, diagram.getName());
-		methodObj.put(Diagram.PROPERTY_path, diagram.getPath());
-		methodObj.put(Diagram.PROPERTY_content, diagram.getContent());
-		return methodObj;
+		final PipelineMetrics.Timer timer = this.metrics.start();
+		final Path projectDir = this.tempSpace.getDirectory("check-" + IDGenerator.generateID());
+		try
+		{
+			final Path srcDir = projectDir.resolve("src");
+			final Path modelSrcDir = projectDir.resolve("model_src");
+			final Path testSrcDir = projectDir.resolve("test_src");
+			final Path packagePath = srcDir.resolve(input.getPackageName().replace('.', '/'));
+
+			Files.createDirectories(packagePath);
+			Files.write(packagePath.resolve(input.getScenarioFileName()),
+			            input.getScenarioText().getBytes(StandardCharsets.UTF_8));
+
+			final OutputSink out = new OutputSink(OUTPUT_LIMIT, projectDir.toString(), ".",
+			                                      PipelineListener.NONE::output);
+			final int scenarioc = Tools.scenarioc(out, out, srcDir, modelSrcDir, testSrcDir, "--marker-end-columns");
+			out.close();
+
+			final Result result = new Result(null);
+			result.setExitCode(scenarioc << 2);
+			result.setOutput(out.toString());
+			result.setDiagnostics(parseDiagnostics(result.getOutput()));
+			return result;
+		}
+		finally
+		{
+			Tools.deleteRecursively(projectDir);
+			this.metrics.finish(PipelineMetrics.CHECK, timer);
+		}
 	}
 
-	private static JSONObject toJson(Method method)
+	private Path getProjectDir(String id)
 	{
-		final JSONObject methodObj = new JSONObject();
-		methodObj.put(Method.PROPERTY_className, method.getClassName());
-		methodObj.put(Method.PROPERTY_name, method.getName());
-		methodObj.put(Method.PROPERTY_body, method.getBody());
-		return methodObj;
+		return this.tempSpace.getDirectory(id);
 	}
 
-	public Result run(CodeGenData input) throws Exception
+	/**
+	 * @param keepFiles
+	 * 	{@code true} to register the project directory with the {@link TempSpaceManager},
+	 * 	{@code false} to delete it right away
+	 */
+	private Result generate(String id, CodeGenData input, PipelineListener listener, boolean keepFiles)
+		throws Exception
 	{
-		final String id = UUID.randomUUID().toString();
-		final Path tempDir = Paths.get(this.getTempDir());
-		final Path projectDir = tempDir.resolve("api").resolve("runcodegen").resolve(id);
+		final Path projectDir = this.getProjectDir(id);
 		final Path srcDir = projectDir.resolve("src");
 		final Path modelSrcDir = projectDir.resolve("model_src");
 		final Path testSrcDir = projectDir.resolve("test_src");
-		final Path modelClassesDir = projectDir.resolve("model_classes");
-		final Path testClassesDir = projectDir.resolve("test_classes");
+
+		// indexes the generated files once for all later stages
+		final WorkspaceScanner workspace = new WorkspaceScanner(srcDir, modelSrcDir, testSrcDir);
 
 		try
 		{
@@ -154,19 +407,36 @@ public class RunCodeGen
 			Files.createDirectories(modelSrcDir);
 			Files.createDirectories(testSrcDir);
 
-			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final MethodExtractor methods = new MethodExtractor();
 
-			// invoke scenario compiler
-			final int exitCode = Tools.genCompileRun(out, out, srcDir, modelSrcDir, testSrcDir, modelClassesDir,
-			                                         testClassesDir, "--class-diagram-svg", "--object-diagram-svg",
-			                                         "--marker-end-columns");
+			// project paths in the output are replaced with "." as it is written
+			final OutputSink out = new OutputSink(OUTPUT_LIMIT, projectDir.toString(), ".", listener::output);
+
+			// invoke scenario compiler, then compile and run in memory, here or in a worker process
+			final PipelineListener stageListener = PipelineListener.compose(this.metrics.listener(out::getWritten),
+			                                                                listener);
+			final String[] scenariocArgs = { "--class-diagram-svg", "--object-diagram-svg", "--marker-end-columns" };
+			final int exitCode;
+			if (this.workers.isEnabled())
+			{
+				exitCode = this.workers.genCompileRun(stageListener, out, srcDir, modelSrcDir, testSrcDir,
+				                                      scenariocArgs);
+			}
+			else
+			{
+				exitCode = Tools.genCompileRun(this.compiler, this.sandbox, this.testExecutor.getComputer(),
+				                               this.limits, stageListener, out, out, workspace, methods,
+				                               this.modelCache, scenariocArgs);
+			}
+
+			out.close();
+			this.metrics.recordRun(exitCode);
 
 			final Result result = new Result(id);
 			result.setExitCode(exitCode);
 
-			final String output = new String(out.toByteArray(), StandardCharsets.UTF_8);
-			final String sanitizedOutput = output.replace(projectDir.toString(), ".");
-			result.setOutput(sanitizedOutput);
+			final String output = out.toString();
+			result.setOutput(output);
 
 			if (exitCode < 0) // exception occurred
 			{
@@ -175,43 +445,80 @@ public class RunCodeGen
 
 			if (exitCode == 0 || (exitCode & 4) != 0) // scenarioc did not fail
 			{
-				collectTestMethods(modelSrcDir, testSrcDir, result.getMethods());
+				final PipelineMetrics.Timer timer = this.metrics.start();
+
+				// the sources are only walked here if the pipeline ran in a worker process or scenarioc failed,
+				// otherwise the in-process pipeline did so already; the diagrams are always walked here,
+				// as the pipeline never does and the tests write some of them
+				workspace.scanSources();
+				workspace.scanDiagrams();
+
+				result.getMethods().addAll(methods.getMethods(this.compiler, workspace));
 
 				// read class diagram
-				final Path classDiagramFile = modelSrcDir.resolve(packageDir).resolve("classDiagram.svg");
-				if (Files.exists(classDiagramFile))
+				final Path classDiagramFile = workspace.getClassDiagram(packageDir);
+				if (classDiagramFile != null)
 				{
 					final byte[] bytes = Files.readAllBytes(classDiagramFile);
 					final String svgText = new String(bytes, StandardCharsets.UTF_8);
 					result.setClassDiagram(svgText);
 				}
 
-				collectObjectDiagrams(result.getObjectDiagrams(), bodyText, projectDir, packagePath);
+				collectObjectDiagrams(result.getObjectDiagrams(), bodyText, projectDir, packagePath, workspace);
+
+				this.metrics.finish(PipelineMetrics.COLLECT, timer);
 			}
 
 			return result;
 		}
 		finally
 		{
-			this.deleter.schedule(() -> Tools.deleteRecursively(projectDir), 1, TimeUnit.HOURS);
+			if (keepFiles)
+			{
+				this.register(id, workspace);
+			}
+			else
+			{
+				Tools.deleteRecursively(projectDir);
+			}
+		}
+	}
+
+	private void register(String id, WorkspaceScanner workspace)
+	{
+		// the scanner summed up the files, unless the run failed before they were scanned
+		final long bytes = workspace.getTotalBytes();
+		if (bytes >= 0)
+		{
+			this.tempSpace.register(id, bytes);
+		}
+		else
+		{
+			this.tempSpace.register(id);
 		}
 	}
 
 	// --------------- Object Diagrams ---------------
 
-	private static void collectObjectDiagrams(List<Diagram> diagrams, String scenarioText, Path projectDir,
-		Path packageDir) throws IOException
+	static void collectObjectDiagrams(List<Diagram> diagrams, String scenarioText, Path projectDir,
+		Path packageDir, WorkspaceScanner workspace)
 	{
 		// sorting is O(n log n) with n = number of object diagrams,
 		// while a comparison takes O(m) steps to search for the occurrence in the text of length m.
 		// thus, we use a cache for the index of occurrence to avoid excessive searching during sort.
 		final Map<Path, Integer> diagramOccurrenceMap = new HashMap<>();
 
-		Files.walk(packageDir).filter(file -> {
-			final String fileName = file.toString();
-			return fileName.endsWith(".svg") || fileName.endsWith(".png") //
-			       || fileName.endsWith(".yaml") || fileName.endsWith(".html") || fileName.endsWith(".txt");
-		}).sorted(Comparator.comparingInt(path -> {
+		final List<Map.Entry<Path, Long>> files = new ArrayList<>();
+		for (final Map.Entry<Path, Long> entry : workspace.getDiagrams().entrySet())
+		{
+			if (entry.getKey().startsWith(packageDir))
+			{
+				files.add(entry);
+			}
+		}
+
+		files.sort(Comparator.comparingInt(entry -> {
+			final Path path = entry.getKey();
 			final Integer cached = diagramOccurrenceMap.get(path);
 			if (cached != null)
 			{
@@ -229,21 +536,16 @@ public class RunCodeGen
 
 			diagramOccurrenceMap.put(path, index);
 			return index;
-		})).forEach(file -> diagrams.add(readObjectDiagram(file, projectDir, packageDir)));
-	}
+		}));
 
-	private static Diagram readObjectDiagram(Path file, Path projectDir, Path packageDir)
-	{
-		final byte[] content;
-		try
-		{
-			content = Files.readAllBytes(file);
-		}
-		catch (IOException e)
+		for (final Map.Entry<Path, Long> entry : files)
 		{
-			throw new RuntimeException(e);
+			diagrams.add(readObjectDiagram(entry.getKey(), entry.getValue(), projectDir, packageDir));
 		}
+	}
 
+	private static Diagram readObjectDiagram(Path file, long size, Path projectDir, Path packageDir)
+	{
 		final String fileName = packageDir.relativize(file).toString();
 		final String path = projectDir.relativize(file).toString();
 
@@ -255,86 +557,45 @@ public class RunCodeGen
 		switch (fileExtension)
 		{
 		case ".png":
-			final String base64Content = Base64.getEncoder().encodeToString(content);
-			diagram.setContent(base64Content);
-			break;
 		case ".yaml":
 		case ".svg":
 		case ".html":
 		case ".txt":
-			diagram.setContent(new String(content, StandardCharsets.UTF_8));
+			// the content is streamed from the file when the result is written, see ResultJsonWriter
+			diagram.setFile(file);
 			break;
 		}
 
+		// the size is known from scanning the workspace; the hash is only computed for references,
+		// see ResultJsonWriter
+		diagram.setSize(size);
+
 		return diagram;
 	}
 
-	// --------------- Methods ---------------
+	// --------------- Diagnostics ---------------
 
-	private static void collectTestMethods(Path modelSrcDir, Path testSrcDir, List<Method> methods) throws IOException
+	static List<Diagnostic> parseDiagnostics(String output)
 	{
-		Files.walk(testSrcDir).filter(Tools::isJava).forEach(file -> tryReadMethods(methods, file, false));
-		Files.walk(modelSrcDir).filter(Tools::isJava).sorted().forEach(file -> tryReadMethods(methods, file, true));
-	}
-
-	private static void tryReadMethods(List<Method> methods, Path file, boolean modelFilter)
-	{
-		try
+		final List<Diagnostic> diagnostics = new ArrayList<>();
+		final Matcher matcher = DIAGNOSTIC_PATTERN.matcher(output);
+		while (matcher.find())
 		{
-			readMethods(methods, file, modelFilter);
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(e);
+			final Diagnostic diagnostic = new Diagnostic();
+			diagnostic.setFile(matcher.group(1));
+			diagnostic.setLine(Integer.parseInt(matcher.group(2)));
+			diagnostic.setColumn(Integer.parseInt(matcher.group(3)));
+			// without --marker-end-columns, or for markers of a single character
+			final String endColumn = matcher.group(4);
+			diagnostic.setEndColumn(endColumn != null ? Integer.parseInt(endColumn) : diagnostic.getColumn());
+			diagnostic.setSeverity(matcher.group(5));
+			diagnostic.setMessage(matcher.group(6));
+			diagnostics.add(diagnostic);
 		}
+		return diagnostics;
 	}
 
-	private static void readMethods(List<Method> methods, Path file, boolean modelFilter)
-		throws IOException, JSONException
-	{
-		final String filePath = file.toString();
-		final String className = filePath.substring(filePath.lastIndexOf(File.separator) + 1,
-		                                            filePath.lastIndexOf('.'));
-
-		final Set<String> properties = modelFilter ? new HashSet<>() : null;
-		final List<String> lines = Files.readAllLines(file);
-		String methodName = null;
-		StringBuilder methodBody = null;
-
-		for (String line : lines)
-		{
-			int end;
-			Matcher matcher;
-			if (modelFilter && (matcher = PROPERTY_CONSTANT_PATTERN.matcher(line)).find())
-			{
-				properties.add(matcher.group(1));
-			}
-			if (line.startsWith("   public ") && (end = line.lastIndexOf(')')) >= 0 && line.lastIndexOf('=') <= 0)
-			{
-				final String decl = line.substring("   public ".length(), end + 1);
-				if (!modelFilter || !shouldSkip(decl, properties))
-				{
-					methodName = decl;
-					methodBody = new StringBuilder();
-				}
-			}
-			else if (methodName != null && "   }".equals(line))
-			{
-				final Method method = new Method();
-				method.setClassName(className);
-				method.setName(methodName);
-				method.setBody(methodBody.toString());
-				methods.add(method);
-
-				methodName = null;
-				methodBody = null;
-			}
-			else if (methodName != null && line.startsWith("      "))
-			{
-				methodBody.append(line, 6, line.length()).append("\n");
-			}
-		}
-	}
+	// --------------- Methods ---------------
 
 	static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet(new HashSet<>(
 		Arrays.asList("firePropertyChange", "addPropertyChangeListener", "removePropertyChangeListener", "listeners", "removeYou",
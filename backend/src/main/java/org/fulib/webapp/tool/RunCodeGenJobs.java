@@ -0,0 +1,379 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Result;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Spark;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Asynchronous variant of {@link RunCodeGen#handle}.
+ * A job is submitted with {@code POST /api/runcodegen/jobs}, which answers with the job id right away.
+ * Its state is available from {@code GET /api/runcodegen/jobs/:id},
+ * or as server-sent events from {@code GET /api/runcodegen/jobs/:id/events}.
+ * Finished jobs are discarded after {@code FULIB_JOB_RETENTION} seconds (default 10 minutes).
+ * <p>
+ * Event streams are asynchronous requests, so they do not hold a request thread while the job runs.
+ * New events are written by {@code FULIB_JOB_EVENT_THREADS} threads (default 2) for all streams.
+ * Writes block until the client accepted the data, so a stalled client holds one of them until the write times out.
+ */
+@Singleton
+public class RunCodeGenJobs
+{
+	// =============== Constants ===============
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunCodeGenJobs.class);
+
+	private static final long RETENTION_MILLIS = TimeUnit.SECONDS.toMillis(
+		Env.getLong("FULIB_JOB_RETENTION", 10 * 60));
+	private static final long KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(15);
+	private static final int EVENT_THREADS = Env.getInt("FULIB_JOB_EVENT_THREADS", 2);
+
+	// =============== Fields ===============
+
+	private final RunCodeGen runCodeGen;
+	private final CodeGenExecutor executor;
+
+	private final Map<String, CodeGenJob> jobs = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "codegen-job-sweeper");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+	private final ExecutorService eventWriters = Executors.newFixedThreadPool(EVENT_THREADS, runnable -> {
+		final Thread thread = new Thread(runnable, "codegen-job-events");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// =============== Constructors ===============
+
+	@Inject
+	public RunCodeGenJobs(RunCodeGen runCodeGen, CodeGenExecutor executor)
+	{
+		this.runCodeGen = runCodeGen;
+		this.executor = executor;
+		this.sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+		this.sweeper.scheduleWithFixedDelay(this::keepAlive, KEEP_ALIVE_MILLIS, KEEP_ALIVE_MILLIS,
+		                                    TimeUnit.MILLISECONDS);
+	}
+
+	// =============== Static Methods ===============
+
+	/**
+	 * @return the index of the first event to send, i.e. the one after the {@code Last-Event-ID} of a reconnecting
+	 * client, or {@code 0} if there is none or it is not a valid event index
+	 */
+	static int firstEvent(String lastEventId)
+	{
+		if (lastEventId == null)
+		{
+			return 0;
+		}
+
+		try
+		{
+			final int index = Integer.parseInt(lastEventId.trim());
+			return index >= 0 && index < Integer.MAX_VALUE ? index + 1 : 0;
+		}
+		catch (NumberFormatException ex)
+		{
+			return 0;
+		}
+	}
+
+	// =============== Methods ===============
+
+	public Object submit(Request req, Response res) throws IOException
+	{
+		final JSONObject obj = new JSONObject(req.body());
+		final CodeGenData input = RunCodeGen.fromJson(obj);
+		if (!this.runCodeGen.isHealthy())
+		{
+			throw this.runCodeGen.reject(res);
+		}
+
+		final CodeGenJob job = new CodeGenJob(IDGenerator.generateID(), RunCodeGen.isDiagramReferences(obj));
+
+		this.jobs.put(job.getId(), job);
+		try
+		{
+			this.executor.submit(waitNanos -> {
+				this.execute(job, input);
+				return null;
+			});
+		}
+		catch (RejectedExecutionException ex)
+		{
+			this.jobs.remove(job.getId());
+			throw this.runCodeGen.reject(res);
+		}
+
+		res.status(202);
+		return this.writeJson(job, res);
+	}
+
+	private void execute(CodeGenJob job, CodeGenData input)
+	{
+		job.start();
+		try
+		{
+			job.complete(this.runCodeGen.run(job.getId(), input, job));
+		}
+		catch (Exception ex)
+		{
+			LOGGER.error("code generation job " + job.getId() + " failed", ex);
+			job.fail(ex.toString());
+		}
+	}
+
+	public Object get(Request req, Response res) throws IOException
+	{
+		final CodeGenJob job = this.getJobOr404(req);
+		return this.writeJson(job, res);
+	}
+
+	private Object writeJson(CodeGenJob job, Response res) throws IOException
+	{
+		final Result result = job.getResult();
+		final TempSpaceManager.Lease lease = result != null ? this.runCodeGen.leaseFiles(result) : null;
+		if (result != null && lease == null)
+		{
+			throw RunCodeGen.expired();
+		}
+
+		res.type("application/json");
+
+		final HttpServletResponse raw = res.raw();
+		try (lease; final Writer writer = new BufferedWriter(
+			new OutputStreamWriter(raw.getOutputStream(), StandardCharsets.UTF_8)))
+		{
+			job.writeJson(writer);
+		}
+		return raw;
+	}
+
+	public Object events(Request req, Response res) throws IOException
+	{
+		final CodeGenJob job = this.getJobOr404(req);
+
+		// resume after the last event the client received, if it reconnects
+		final int next = firstEvent(req.headers("Last-Event-ID"));
+
+		res.type("text/event-stream");
+		res.header("Cache-Control", "no-cache");
+
+		final HttpServletResponse raw = res.raw();
+		// commits the response, so that Spark neither writes nor closes it when the route returns
+		raw.flushBuffer();
+
+		final AsyncContext async = req.raw().startAsync();
+		async.setTimeout(0);
+
+		final EventStream stream = new EventStream(job, async, raw, next);
+		this.streams.add(stream);
+		job.addListener(stream);
+		stream.run();
+		return raw;
+	}
+
+	private void keepAlive()
+	{
+		for (final EventStream stream : this.streams)
+		{
+			this.eventWriters.execute(stream::keepAlive);
+		}
+	}
+
+	private CodeGenJob getJobOr404(Request req)
+	{
+		final CodeGenJob job = this.jobs.get(req.params(":id"));
+		if (job == null)
+		{
+			// language=JSON
+			throw Spark.halt(404, "{\n" + "  \"error\": \"job not found\"\n" + "}");
+		}
+		return job;
+	}
+
+	private void sweep()
+	{
+		final long now = System.currentTimeMillis();
+		this.jobs.values().removeIf(job -> job.isFinished() && now - job.getFinishedMillis() > RETENTION_MILLIS);
+	}
+
+	// =============== Classes ===============
+
+	/**
+	 * An open event stream.
+	 * It is notified by its job, and writes the new events on one of the event writer threads.
+	 * Lock order: the job, then the stream; or the write lock, then the job.
+	 */
+	private final class EventStream implements Runnable
+	{
+		private final CodeGenJob job;
+		private final AsyncContext async;
+		private final HttpServletResponse raw;
+		private final Writer writer;
+
+		private final Object writeLock = new Object();
+		private int next; // guarded by writeLock
+		private boolean closed; // guarded by writeLock
+
+		private boolean scheduled; // guarded by this
+
+		EventStream(CodeGenJob job, AsyncContext async, HttpServletResponse raw, int next) throws IOException
+		{
+			this.job = job;
+			this.async = async;
+			this.raw = raw;
+			this.writer = new OutputStreamWriter(raw.getOutputStream(), StandardCharsets.UTF_8);
+			this.next = next;
+		}
+
+		/**
+		 * Schedules writing the new events, unless that is already scheduled.
+		 */
+		@Override
+		public void run()
+		{
+			synchronized (this)
+			{
+				if (this.scheduled)
+				{
+					return;
+				}
+				this.scheduled = true;
+			}
+			RunCodeGenJobs.this.eventWriters.execute(this::write);
+		}
+
+		private void write()
+		{
+			synchronized (this)
+			{
+				// events added from now on schedule another write
+				this.scheduled = false;
+			}
+
+			synchronized (this.writeLock)
+			{
+				if (this.closed)
+				{
+					return;
+				}
+
+				final List<CodeGenJob.Event> events;
+				final boolean finished;
+				synchronized (this.job)
+				{
+					events = this.job.getEvents(this.next);
+					finished = this.job.isFinished();
+				}
+
+				try
+				{
+					for (final CodeGenJob.Event event : events)
+					{
+						if (CodeGenJob.EVENT_RESULT.equals(event.getType()))
+						{
+							this.writeResult(event);
+						}
+						else
+						{
+							this.writeEvent(event);
+						}
+						this.next = event.getIndex() + 1;
+					}
+					this.writer.flush();
+					this.raw.flushBuffer();
+				}
+				catch (IOException ex)
+				{
+					// the client disconnected
+					this.close();
+					return;
+				}
+
+				if (finished)
+				{
+					this.close();
+				}
+			}
+		}
+
+		private void writeResult(CodeGenJob.Event event) throws IOException
+		{
+			// diagrams are read from the project directory while the result is written
+			final TempSpaceManager.Lease lease = RunCodeGenJobs.this.runCodeGen.leaseFiles(this.job.getResult());
+			if (lease == null)
+			{
+				this.writer.write("id: " + event.getIndex() + "\n");
+				this.writer.write("event: " + CodeGenJob.EVENT_ERROR + "\n");
+				final JSONObject data = new JSONObject().put(CodeGenJob.PROPERTY_error, RunCodeGen.EXPIRED);
+				this.writer.write("data: " + data + "\n\n");
+				return;
+			}
+			try (lease)
+			{
+				this.writeEvent(event);
+			}
+		}
+
+		private void writeEvent(CodeGenJob.Event event) throws IOException
+		{
+			this.writer.write("id: " + event.getIndex() + "\n");
+			this.writer.write("event: " + event.getType() + "\n");
+			this.writer.write("data: ");
+			event.writeData(this.writer);
+			this.writer.write("\n\n");
+		}
+
+		private void keepAlive()
+		{
+			synchronized (this.writeLock)
+			{
+				if (this.closed)
+				{
+					return;
+				}
+
+				try
+				{
+					this.writer.write(": keep-alive\n\n");
+					this.writer.flush();
+					this.raw.flushBuffer();
+				}
+				catch (IOException ex)
+				{
+					this.close();
+				}
+			}
+		}
+
+		// called with the write lock held
+		private void close()
+		{
+			this.closed = true;
+			this.job.removeListener(this);
+			RunCodeGenJobs.this.streams.remove(this);
+			this.async.complete();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.projectzip.ProjectZipController;
+import spark.HaltException;
+import spark.Request;
+import spark.Response;
+import spark.Spark;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Serves the files of code generation runs from {@code GET /api/runcodegen/:id/*},
+ * e.g. the class diagram and object diagrams by reference.
+ * The files of a run never change, but the {@link TempSpaceManager} can delete them at any time,
+ * so clients revalidate them with the {@code ETag} and {@code Last-Modified} validators
+ * instead of caching them for a fixed time.
+ */
+@Singleton
+public class RunFiles
+{
+	// =============== Fields ===============
+
+	private final TempSpaceManager tempSpace;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public RunFiles(TempSpaceManager tempSpace)
+	{
+		this.tempSpace = tempSpace;
+	}
+
+	// =============== Static Methods ===============
+
+	static String etag(BasicFileAttributes attributes)
+	{
+		return "\"" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-" + Long.toHexString(
+			attributes.size()) + "\"";
+	}
+
+	/**
+	 * @return {@code true} if the client's copy is still valid, preferring {@code If-None-Match} as RFC 9110 requires
+	 */
+	static boolean notModified(String ifNoneMatch, String ifModifiedSince, String etag, long lastModifiedMillis)
+	{
+		if (ifNoneMatch != null)
+		{
+			return ProjectZipController.matches(ifNoneMatch, etag);
+		}
+		if (ifModifiedSince == null)
+		{
+			return false;
+		}
+
+		try
+		{
+			final long since = ZonedDateTime
+				.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+				.toEpochSecond();
+			// HTTP dates have a resolution of seconds
+			return lastModifiedMillis / 1000 <= since;
+		}
+		catch (DateTimeParseException ex)
+		{
+			return false;
+		}
+	}
+
+	static String contentType(String fileName)
+	{
+		final String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+		switch (extension)
+		{
+		case "svg":
+			return "image/svg+xml";
+		case "png":
+			return "image/png";
+		case "html":
+			return "text/html; charset=utf-8";
+		case "txt":
+		case "yaml":
+		case "md":
+		case "java":
+			return "text/plain; charset=utf-8";
+		default:
+			return "application/octet-stream";
+		}
+	}
+
+	private static HaltException notFound()
+	{
+		// language=JSON
+		return Spark.halt(404, "{\n" + "  \"error\": \"file not found\"\n" + "}");
+	}
+
+	// =============== Methods ===============
+
+	public Object handle(Request req, Response res) throws IOException
+	{
+		final String id = req.params(":id");
+		final String[] splat = req.splat();
+		if (id == null || id.contains("..") || splat == null || splat.length == 0)
+		{
+			throw notFound();
+		}
+
+		// the directory is not deleted while the file is sent
+		try (final TempSpaceManager.Lease lease = this.tempSpace.lease(id))
+		{
+			final Path dir = this.tempSpace.getDirectory(id);
+			final Path file = dir.resolve(splat[0]).normalize();
+			if (!lease.isAvailable() || !file.startsWith(dir) || !Files.isRegularFile(file))
+			{
+				throw notFound();
+			}
+
+			final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			final long lastModified = attributes.lastModifiedTime().toMillis();
+			final String etag = etag(attributes);
+
+			res.header("ETag", etag);
+			res.header("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC)));
+			res.header("Cache-Control", "private, no-cache");
+
+			if (notModified(req.headers("If-None-Match"), req.headers("If-Modified-Since"), etag, lastModified))
+			{
+				res.status(304);
+				return "";
+			}
+
+			res.type(contentType(file.getFileName().toString()));
+			final HttpServletResponse raw = res.raw();
+			raw.setContentLengthLong(attributes.size());
+			Files.copy(file, raw.getOutputStream());
+			return raw;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.fulib.webapp.tool;
+
+/**
+ * The budgets that {@link RunLimits} enforces for the tests of a run.
+ * Exceeding one yields the exit code {@link #getExitCode()}.
+ */
+public enum RunLimit
+{
+	WALL_TIME("timeout", "wall time"),
+	CPU_TIME("cpu", "CPU time"),
+	MEMORY("memory", "allocation");
+
+	/**
+	 * Set in exit codes of runs that exceeded a limit, so they are not mistaken for a number of failed tests.
+	 */
+	public static final int EXCEEDED = 1 << 30;
+
+	private final String id;
+	private final String description;
+
+	RunLimit(String id, String description)
+	{
+		this.id = id;
+		this.description = description;
+	}
+
+	public String getId()
+	{
+		return this.id;
+	}
+
+	public String getDescription()
+	{
+		return this.description;
+	}
+
+	/**
+	 * @return the exit code of a run that exceeded this limit:
+	 * the {@link #EXCEEDED} flag, {@code ordinal + 1} in the code bits and the {@link Stage#TESTS} stage
+	 */
+	public int getExitCode()
+	{
+		return EXCEEDED | (this.ordinal() + 1) << 2 | Stage.TESTS.ordinal();
+	}
+
+	/**
+	 * @return the limit that a run with the given exit code exceeded, or {@code null} if it did not exceed any
+	 */
+	public static RunLimit fromExitCode(int exitCode)
+	{
+		if (exitCode < 0 || (exitCode & EXCEEDED) == 0)
+		{
+			return null;
+		}
+		final int index = ((exitCode & ~EXCEEDED) >> 2) - 1;
+		final RunLimit[] values = values();
+		return index >= 0 && index < values.length ? values[index] : null;
+	}
+}
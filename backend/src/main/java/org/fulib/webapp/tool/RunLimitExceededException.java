@@ -0,0 +1,20 @@
+package org.fulib.webapp.tool;
+
+/**
+ * Thrown by {@link RunLimits#call} when the task exceeded one of the limits and was stopped.
+ */
+public class RunLimitExceededException extends Exception
+{
+	private final RunLimit limit;
+
+	public RunLimitExceededException(RunLimit limit, String message)
+	{
+		super(message);
+		this.limit = limit;
+	}
+
+	public RunLimit getLimit()
+	{
+		return this.limit;
+	}
+}
@@ -0,0 +1,249 @@
+package org.fulib.webapp.tool;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces budgets for the generated code of a run, so that an endless loop or runaway allocation in one scenario
+ * does not take CPU and memory from all others.
+ * Configured with the {@code FULIB_RUN_TIMEOUT} (wall time in ms, default: 10000),
+ * {@code FULIB_RUN_CPU_LIMIT} (CPU time in ms, default: 10000) and
+ * {@code FULIB_RUN_MEMORY_LIMIT} (allocated bytes, default: 1 GiB) environment variables;
+ * {@code 0} disables a limit.
+ * <p>
+ * Tasks run on a thread of their own that a watchdog checks every {@code FULIB_RUN_CHECK_INTERVAL} ms (default: 20).
+ * When a task goes over budget, its threads are interrupted and the caller is released right away.
+ * <p>
+ * Code that ignores the interrupt keeps its thread busy until it ends, but the caller does not wait for it.
+ * Such threads cannot be stopped from within the JVM, so there are at most {@code FULIB_RUN_THREADS} run threads
+ * (default: twice {@code FULIB_CODEGEN_THREADS}) and tasks are rejected while all of them are busy.
+ * Once half of them are held by stopped runs, the instance reports itself as not {@link #isHealthy() healthy},
+ * so that it is taken out of rotation and restarted.
+ */
+@Singleton
+public class RunLimits
+{
+	// =============== Fields ===============
+
+	private final long timeoutNanos;
+	private final long cpuNanos;
+	private final long memoryBytes;
+	private final int maxThreads;
+
+	private final ThreadPoolExecutor runThreads;
+	private final ScheduledExecutorService watchdog;
+
+	private final Set<RunBudget> running = ConcurrentHashMap.newKeySet();
+	// runs that went over budget while some of their threads are still busy
+	private final Set<RunBudget> stopped = ConcurrentHashMap.newKeySet();
+	private final Map<RunLimit, AtomicLong> exceeded = new EnumMap<>(RunLimit.class);
+
+	// =============== Constructors ===============
+
+	@Inject
+	public RunLimits()
+	{
+		this(Env.getLong("FULIB_RUN_TIMEOUT", 10_000), Env.getLong("FULIB_RUN_CPU_LIMIT", 10_000),
+		     Env.getLong("FULIB_RUN_MEMORY_LIMIT", 1L << 30), Env.getLong("FULIB_RUN_CHECK_INTERVAL", 20),
+		     Env.getInt("FULIB_RUN_THREADS",
+		                2 * Env.getInt("FULIB_CODEGEN_THREADS", Runtime.getRuntime().availableProcessors())));
+	}
+
+	public RunLimits(long timeoutMillis, long cpuMillis, long memoryBytes, long checkIntervalMillis)
+	{
+		this(timeoutMillis, cpuMillis, memoryBytes, checkIntervalMillis, 64);
+	}
+
+	public RunLimits(long timeoutMillis, long cpuMillis, long memoryBytes, long checkIntervalMillis, int maxThreads)
+	{
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		this.cpuNanos = TimeUnit.MILLISECONDS.toNanos(cpuMillis);
+		this.memoryBytes = memoryBytes;
+		this.maxThreads = maxThreads;
+
+		for (final RunLimit limit : RunLimit.values())
+		{
+			this.exceeded.put(limit, new AtomicLong());
+		}
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			final Thread thread = new Thread(runnable, "run-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.runThreads = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+		                                         threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+		this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "run-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.watchdog.scheduleAtFixedRate(this::check, checkIntervalMillis, checkIntervalMillis,
+		                                  TimeUnit.MILLISECONDS);
+	}
+
+	// =============== Properties ===============
+
+	/**
+	 * @return the number of threads running generated code,
+	 * including those of runs that exceeded a limit but did not react to the interrupt yet
+	 */
+	public int getBusyThreads()
+	{
+		return this.runThreads.getActiveCount();
+	}
+
+	/**
+	 * @return the number of threads still busy with runs that went over budget
+	 */
+	public int getStuckThreads()
+	{
+		int count = 0;
+		for (final RunBudget budget : this.stopped)
+		{
+			count += budget.getThreadCount();
+		}
+		return count;
+	}
+
+	/**
+	 * @return {@code false} once half of the run threads are held by runs that were stopped but did not end
+	 */
+	public boolean isHealthy()
+	{
+		return this.getStuckThreads() < (this.maxThreads + 1) / 2;
+	}
+
+	public long getExceeded(RunLimit limit)
+	{
+		return this.exceeded.get(limit).get();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Runs the task on a thread of its own within the budget.
+	 *
+	 * @return the result of the task
+	 *
+	 * @throws RunLimitExceededException
+	 * 	if the task went over budget and was stopped
+	 * @throws RejectedExecutionException
+	 * 	if all run threads are busy
+	 * @throws Exception
+	 * 	if the task threw it
+	 */
+	public <T> T call(Callable<T> task) throws Exception
+	{
+		return this.call(new RunBudget(System.nanoTime()), task);
+	}
+
+	/**
+	 * Like {@link #call(Callable)}, but accounts the task to the given budget,
+	 * so that the caller can read what it used afterwards.
+	 */
+	<T> T call(RunBudget budget, Callable<T> task) throws Exception
+	{
+		final Future<T> future = this.runThreads.submit(() -> budget.call(task));
+		budget.setFuture(future);
+		this.running.add(budget);
+		try
+		{
+			return future.get();
+		}
+		catch (CancellationException ex)
+		{
+			final RunLimit limit = budget.getExceeded();
+			if (limit == null)
+			{
+				throw ex;
+			}
+			// counted here rather than by the watchdog, so that the count is up to date when the caller returns
+			this.exceeded.get(limit).incrementAndGet();
+			if (budget.getThreadCount() > 0)
+			{
+				this.stopped.add(budget);
+			}
+			throw new RunLimitExceededException(limit, this.getMessage(limit));
+		}
+		catch (ExecutionException ex)
+		{
+			final Throwable cause = ex.getCause();
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw (Exception) cause;
+		}
+		catch (InterruptedException ex)
+		{
+			future.cancel(true);
+			throw ex;
+		}
+		finally
+		{
+			this.running.remove(budget);
+		}
+	}
+
+	private String getMessage(RunLimit limit)
+	{
+		switch (limit)
+		{
+		case WALL_TIME:
+			return "The tests did not finish within " + TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos)
+			       + " ms and were stopped.";
+		case CPU_TIME:
+			return "The tests used more than " + TimeUnit.NANOSECONDS.toMillis(this.cpuNanos)
+			       + " ms of CPU time and were stopped.";
+		default:
+			return "The tests allocated more than " + this.memoryBytes / (1024 * 1024)
+			       + " MiB of memory and were stopped.";
+		}
+	}
+
+	void check()
+	{
+		final long now = System.nanoTime();
+		for (final RunBudget budget : this.running)
+		{
+			final RunLimit limit = this.check(budget, now);
+			if (limit != null)
+			{
+				budget.exceed(limit);
+			}
+		}
+		this.stopped.removeIf(budget -> budget.getThreadCount() == 0);
+	}
+
+	private RunLimit check(RunBudget budget, long now)
+	{
+		if (this.timeoutNanos > 0 && budget.getWallNanos(now) > this.timeoutNanos)
+		{
+			return RunLimit.WALL_TIME;
+		}
+		if (this.cpuNanos > 0 && budget.getCpuNanos() > this.cpuNanos)
+		{
+			return RunLimit.CPU_TIME;
+		}
+		if (this.memoryBytes > 0 && budget.getAllocatedBytes() > this.memoryBytes)
+		{
+			return RunLimit.MEMORY;
+		}
+		return null;
+	}
+
+	public void shutdown()
+	{
+		this.watchdog.shutdownNow();
+		this.runThreads.shutdownNow();
+	}
+}
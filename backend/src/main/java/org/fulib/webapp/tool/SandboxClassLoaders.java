@@ -0,0 +1,102 @@
+package org.fulib.webapp.tool;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the class loaders that generated code runs in.
+ * All of them share one parent, the loader of the backend, which provides the fulib and JUnit classes,
+ * so only the few classes generated for a run are defined per run.
+ * Run loaders must be closed when the run is finished, see {@link MemoryClassLoader#close()}.
+ * Also reports metaspace usage, to watch how well generated classes are unloaded.
+ */
+@Singleton
+public class SandboxClassLoaders
+{
+	// =============== Constants ===============
+
+	private static final ClassLoader PARENT = SandboxClassLoaders.class.getClassLoader();
+
+	private static final MemoryPoolMXBean METASPACE = ManagementFactory
+		.getMemoryPoolMXBeans()
+		.stream()
+		.filter(pool -> "Metaspace".equals(pool.getName()))
+		.findFirst()
+		.orElse(null);
+
+	// =============== Fields ===============
+
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong closed = new AtomicLong();
+
+	// =============== Constructors ===============
+
+	@Inject
+	public SandboxClassLoaders()
+	{
+	}
+
+	// =============== Properties ===============
+
+	public long getCreated()
+	{
+		return this.created.get();
+	}
+
+	public long getClosed()
+	{
+		return this.closed.get();
+	}
+
+	/**
+	 * @return the number of run loaders that were created but not closed yet
+	 */
+	public long getOpen()
+	{
+		return this.created.get() - this.closed.get();
+	}
+
+	/**
+	 * @return the bytes of metaspace in use, or {@code -1} if the JVM does not report it
+	 */
+	public static long getMetaspaceUsed()
+	{
+		return METASPACE != null ? METASPACE.getUsage().getUsed() : -1;
+	}
+
+	/**
+	 * @return the bytes of metaspace committed, or {@code -1} if the JVM does not report it
+	 */
+	public static long getMetaspaceCommitted()
+	{
+		return METASPACE != null ? METASPACE.getUsage().getCommitted() : -1;
+	}
+
+	public static int getLoadedClassCount()
+	{
+		return ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+	}
+
+	public static long getUnloadedClassCount()
+	{
+		return ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * @param classes
+	 * 	the class file bytes of the run, by binary name
+	 *
+	 * @return a new loader for the classes of one run, which must be closed after the run
+	 */
+	public MemoryClassLoader newLoader(Map<String, byte[]> classes)
+	{
+		this.created.incrementAndGet();
+		return new MemoryClassLoader(PARENT, classes, this.closed::incrementAndGet);
+	}
+}
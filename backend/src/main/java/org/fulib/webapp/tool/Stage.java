@@ -0,0 +1,25 @@
+package org.fulib.webapp.tool;
+
+/**
+ * The stages of {@link Tools#genCompileRun}, in order.
+ * The ordinal is the stage encoded in the lower two bits of the exit code.
+ */
+public enum Stage
+{
+	SCENARIOC("scenarioc"),
+	JAVAC_MODEL("javac-model"),
+	JAVAC_TEST("javac-test"),
+	TESTS("tests");
+
+	private final String id;
+
+	Stage(String id)
+	{
+		this.id = id;
+	}
+
+	public String getId()
+	{
+		return this.id;
+	}
+}
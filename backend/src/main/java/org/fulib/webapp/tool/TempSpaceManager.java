@@ -0,0 +1,403 @@
+package org.fulib.webapp.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps track of the project directories of code generation runs, whose files are served by {@link RunFiles}.
+ * Directories are deleted when they are older than {@code FULIB_TEMP_MAX_AGE} seconds (default 1 hour),
+ * or, least recently used first, when all directories together exceed {@code FULIB_TEMP_QUOTA} bytes (default 1 GiB).
+ * Once {@link #start() started}, a single background thread sweeps
+ * every {@code FULIB_TEMP_SWEEP_INTERVAL} seconds (default 1 minute), and right away when the quota is exceeded.
+ * Directories left over from a previous process are deleted when it is started.
+ * A directory that is leased, e.g. while a response reads its files, is not deleted until the lease is closed.
+ */
+@Singleton
+public class TempSpaceManager
+{
+	// =============== Constants ===============
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TempSpaceManager.class);
+
+	private static final long DEFAULT_QUOTA = 1024L * 1024 * 1024;
+	private static final long DEFAULT_MAX_AGE_SECONDS = 60 * 60;
+	private static final long DEFAULT_SWEEP_INTERVAL_SECONDS = 60;
+
+	// =============== Fields ===============
+
+	private final Path baseDir;
+	private final long quota;
+	private final long maxAgeNanos;
+	private final LongSupplier clock;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+	private long bytes; // guarded by this
+	private boolean sweepPending; // guarded by this
+	private boolean started; // guarded by this
+	private final Map<String, Integer> leases = new HashMap<>(); // guarded by this
+	private final Set<String> deleting = new HashSet<>(); // guarded by this
+
+	private final AtomicLong deletedDirectories = new AtomicLong();
+	private final AtomicLong deletedBytes = new AtomicLong();
+	private final AtomicLong quotaEvictions = new AtomicLong();
+
+	private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "temp-space-sweeper");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// =============== Constructors ===============
+
+	@Inject
+	public TempSpaceManager()
+	{
+		this(Paths.get(System.getProperty("java.io.tmpdir"), "fulib.org", "api", "runcodegen"),
+		     Env.getLong("FULIB_TEMP_QUOTA", DEFAULT_QUOTA),
+		     TimeUnit.SECONDS.toNanos(Env.getLong("FULIB_TEMP_MAX_AGE", DEFAULT_MAX_AGE_SECONDS)), System::nanoTime);
+	}
+
+	/**
+	 * Creates a manager that only sweeps when {@link #sweep()} is called or the quota is exceeded,
+	 * until it is {@link #start() started}.
+	 */
+	TempSpaceManager(Path baseDir, long quota, long maxAgeNanos, LongSupplier clock)
+	{
+		this.baseDir = baseDir;
+		this.quota = quota;
+		this.maxAgeNanos = maxAgeNanos;
+		this.clock = clock;
+	}
+
+	// =============== Properties ===============
+
+	public long getQuota()
+	{
+		return this.quota;
+	}
+
+	/**
+	 * @return the total size of the registered directories, in bytes
+	 */
+	public synchronized long getBytes()
+	{
+		return this.bytes;
+	}
+
+	/**
+	 * @return the number of registered directories
+	 */
+	public synchronized int getDirectories()
+	{
+		return this.entries.size();
+	}
+
+	public long getDeletedDirectories()
+	{
+		return this.deletedDirectories.get();
+	}
+
+	public long getDeletedBytes()
+	{
+		return this.deletedBytes.get();
+	}
+
+	/**
+	 * @return the number of directories deleted before their time because the quota was exceeded
+	 */
+	public long getQuotaEvictions()
+	{
+		return this.quotaEvictions.get();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Deletes the directories left over from a previous process, and starts sweeping periodically.
+	 * Only called by the service, so that tests and tools never delete the directories of a running server.
+	 */
+	public synchronized void start()
+	{
+		if (this.started)
+		{
+			return;
+		}
+		this.started = true;
+
+		// listed now, so that directories of new runs are not mistaken for leftovers
+		final List<Path> leftovers = this.listLeftovers();
+		if (!leftovers.isEmpty())
+		{
+			this.sweeper.execute(() -> this.deleteLeftovers(leftovers));
+		}
+
+		final long interval = Env.getLong("FULIB_TEMP_SWEEP_INTERVAL", DEFAULT_SWEEP_INTERVAL_SECONDS);
+		this.sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return the directory for the run with the given id, which may not exist yet
+	 */
+	public Path getDirectory(String id)
+	{
+		return this.baseDir.resolve(id);
+	}
+
+	/**
+	 * Starts tracking the directory of a finished run, whose size is measured by walking it.
+	 *
+	 * @param id
+	 * 	the id of the run
+	 */
+	public void register(String id)
+	{
+		this.register(id, sizeOf(this.getDirectory(id)));
+	}
+
+	/**
+	 * Starts tracking the directory of a finished run whose size is already known, e.g. from a
+	 * {@link WorkspaceScanner}.
+	 *
+	 * @param id
+	 * 	the id of the run
+	 * @param size
+	 * 	the size of all files in the directory, in bytes
+	 */
+	public synchronized void register(String id, long size)
+	{
+		final Entry old = this.entries.put(id, new Entry(id, size, this.clock.getAsLong()));
+		this.bytes += size - (old != null ? old.size : 0);
+
+		if (this.bytes > this.quota && !this.sweepPending)
+		{
+			this.sweepPending = true;
+			this.sweeper.execute(this::sweep);
+		}
+	}
+
+	/**
+	 * Marks the directory of a run as recently used, so that it is evicted last when the quota is exceeded.
+	 *
+	 * @param id
+	 * 	the id of the run
+	 *
+	 * @return {@code true} if the directory is still available, {@code false} if it was deleted
+	 */
+	public synchronized boolean touch(String id)
+	{
+		return this.entries.get(id) != null;
+	}
+
+	/**
+	 * Keeps the directory of a run from being deleted until the lease is closed.
+	 * The directory need not be registered yet.
+	 *
+	 * @param id
+	 * 	the id of the run
+	 *
+	 * @return the lease, which tells if the directory still exists
+	 */
+	public Lease lease(String id)
+	{
+		synchronized (this)
+		{
+			if (this.deleting.contains(id))
+			{
+				return new Lease(null, id, false);
+			}
+			this.leases.merge(id, 1, Integer::sum);
+		}
+		return new Lease(this, id, Files.isDirectory(this.getDirectory(id)));
+	}
+
+	private synchronized void release(String id)
+	{
+		if (this.leases.merge(id, -1, Integer::sum) == 0)
+		{
+			this.leases.remove(id);
+		}
+		if (this.bytes > this.quota && !this.sweepPending)
+		{
+			this.sweepPending = true;
+			this.sweeper.execute(this::sweep);
+		}
+	}
+
+	/**
+	 * Deletes directories that are too old, and then the least recently used ones until the quota is met.
+	 * Leased directories are skipped.
+	 */
+	public void sweep()
+	{
+		final List<Entry> victims = new ArrayList<>();
+		synchronized (this)
+		{
+			this.sweepPending = false;
+
+			final long now = this.clock.getAsLong();
+			for (final Iterator<Entry> iterator = this.entries.values().iterator(); iterator.hasNext(); )
+			{
+				final Entry entry = iterator.next();
+				if (now - entry.createdNanos > this.maxAgeNanos && !this.leases.containsKey(entry.id))
+				{
+					iterator.remove();
+					this.bytes -= entry.size;
+					victims.add(entry);
+				}
+			}
+
+			// in access order, least recently used first
+			for (final Iterator<Entry> iterator = this.entries.values().iterator();
+			     this.bytes > this.quota && iterator.hasNext(); )
+			{
+				final Entry entry = iterator.next();
+				if (this.leases.containsKey(entry.id))
+				{
+					continue;
+				}
+				iterator.remove();
+				this.bytes -= entry.size;
+				victims.add(entry);
+				this.quotaEvictions.incrementAndGet();
+			}
+
+			for (final Entry victim : victims)
+			{
+				this.deleting.add(victim.id);
+			}
+		}
+
+		// deleted outside the lock, so that registering new runs is not blocked
+		for (final Entry victim : victims)
+		{
+			Tools.deleteRecursively(this.getDirectory(victim.id));
+			this.deletedDirectories.incrementAndGet();
+			this.deletedBytes.addAndGet(victim.size);
+			synchronized (this)
+			{
+				this.deleting.remove(victim.id);
+			}
+		}
+	}
+
+	List<Path> listLeftovers()
+	{
+		if (!Files.isDirectory(this.baseDir))
+		{
+			return List.of();
+		}
+
+		try (final Stream<Path> stream = Files.list(this.baseDir))
+		{
+			return stream.collect(Collectors.toList());
+		}
+		catch (IOException e)
+		{
+			LOGGER.warn("failed to list leftover directories in " + this.baseDir, e);
+			return List.of();
+		}
+	}
+
+	void deleteLeftovers(List<Path> leftovers)
+	{
+		for (final Path leftover : leftovers)
+		{
+			Tools.deleteRecursively(leftover);
+		}
+		LOGGER.info("deleted " + leftovers.size() + " leftover directories from " + this.baseDir);
+	}
+
+	public void shutdown()
+	{
+		this.sweeper.shutdown();
+	}
+
+	private static long sizeOf(Path dir)
+	{
+		try (final Stream<Path> stream = Files.walk(dir))
+		{
+			return stream.filter(Files::isRegularFile).mapToLong(file -> {
+				try
+				{
+					return Files.size(file);
+				}
+				catch (IOException e)
+				{
+					return 0;
+				}
+			}).sum();
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+
+	// =============== Classes ===============
+
+	/**
+	 * A lease on the directory of a run, see {@link #lease(String)}.
+	 */
+	public static final class Lease implements AutoCloseable
+	{
+		private final TempSpaceManager manager; // null if the lease holds nothing
+		private final String id;
+		private final boolean available;
+		private boolean closed;
+
+		Lease(TempSpaceManager manager, String id, boolean available)
+		{
+			this.manager = manager;
+			this.id = id;
+			this.available = available;
+		}
+
+		/**
+		 * @return {@code true} if the directory existed when the lease was taken, and thus exists until it is closed
+		 */
+		public boolean isAvailable()
+		{
+			return this.available;
+		}
+
+		@Override
+		public void close()
+		{
+			if (this.closed || this.manager == null)
+			{
+				return;
+			}
+			this.closed = true;
+			this.manager.release(this.id);
+		}
+	}
+
+	private static class Entry
+	{
+		final String id;
+		final long size;
+		final long createdNanos;
+
+		Entry(String id, long size, long createdNanos)
+		{
+			this.id = id;
+			this.size = size;
+			this.createdNanos = createdNanos;
+		}
+	}
+}
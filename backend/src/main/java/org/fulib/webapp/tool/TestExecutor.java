@@ -0,0 +1,77 @@
+package org.fulib.webapp.tool;
+
+import org.junit.runner.Computer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides how generated tests are run.
+ * With {@code FULIB_TEST_THREADS} greater than {@code 1}, the test methods of all runs share a pool of that many
+ * threads, see {@link ParallelTestComputer}; threads held by test methods of stopped runs are replaced,
+ * see {@link TestThreadPool}. Otherwise (the default), the tests run one after another on the thread of the run.
+ */
+@Singleton
+public class TestExecutor
+{
+	// =============== Fields ===============
+
+	private final TestThreadPool executor;
+
+	// =============== Constructors ===============
+
+	@Inject
+	public TestExecutor()
+	{
+		this(Env.getInt("FULIB_TEST_THREADS", 1));
+	}
+
+	public TestExecutor(int threads)
+	{
+		if (threads <= 1)
+		{
+			this.executor = null;
+			return;
+		}
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			final Thread thread = new Thread(runnable, "test-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new TestThreadPool(threads, threadFactory);
+	}
+
+	// =============== Properties ===============
+
+	public boolean isParallel()
+	{
+		return this.executor != null;
+	}
+
+	/**
+	 * @return the number of pool threads still held by test methods of stopped runs
+	 */
+	public int getAbandonedThreads()
+	{
+		return this.executor != null ? this.executor.getAbandoned() : 0;
+	}
+
+	public Computer getComputer()
+	{
+		return this.executor != null ? new ParallelTestComputer(this.executor) : Computer.serial();
+	}
+
+	// =============== Methods ===============
+
+	public void shutdown()
+	{
+		if (this.executor != null)
+		{
+			this.executor.shutdown();
+		}
+	}
+}
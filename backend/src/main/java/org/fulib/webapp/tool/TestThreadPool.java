@@ -0,0 +1,108 @@
+package org.fulib.webapp.tool;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared pool behind {@link ParallelTestComputer}.
+ * A test method that ignores the interrupt when its run is stopped keeps its thread until it ends,
+ * so the pool starts a replacement thread for it and shrinks back once the test method ends.
+ * At most as many replacements as regular threads are started, so a test method that never ends
+ * cannot take more than the pool once had.
+ */
+class TestThreadPool extends ThreadPoolExecutor
+{
+	// =============== Fields ===============
+
+	private final int threads;
+
+	// guarded by this
+	private final Set<Runnable> running = new HashSet<>();
+	private final Set<Runnable> abandoned = new HashSet<>();
+
+	// =============== Constructors ===============
+
+	TestThreadPool(int threads, ThreadFactory threadFactory)
+	{
+		super(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		this.threads = threads;
+	}
+
+	// =============== Properties ===============
+
+	/**
+	 * @return the number of test methods that were cancelled but still occupy a thread
+	 */
+	synchronized int getAbandoned()
+	{
+		return this.abandoned.size();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Cancels a task of this pool.
+	 * If the task already runs and does not end right away, a replacement thread takes its place in the pool.
+	 */
+	void cancel(Future<?> future)
+	{
+		future.cancel(true);
+		if (!(future instanceof Runnable) || this.remove((Runnable) future))
+		{
+			// did not start yet
+			return;
+		}
+
+		synchronized (this)
+		{
+			if (this.running.contains(future) && this.abandoned.add((Runnable) future))
+			{
+				this.resize();
+			}
+		}
+	}
+
+	@Override
+	protected void beforeExecute(Thread thread, Runnable task)
+	{
+		synchronized (this)
+		{
+			this.running.add(task);
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable task, Throwable throwable)
+	{
+		synchronized (this)
+		{
+			this.running.remove(task);
+			if (this.abandoned.remove(task))
+			{
+				this.resize();
+			}
+		}
+	}
+
+	// guarded by this
+	private void resize()
+	{
+		final int size = this.threads + Math.min(this.abandoned.size(), this.threads);
+		if (size > this.getMaximumPoolSize())
+		{
+			this.setMaximumPoolSize(size);
+			this.setCorePoolSize(size);
+		}
+		else
+		{
+			// excess threads end when they become idle
+			this.setCorePoolSize(size);
+			this.setMaximumPoolSize(size);
+		}
+	}
+}
@@ -1,15 +1,18 @@
 package org.fulib.webapp.tool;
 
+import org.apache.commons.io.output.TeeOutputStream;
 import org.fulib.scenarios.tool.ScenarioCompiler;
+import org.fulib.webapp.tool.model.Method;
+import org.junit.runner.Computer;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.Runner;
 import org.junit.runner.notification.Failure;
 
 import javax.tools.ToolProvider;
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -17,12 +20,20 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Tools
 {
+	// --------------- Constants ---------------
+
+	// JUnitCore only keeps the state of a run in a listener that it removes afterwards, so it can be reused.
+	// Its notifier is not meant for concurrent runs, hence one per thread.
+	private static final ThreadLocal<JUnitCore> JUNIT_CORE = ThreadLocal.withInitial(JUnitCore::new);
+
 	// --------------- File Filters ---------------
 
 	public static boolean isJava(Path file)
@@ -56,6 +67,14 @@ public class Tools
 		}
 	}
 
+	public static List<Path> collectJavaFiles(Path dir) throws IOException
+	{
+		try (final Stream<Path> stream = Files.walk(dir))
+		{
+			return stream.filter(Tools::isJava).sorted().collect(Collectors.toList());
+		}
+	}
+
 	// --------------- Tool Invocation ---------------
 
 	public static int scenarioc(
@@ -85,17 +104,13 @@ public class Tools
 
 		ArrayList<String> args = new ArrayList<>();
 
-		Arrays.stream(sourceFolders).flatMap(sourceFolder -> {
-			try
-			{
-				// noinspection resource
-				return Files.walk(sourceFolder).filter(Tools::isJava);
-			}
-			catch (IOException e)
+		for (final Path sourceFolder : sourceFolders)
+		{
+			for (final Path file : collectJavaFiles(sourceFolder))
 			{
-				return Stream.empty();
+				args.add(file.toString());
 			}
-		}).map(Path::toString).forEach(args::add);
+		}
 
 		args.add("-d");
 		args.add(outFolder.toString());
@@ -108,6 +123,47 @@ public class Tools
 		return ToolProvider.getSystemJavaCompiler().run(null, out, err, args.toArray(new String[0]));
 	}
 
+	/**
+	 * Compiles the given source files in memory, without reusing any compiler state.
+	 *
+	 * @see JavaCompilerService#compile(OutputStream, Map, Map, List)
+	 */
+	public static int javac(OutputStream err, String classpath, Map<String, byte[]> classPathClasses,
+		Map<String, byte[]> outputClasses, List<Path> sourceFiles) throws IOException
+	{
+		try (final JavaCompilerService compiler = new JavaCompilerService(classpath))
+		{
+			return compiler.compile(err, classPathClasses, outputClasses, sourceFiles);
+		}
+	}
+
+	/**
+	 * Runs the tests in the given classes.
+	 * The classes are loaded without initializing them, JUnit initializes them when it creates the test instances.
+	 */
+	public static Result runTests(ClassLoader classLoader, List<String> testClassNames)
+	{
+		return JUNIT_CORE.get().run(testRunner(classLoader, testClassNames, Computer.serial()));
+	}
+
+	static Runner testRunner(ClassLoader classLoader, List<String> testClassNames, Computer computer)
+	{
+		final List<Class<?>> testClasses = new ArrayList<>(testClassNames.size());
+		for (final String className : testClassNames)
+		{
+			try
+			{
+				testClasses.add(Class.forName(className, false, classLoader));
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new AssertionError(className + " should exist", e);
+			}
+		}
+
+		return Request.classes(computer, testClasses.toArray(new Class[0])).getRunner();
+	}
+
 	public static Result runTests(Path mainClassesDir, Path testClassesDir)
 	{
 		URL[] classPathUrls = new URL[0];
@@ -169,16 +225,13 @@ public class Tools
 
 			String classPath = System.getProperty("java.class.path");
 
-			try (final Stream<Path> stream = Files.walk(modelSrcDir))
+			if (!collectJavaFiles(modelSrcDir).isEmpty())
 			{
-				if (stream.anyMatch(Tools::isJava))
+				// only compile model folder if there are any java files.
+				final int modelJavac = javac(out, err, classPath, modelClassesDir, modelSrcDir);
+				if (modelJavac != 0)
 				{
-					// only compile model folder if there are any java files.
-					final int modelJavac = javac(out, err, classPath, modelClassesDir, modelSrcDir);
-					if (modelJavac != 0)
-					{
-						return modelJavac << 2 | 1;
-					}
+					return modelJavac << 2 | 1;
 				}
 			}
 
@@ -191,17 +244,161 @@ public class Tools
 
 			// call all test methods
 			final Result testResult = Tools.runTests(modelClassesDir, testClassesDir);
+			return printFailures(testResult.getFailures(), printErr);
+		}
+		catch (Exception ex)
+		{
+			ex.printStackTrace(printErr);
+			return -1;
+		}
+		finally
+		{
+			printErr.flush();
+		}
+	}
+
+	/**
+	 * Like {@link #genCompileRun(OutputStream, OutputStream, Path, Path, Path, Path, Path, String...)},
+	 * but compiles and runs the generated code in memory using the given compiler service,
+	 * in a class loader from the given sandbox that is closed after the tests.
+	 * Only the scenario compiler output (sources and diagrams) is written to disk.
+	 * The tests are run by the given computer, e.g. {@link Computer#serial()} or a {@link ParallelTestComputer};
+	 * either way, failures are printed in the order of the test plan.
+	 * The tests must stay within the given limits, otherwise the exit code is that of the exceeded {@link RunLimit};
+	 * if the limits have no thread left for the tests, the {@link RejectedExecutionException} is thrown.
+	 * The listener is notified when each {@link Stage} starts and finishes.
+	 */
+	public static int genCompileRun(//
+		JavaCompilerService compiler, SandboxClassLoaders sandbox, Computer testComputer, RunLimits limits,//
+		PipelineListener listener,//
+		OutputStream out, OutputStream err,//
+		Path srcDir, //
+		Path modelSrcDir, Path testSrcDir,//
+		String... scenariocArgs
+	) throws Exception
+	{
+		return genCompileRun(compiler, sandbox, testComputer, limits, listener, out, err,
+		                     new WorkspaceScanner(srcDir, modelSrcDir, testSrcDir), null, null, scenariocArgs);
+	}
+
+	/**
+	 * Like {@link #genCompileRun(JavaCompilerService, SandboxClassLoaders, Computer, RunLimits, PipelineListener,
+	 * OutputStream, OutputStream, Path, Path, Path, String...)}, but takes the generated sources from the given
+	 * workspace, which is scanned after the scenario compiler, so later stages can reuse the index.
+	 * If a method extractor is given, it receives the syntax trees of the compiled sources.
+	 * If a model cache is given, a model that was compiled before is not compiled again.
+	 */
+	public static int genCompileRun(//
+		JavaCompilerService compiler, SandboxClassLoaders sandbox, Computer testComputer, RunLimits limits,//
+		PipelineListener listener,//
+		OutputStream out, OutputStream err,//
+		WorkspaceScanner workspace, MethodExtractor methods, ModelCache modelCache,//
+		String... scenariocArgs
+	) throws Exception
+	{
+		final PrintStream printErr = new PrintStream(err, false, StandardCharsets.UTF_8);
+
+		try
+		{
+			listener.stageStarted(Stage.SCENARIOC);
+			final int scenarioc = scenarioc(out, err, workspace.getSrcDir(), workspace.getModelSrcDir(),
+			                                workspace.getTestSrcDir(), scenariocArgs);
+			listener.stageFinished(Stage.SCENARIOC, scenarioc);
+			if (scenarioc != 0)
+			{
+				return scenarioc << 2;
+			}
+
+			workspace.scanSources();
 
-			for (final Failure failure : testResult.getFailures())
+			Map<String, byte[]> modelClasses = new HashMap<>();
+			final List<Path> modelSources = workspace.getModelSources();
+			if (!modelSources.isEmpty())
 			{
-				printErr.print(failure.getTestHeader());
-				printErr.println("failed:");
+				// only compile model folder if there are any java files.
+				final String modelKey = modelCache != null && modelCache.isEnabled() ? ModelCache.key(
+					compiler.getClassPath(), workspace.getModelSrcDir(), modelSources) : null;
+				final ModelCache.Entry cached = modelKey != null ? modelCache.get(modelKey) : null;
 
-				failure.getException().printStackTrace(printErr);
+				listener.stageStarted(Stage.JAVAC_MODEL);
+				if (cached != null)
+				{
+					modelClasses = cached.getClasses();
+					err.write(cached.getOutput(workspace.getModelSrcDir()).getBytes(StandardCharsets.UTF_8));
+					if (methods != null)
+					{
+						restoreMethods(workspace, methods, cached);
+					}
+					listener.stageFinished(Stage.JAVAC_MODEL, 0);
+				}
+				else
+				{
+					// kept along with the model, so that a run with the cached model prints the same warnings
+					final ByteArrayOutputStream modelOutput = new ByteArrayOutputStream();
+					final OutputStream modelErr = modelKey != null ? new TeeOutputStream(err, modelOutput) : err;
+					final int modelJavac = compiler.compile(modelErr, Collections.emptyMap(), modelClasses,
+					                                        modelSources,
+					                                        methods != null ? methods.extractor(true) : null);
+					listener.stageFinished(Stage.JAVAC_MODEL, modelJavac);
+					if (modelJavac != 0)
+					{
+						return modelJavac << 2 | 1;
+					}
+					if (modelKey != null)
+					{
+						modelCache.put(modelKey, cacheEntry(workspace, methods, modelClasses,
+						                                    modelOutput.toString(StandardCharsets.UTF_8)));
+					}
+				}
 			}
 
-			final int failureCount = testResult.getFailureCount();
-			return failureCount == 0 ? 0 : failureCount << 2 | 3;
+			final Map<String, byte[]> testClasses = new HashMap<>();
+			final List<Path> testSources = workspace.getTestSources();
+			listener.stageStarted(Stage.JAVAC_TEST);
+			final int testJavac = compiler.compile(err, modelClasses, testClasses, testSources,
+			                                       methods != null ? methods.extractor(false) : null);
+			listener.stageFinished(Stage.JAVAC_TEST, testJavac);
+			if (testJavac != 0)
+			{
+				return testJavac << 2 | 2;
+			}
+
+			final Map<String, byte[]> allClasses = new HashMap<>(modelClasses);
+			allClasses.putAll(testClasses);
+
+			// same order as sorting the class file paths
+			final List<String> testClassNames = new ArrayList<>(testClasses.keySet());
+			testClassNames.sort(Comparator.comparing(name -> name.replace('.', '/') + ".class"));
+
+			// call all test methods
+			try (final MemoryClassLoader classLoader = sandbox.newLoader(allClasses))
+			{
+				listener.stageStarted(Stage.TESTS);
+				final Runner runner = testRunner(classLoader, testClassNames, testComputer);
+				// the tests run on other threads, so only the budget knows what they allocated
+				final RunBudget budget = new RunBudget(System.nanoTime());
+				final Result testResult;
+				try
+				{
+					testResult = limits.call(budget, () -> JUNIT_CORE.get().run(runner));
+				}
+				catch (RunLimitExceededException ex)
+				{
+					printErr.println(ex.getMessage());
+					final int exitCode = ex.getLimit().getExitCode();
+					listener.stageAllocated(Stage.TESTS, budget.getAllocatedBytes());
+					listener.stageFinished(Stage.TESTS, exitCode);
+					return exitCode;
+				}
+				listener.stageAllocated(Stage.TESTS, budget.getAllocatedBytes());
+				listener.stageFinished(Stage.TESTS, testResult.getFailureCount());
+				return printFailures(getFailuresInOrder(testResult, runner.getDescription()), printErr);
+			}
+		}
+		catch (RejectedExecutionException ex)
+		{
+			// not a problem of the scenario, the caller answers that the service is busy
+			throw ex;
 		}
 		catch (Exception ex)
 		{
@@ -213,4 +410,74 @@ public class Tools
 			printErr.flush();
 		}
 	}
+
+	private static ModelCache.Entry cacheEntry(WorkspaceScanner workspace, MethodExtractor methods,
+		Map<String, byte[]> modelClasses, String output)
+	{
+		final Map<String, List<Method>> modelMethods = new HashMap<>();
+		if (methods != null)
+		{
+			for (final Path file : workspace.getModelSources())
+			{
+				final List<Method> extracted = methods.getExtracted(file);
+				if (extracted != null)
+				{
+					modelMethods.put(workspace.getModelSrcDir().relativize(file).toString(), extracted);
+				}
+			}
+		}
+		return new ModelCache.Entry(modelClasses, modelMethods, output, workspace.getModelSrcDir());
+	}
+
+	private static void restoreMethods(WorkspaceScanner workspace, MethodExtractor methods, ModelCache.Entry cached)
+	{
+		for (final Path file : workspace.getModelSources())
+		{
+			final String relativePath = workspace.getModelSrcDir().relativize(file).toString();
+			final List<Method> extracted = cached.getMethods().get(relativePath);
+			if (extracted != null)
+			{
+				methods.putExtracted(file, extracted);
+			}
+		}
+	}
+
+	/**
+	 * @return the failures of the result, in the order of the tests in the plan.
+	 * Failures of tests that run in parallel are recorded in the order they finish, which varies between runs.
+	 */
+	static List<Failure> getFailuresInOrder(Result testResult, Description plan)
+	{
+		final Map<Description, Integer> positions = new HashMap<>();
+		collectPositions(plan, positions);
+
+		final List<Failure> failures = new ArrayList<>(testResult.getFailures());
+		// stable, so that several failures of the same test (e.g. in the test and in @After) keep their order
+		failures.sort(Comparator.comparingInt(
+			failure -> positions.getOrDefault(failure.getDescription(), Integer.MAX_VALUE)));
+		return failures;
+	}
+
+	private static void collectPositions(Description description, Map<Description, Integer> positions)
+	{
+		positions.putIfAbsent(description, positions.size());
+		for (final Description child : description.getChildren())
+		{
+			collectPositions(child, positions);
+		}
+	}
+
+	private static int printFailures(List<Failure> failures, PrintStream printErr)
+	{
+		for (final Failure failure : failures)
+		{
+			printErr.print(failure.getTestHeader());
+			printErr.println("failed:");
+
+			failure.getException().printStackTrace(printErr);
+		}
+
+		final int failureCount = failures.size();
+		return failureCount == 0 ? 0 : failureCount << 2 | 3;
+	}
 }
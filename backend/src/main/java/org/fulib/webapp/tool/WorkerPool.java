@@ -0,0 +1,375 @@
+package org.fulib.webapp.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the code generation pipeline in separate worker JVMs, see {@link CodeGenWorker},
+ * so that generated code cannot exhaust the heap of the web server or disturb its GC.
+ * Configured with the {@code FULIB_WORKERS} environment variable (default: {@code 0}, i.e. disabled,
+ * in which case {@link RunCodeGen} runs the pipeline in-process).
+ * <p>
+ * The workers are started right away and each runs one job at a time.
+ * A worker is replaced after {@code FULIB_WORKER_MAX_JOBS} jobs (default: 200),
+ * when it retains more than {@code FULIB_WORKER_MAX_HEAP} bytes of heap after a job (default: 256 MiB),
+ * when a job exceeded a {@link RunLimit} (its runaway thread may still be busy), or when it died.
+ * A worker that does not finish a job within {@code FULIB_WORKER_JOB_TIMEOUT} ms (default: 60000),
+ * or does not start within that time, is killed, as it cannot be relied on to react to anything else.
+ * {@code FULIB_WORKER_JVM_OPTS} are passed to the worker JVMs, e.g. {@code -Xmx512m}.
+ * Workers inherit the environment, so they apply the same {@link RunLimits} and {@link TestExecutor} settings.
+ */
+@Singleton
+public class WorkerPool
+{
+	// =============== Constants ===============
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkerPool.class);
+
+	// =============== Fields ===============
+
+	private final List<String> command;
+	private final int maxJobs;
+	private final long maxHeap;
+	private final long jobTimeoutMillis;
+
+	private final List<Worker> workers = new ArrayList<>();
+	private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+	private final ExecutorService starter;
+	private final ScheduledExecutorService deadlines;
+
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong recycled = new AtomicLong();
+
+	// =============== Constructors ===============
+
+	@Inject
+	public WorkerPool()
+	{
+		this(Env.getInt("FULIB_WORKERS", 0), Env.getInt("FULIB_WORKER_MAX_JOBS", 200),
+		     Env.getLong("FULIB_WORKER_MAX_HEAP", 256L * 1024 * 1024),
+		     Env.getLong("FULIB_WORKER_JOB_TIMEOUT", 60_000), splitOptions(System.getenv("FULIB_WORKER_JVM_OPTS")));
+	}
+
+	public WorkerPool(int workers, int maxJobs, long maxHeap, long jobTimeoutMillis, List<String> jvmOptions)
+	{
+		this.maxJobs = maxJobs;
+		this.maxHeap = maxHeap;
+		this.jobTimeoutMillis = jobTimeoutMillis;
+
+		this.command = new ArrayList<>();
+		this.command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		this.command.addAll(jvmOptions);
+		this.command.add("-cp");
+		this.command.add(System.getProperty("java.class.path"));
+		this.command.add(CodeGenWorker.class.getName());
+
+		this.starter = workers > 0 ? Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "worker-starter");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+		this.deadlines = workers > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "worker-deadlines");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+
+		for (int i = 0; i < workers; i++)
+		{
+			final Worker worker = new Worker(i + 1);
+			this.workers.add(worker);
+			this.restart(worker);
+		}
+	}
+
+	// =============== Static Methods ===============
+
+	private static List<String> splitOptions(String options)
+	{
+		final List<String> result = new ArrayList<>();
+		if (options != null)
+		{
+			for (final String option : options.trim().split("\\s+"))
+			{
+				if (!option.isEmpty())
+				{
+					result.add(option);
+				}
+			}
+		}
+		return result;
+	}
+
+	// =============== Properties ===============
+
+	public boolean isEnabled()
+	{
+		return !this.workers.isEmpty();
+	}
+
+	public int getWorkers()
+	{
+		return this.workers.size();
+	}
+
+	public int getIdle()
+	{
+		return this.idle.size();
+	}
+
+	/**
+	 * @return the number of worker processes started, including replacements
+	 */
+	public long getStarted()
+	{
+		return this.started.get();
+	}
+
+	/**
+	 * @return the number of worker processes that were replaced
+	 */
+	public long getRecycled()
+	{
+		return this.recycled.get();
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Like {@link Tools#genCompileRun}, but in the next idle worker, with output and errors both going to {@code out}.
+	 * Waits until a worker is idle.
+	 */
+	public int genCompileRun(PipelineListener listener, OutputStream out, Path srcDir, Path modelSrcDir,
+		Path testSrcDir, String... scenariocArgs) throws InterruptedException
+	{
+		final Worker worker = this.idle.take();
+		final Future<?> deadline = this.deadline(worker);
+		boolean recycle = true;
+		try
+		{
+			final int exitCode = worker.run(listener, out, srcDir, modelSrcDir, testSrcDir, scenariocArgs);
+			recycle = worker.jobs >= this.maxJobs || worker.retainedHeap > this.maxHeap
+			          || RunLimit.fromExitCode(exitCode) != null;
+			return exitCode;
+		}
+		catch (IOException ex)
+		{
+			final PrintStream printErr = new PrintStream(out, true, StandardCharsets.UTF_8);
+			if (worker.killed)
+			{
+				LOGGER.error("worker " + worker.id + " did not finish a job within " + this.jobTimeoutMillis + " ms");
+				printErr.println("The worker process did not finish within " + this.jobTimeoutMillis
+				                 + " ms and was stopped.");
+			}
+			else
+			{
+				LOGGER.error("worker " + worker.id + " failed", ex);
+				printErr.println("The worker process failed: " + ex);
+			}
+			return -1;
+		}
+		finally
+		{
+			deadline.cancel(false);
+			if (recycle)
+			{
+				this.recycled.incrementAndGet();
+				this.restart(worker);
+			}
+			else
+			{
+				this.idle.add(worker);
+			}
+		}
+	}
+
+	private void restart(Worker worker)
+	{
+		this.starter.execute(() -> {
+			worker.stop();
+			final Future<?> deadline = this.deadline(worker);
+			try
+			{
+				worker.start();
+				this.started.incrementAndGet();
+			}
+			catch (IOException ex)
+			{
+				// the next job will try again
+				LOGGER.error("failed to start worker " + worker.id, ex);
+			}
+			finally
+			{
+				deadline.cancel(false);
+			}
+			this.idle.add(worker);
+		});
+	}
+
+	/**
+	 * Kills the process of the worker if it is still busy after the job timeout.
+	 * Reading from the worker then fails, which releases the thread that waits for it.
+	 */
+	private Future<?> deadline(Worker worker)
+	{
+		worker.killed = false;
+		return this.deadlines.schedule(worker::kill, this.jobTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void shutdown()
+	{
+		if (this.starter == null)
+		{
+			return;
+		}
+
+		this.starter.shutdownNow();
+		this.deadlines.shutdownNow();
+		for (final Worker worker : this.workers)
+		{
+			worker.stop();
+		}
+	}
+
+	// =============== Classes ===============
+
+	private class Worker
+	{
+		final int id;
+
+		volatile Process process;
+		DataOutputStream out;
+		DataInputStream in;
+		volatile boolean killed;
+
+		int jobs;
+		long retainedHeap;
+
+		Worker(int id)
+		{
+			this.id = id;
+		}
+
+		void start() throws IOException
+		{
+			this.process = new ProcessBuilder(WorkerPool.this.command)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+			this.out = new DataOutputStream(new BufferedOutputStream(this.process.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(this.process.getInputStream()));
+			this.jobs = 0;
+			this.retainedHeap = 0;
+			if (this.killed)
+			{
+				// the deadline passed before the process existed
+				this.process.destroyForcibly();
+			}
+
+			// wait until the JVM is up, so that jobs never see the startup time
+			final int ready = this.in.read();
+			if (ready != WorkerProtocol.READY)
+			{
+				this.stop();
+				throw new IOException("worker did not start, got " + ready);
+			}
+		}
+
+		int run(PipelineListener listener, OutputStream output, Path srcDir, Path modelSrcDir, Path testSrcDir,
+			String[] scenariocArgs) throws IOException
+		{
+			if (this.process == null || !this.process.isAlive())
+			{
+				// starting failed before
+				this.start();
+			}
+
+			this.jobs++;
+			WorkerProtocol.writeJob(this.out, srcDir.toString(), modelSrcDir.toString(), testSrcDir.toString(),
+			                        scenariocArgs);
+
+			final Stage[] stages = Stage.values();
+			byte[] buffer = new byte[8192];
+			while (true)
+			{
+				final byte type = this.in.readByte();
+				switch (type)
+				{
+				case WorkerProtocol.OUTPUT:
+					final int length = this.in.readInt();
+					if (length > buffer.length)
+					{
+						buffer = new byte[length];
+					}
+					this.in.readFully(buffer, 0, length);
+					output.write(buffer, 0, length);
+					break;
+				case WorkerProtocol.STAGE_STARTED:
+					listener.stageStarted(stages[this.in.readByte()]);
+					break;
+				case WorkerProtocol.STAGE_ALLOCATED:
+					listener.stageAllocated(stages[this.in.readByte()], this.in.readLong());
+					break;
+				case WorkerProtocol.STAGE_FINISHED:
+					final Stage stage = stages[this.in.readByte()];
+					listener.stageFinished(stage, this.in.readInt());
+					break;
+				case WorkerProtocol.END:
+					final int exitCode = this.in.readInt();
+					this.retainedHeap = this.in.readLong();
+					return exitCode;
+				default:
+					throw new IOException("unexpected message " + type + " from worker");
+				}
+			}
+		}
+
+		void kill()
+		{
+			this.killed = true;
+			final Process process = this.process;
+			if (process != null)
+			{
+				process.destroyForcibly();
+			}
+		}
+
+		void stop()
+		{
+			final Process process = this.process;
+			if (process == null)
+			{
+				return;
+			}
+
+			this.process = null;
+			try
+			{
+				// closing stdin ends the worker loop
+				this.out.close();
+				if (!process.waitFor(1, TimeUnit.SECONDS))
+				{
+					process.destroyForcibly();
+				}
+			}
+			catch (IOException ignored)
+			{
+				process.destroyForcibly();
+			}
+			catch (InterruptedException ex)
+			{
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
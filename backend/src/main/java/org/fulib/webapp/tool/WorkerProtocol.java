@@ -0,0 +1,115 @@
+package org.fulib.webapp.tool;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The messages between {@link WorkerPool} and a {@link CodeGenWorker} process, sent over the stdin and stdout
+ * of the worker.
+ * The server sends a job as the three project directories and the scenario compiler arguments,
+ * the worker answers with any number of {@link #OUTPUT}, {@link #STAGE_STARTED}, {@link #STAGE_ALLOCATED}
+ * and {@link #STAGE_FINISHED} frames,
+ * followed by one {@link #END} frame.
+ * Files written by the scenario compiler are exchanged through the shared project directory.
+ */
+class WorkerProtocol
+{
+	// =============== Constants ===============
+
+	/**
+	 * Sent once by the worker when it is ready for jobs.
+	 */
+	static final byte READY = 'R';
+
+	/**
+	 * Followed by the length and the bytes of the output.
+	 */
+	static final byte OUTPUT = 'O';
+
+	/**
+	 * Followed by the ordinal of the {@link Stage}.
+	 */
+	static final byte STAGE_STARTED = 'S';
+
+	/**
+	 * Followed by the ordinal of the {@link Stage} and the bytes it allocated.
+	 */
+	static final byte STAGE_ALLOCATED = 'A';
+
+	/**
+	 * Followed by the ordinal of the {@link Stage} and its exit code.
+	 */
+	static final byte STAGE_FINISHED = 'F';
+
+	/**
+	 * Followed by the exit code of the job and the bytes of heap the worker retained after its last GC.
+	 */
+	static final byte END = 'E';
+
+	// =============== Static Methods ===============
+
+	static void writeJob(DataOutputStream out, String srcDir, String modelSrcDir, String testSrcDir, String[] args)
+		throws IOException
+	{
+		out.writeUTF(srcDir);
+		out.writeUTF(modelSrcDir);
+		out.writeUTF(testSrcDir);
+		out.writeInt(args.length);
+		for (final String arg : args)
+		{
+			out.writeUTF(arg);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return the directories and arguments of the job, in the order of {@link #writeJob}
+	 */
+	static String[] readJob(DataInputStream in) throws IOException
+	{
+		final String srcDir = in.readUTF();
+		final String modelSrcDir = in.readUTF();
+		final String testSrcDir = in.readUTF();
+		final String[] job = new String[3 + in.readInt()];
+		job[0] = srcDir;
+		job[1] = modelSrcDir;
+		job[2] = testSrcDir;
+		for (int i = 3; i < job.length; i++)
+		{
+			job[i] = in.readUTF();
+		}
+		return job;
+	}
+
+	/**
+	 * @return a stream that sends everything written to it as {@link #OUTPUT} frames
+	 */
+	static OutputStream outputFrames(DataOutputStream out)
+	{
+		return new OutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				this.write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				if (len == 0)
+				{
+					return;
+				}
+				synchronized (out)
+				{
+					out.writeByte(OUTPUT);
+					out.writeInt(len);
+					out.write(b, off, len);
+				}
+			}
+		};
+	}
+}
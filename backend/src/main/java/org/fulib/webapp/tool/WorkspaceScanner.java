@@ -0,0 +1,219 @@
+package org.fulib.webapp.tool;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Indexes the files of a run, so that every stage after the scenario compiler uses one walk per directory tree
+ * instead of walking the directories again: the Java sources in {@code model_src} and {@code test_src},
+ * the class diagrams in {@code model_src}, and the object diagrams in {@code src} with their sizes.
+ * The sources are scanned once the scenario compiler is done, the diagrams once the tests are done,
+ * because the tests write some of them.
+ * The walks use {@link Files#walkFileTree}, which closes every directory before it returns.
+ * They also sum up the sizes of all files, so that the {@link TempSpaceManager} need not walk the project again.
+ * Not thread-safe; a scanner belongs to one run.
+ */
+public class WorkspaceScanner
+{
+	// =============== Constants ===============
+
+	public static final String CLASS_DIAGRAM = "classDiagram.svg";
+
+	private static final String[] DIAGRAM_EXTENSIONS = { ".svg", ".png", ".yaml", ".html", ".txt" };
+
+	// =============== Fields ===============
+
+	private final Path srcDir;
+	private final Path modelSrcDir;
+	private final Path testSrcDir;
+
+	private boolean sourcesScanned;
+	private long sourceBytes;
+	private final List<Path> modelSources = new ArrayList<>();
+	private final List<Path> testSources = new ArrayList<>();
+	private final Set<Path> classDiagrams = new HashSet<>();
+
+	private boolean diagramsScanned;
+	private long srcBytes;
+	private final Map<Path, Long> diagrams = new TreeMap<>();
+
+	// =============== Constructors ===============
+
+	public WorkspaceScanner(Path srcDir, Path modelSrcDir, Path testSrcDir)
+	{
+		this.srcDir = srcDir;
+		this.modelSrcDir = modelSrcDir;
+		this.testSrcDir = testSrcDir;
+	}
+
+	// =============== Properties ===============
+
+	public Path getSrcDir()
+	{
+		return this.srcDir;
+	}
+
+	public Path getModelSrcDir()
+	{
+		return this.modelSrcDir;
+	}
+
+	public Path getTestSrcDir()
+	{
+		return this.testSrcDir;
+	}
+
+	/**
+	 * @return the Java files in {@code model_src}, sorted
+	 */
+	public List<Path> getModelSources()
+	{
+		return Collections.unmodifiableList(this.modelSources);
+	}
+
+	/**
+	 * @return the Java files in {@code test_src}, sorted
+	 */
+	public List<Path> getTestSources()
+	{
+		return Collections.unmodifiableList(this.testSources);
+	}
+
+	/**
+	 * @param packageDir
+	 * 	the package directory relative to {@code model_src}, e.g. {@code org/example}
+	 *
+	 * @return the class diagram of the package, or {@code null} if there is none
+	 */
+	public Path getClassDiagram(String packageDir)
+	{
+		final Path file = this.modelSrcDir.resolve(packageDir).resolve(CLASS_DIAGRAM);
+		return this.classDiagrams.contains(file) ? file : null;
+	}
+
+	/**
+	 * @return the object diagram files in {@code src} and their sizes, sorted by path
+	 */
+	public Map<Path, Long> getDiagrams()
+	{
+		return Collections.unmodifiableMap(this.diagrams);
+	}
+
+	/**
+	 * @return the size of all files in {@code src}, {@code model_src} and {@code test_src} when they were scanned,
+	 * in bytes, or {@code -1} unless both the sources and the diagrams were scanned
+	 */
+	public long getTotalBytes()
+	{
+		return this.sourcesScanned && this.diagramsScanned ? this.sourceBytes + this.srcBytes : -1;
+	}
+
+	// =============== Static Methods ===============
+
+	public static boolean isDiagram(Path file)
+	{
+		final String fileName = file.toString();
+		for (final String extension : DIAGRAM_EXTENSIONS)
+		{
+			if (fileName.endsWith(extension))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// =============== Methods ===============
+
+	/**
+	 * Walks {@code model_src} and {@code test_src}, unless they were already scanned.
+	 * Missing directories count as empty.
+	 */
+	public void scanSources() throws IOException
+	{
+		if (this.sourcesScanned)
+		{
+			return;
+		}
+		this.sourcesScanned = true;
+
+		this.sourceBytes = walk(this.modelSrcDir, (file, attributes) -> {
+			if (Tools.isJava(file))
+			{
+				this.modelSources.add(file);
+			}
+			else if (file.endsWith(CLASS_DIAGRAM))
+			{
+				this.classDiagrams.add(file);
+			}
+		});
+		this.sourceBytes += walk(this.testSrcDir, (file, attributes) -> {
+			if (Tools.isJava(file))
+			{
+				this.testSources.add(file);
+			}
+		});
+
+		Collections.sort(this.modelSources);
+		Collections.sort(this.testSources);
+	}
+
+	/**
+	 * Walks {@code src}, unless it was already scanned.
+	 * A missing directory counts as empty.
+	 */
+	public void scanDiagrams() throws IOException
+	{
+		if (this.diagramsScanned)
+		{
+			return;
+		}
+		this.diagramsScanned = true;
+
+		this.srcBytes = walk(this.srcDir, (file, attributes) -> {
+			if (isDiagram(file))
+			{
+				this.diagrams.put(file, attributes.size());
+			}
+		});
+	}
+
+	/**
+	 * @return the size of all regular files in the directory tree, in bytes
+	 */
+	private static long walk(Path dir, BiConsumer<Path, BasicFileAttributes> consumer) throws IOException
+	{
+		final long[] bytes = { 0 };
+		Files.walkFileTree(dir, new SimpleFileVisitor<>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+			{
+				if (attributes.isRegularFile())
+				{
+					bytes[0] += attributes.size();
+					consumer.accept(file, attributes);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException
+			{
+				if (ex instanceof NoSuchFileException)
+				{
+					return FileVisitResult.CONTINUE;
+				}
+				throw ex;
+			}
+		});
+		return bytes[0];
+	}
+}
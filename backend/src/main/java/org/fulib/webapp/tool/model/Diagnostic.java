@@ -0,0 +1,88 @@
+package org.fulib.webapp.tool.model;
+
+/**
+ * A marker reported by the scenario compiler, e.g. {@code ./src/org/example/Scenario.md:3:4-8: error: ...}.
+ * The line is 1-based, the columns are 0-based and the end column is inclusive.
+ */
+public class Diagnostic
+{
+	// =============== Constants ===============
+
+	public static final String PROPERTY_file = "file";
+	public static final String PROPERTY_line = "line";
+	public static final String PROPERTY_column = "column";
+	public static final String PROPERTY_endColumn = "endColumn";
+	public static final String PROPERTY_severity = "severity";
+	public static final String PROPERTY_message = "message";
+
+	// =============== Fields ===============
+
+	private String file;
+	private int line;
+	private int column;
+	private int endColumn;
+	private String severity;
+	private String message;
+
+	// =============== Properties ===============
+
+	public String getFile()
+	{
+		return this.file;
+	}
+
+	public void setFile(String file)
+	{
+		this.file = file;
+	}
+
+	public int getLine()
+	{
+		return this.line;
+	}
+
+	public void setLine(int line)
+	{
+		this.line = line;
+	}
+
+	public int getColumn()
+	{
+		return this.column;
+	}
+
+	public void setColumn(int column)
+	{
+		this.column = column;
+	}
+
+	public int getEndColumn()
+	{
+		return this.endColumn;
+	}
+
+	public void setEndColumn(int endColumn)
+	{
+		this.endColumn = endColumn;
+	}
+
+	public String getSeverity()
+	{
+		return this.severity;
+	}
+
+	public void setSeverity(String severity)
+	{
+		this.severity = severity;
+	}
+
+	public String getMessage()
+	{
+		return this.message;
+	}
+
+	public void setMessage(String message)
+	{
+		this.message = message;
+	}
+}
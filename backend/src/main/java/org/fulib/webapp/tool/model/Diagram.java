@@ -1,5 +1,7 @@
 package org.fulib.webapp.tool.model;
 
+import java.nio.file.Path;
+
 public class Diagram
 {
 	// =============== Constants ===============
@@ -7,12 +9,17 @@ public class Diagram
 	public static final String PROPERTY_path = "path";
 	public static final String PROPERTY_name = "name";
 	public static final String PROPERTY_content = "content";
+	public static final String PROPERTY_size = "size";
+	public static final String PROPERTY_hash = "hash";
 
 	// =============== Fields ===============
 
 	private String path;
 	private String name;
 	private String content;
+	private long size;
+	private volatile String hash; // computed when first needed, see ResultJsonWriter
+	private Path file; // not serialized, provides the content if it is not in memory
 
 	// =============== Properties ===============
 
@@ -45,4 +52,34 @@ public class Diagram
 	{
 		this.content = content;
 	}
+
+	public long getSize()
+	{
+		return this.size;
+	}
+
+	public void setSize(long size)
+	{
+		this.size = size;
+	}
+
+	public String getHash()
+	{
+		return this.hash;
+	}
+
+	public void setHash(String hash)
+	{
+		this.hash = hash;
+	}
+
+	public Path getFile()
+	{
+		return this.file;
+	}
+
+	public void setFile(Path file)
+	{
+		this.file = file;
+	}
 }
@@ -13,6 +13,7 @@ public class Result
 	public static final String PROPERTY_classDiagram = "classDiagram";
 	public static final String PROPERTY_objectDiagrams = "objectDiagrams";
 	public static final String PROPERTY_methods = "methods";
+	public static final String PROPERTY_diagnostics = "diagnostics";
 
 	// =============== Fields ===============
 
@@ -22,6 +23,7 @@ public class Result
 	private String classDiagram;
 	private List<Diagram> objectDiagrams = new ArrayList<>();
 	private List<Method> methods = new ArrayList<>();
+	private List<Diagnostic> diagnostics;
 
 	// =============== Constructors ===============
 
@@ -76,4 +78,17 @@ public class Result
 	{
 		return this.methods;
 	}
+
+	/**
+	 * @return the diagnostics of a check, or {@code null} for a full run, whose output contains them
+	 */
+	public List<Diagnostic> getDiagnostics()
+	{
+		return this.diagnostics;
+	}
+
+	public void setDiagnostics(List<Diagnostic> diagnostics)
+	{
+		this.diagnostics = diagnostics;
+	}
 }
@@ -1,7 +1,12 @@
 package org.fulib.webapp;
 
+import org.fulib.webapp.metrics.MetricsController;
 import org.fulib.webapp.projectzip.ProjectZipController;
+import org.fulib.webapp.tool.CodeGenWarmup;
 import org.fulib.webapp.tool.RunCodeGen;
+import org.fulib.webapp.tool.RunCodeGenJobs;
+import org.fulib.webapp.tool.RunFiles;
+import org.fulib.webapp.tool.TempSpaceManager;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -18,14 +23,18 @@ import static org.mockito.Mockito.*;
 public class MainTest
 {
 	private static final RunCodeGen runCodeGen = mock(RunCodeGen.class);
+	private static final RunCodeGenJobs runCodeGenJobs = mock(RunCodeGenJobs.class);
+	private static final RunFiles runFiles = mock(RunFiles.class);
 	private static final ProjectZipController projectZipController = mock(ProjectZipController.class);
-	private static final Main service = new Main(runCodeGen, projectZipController);
+	private static final MetricsController metricsController = mock(MetricsController.class);
+	private static final CodeGenWarmup warmup = mock(CodeGenWarmup.class);
+	private static final TempSpaceManager tempSpace = mock(TempSpaceManager.class);
+	private static final Main service = new Main(runCodeGen, runCodeGenJobs, runFiles, projectZipController,
+	                                             metricsController, warmup, tempSpace);
 
 	@BeforeClass
 	public static void setup()
 	{
-		when(runCodeGen.getTempDir()).thenReturn(System.getProperty("java.io.tmpdir"));
-
 		service.start();
 		service.awaitStart();
 	}
@@ -46,14 +55,64 @@ public class MainTest
 		verify(runCodeGen).handle(any(), any());
 	}
 
+	@Test
+	public void runCodeGenJobs() throws Exception
+	{
+		when(runCodeGenJobs.submit(any(), any())).thenReturn("");
+		when(runCodeGenJobs.get(any(), any())).thenReturn("");
+		when(runCodeGenJobs.events(any(), any())).thenReturn("");
+
+		checkRoute("POST", "/api/runcodegen/jobs");
+		checkRoute("GET", "/api/runcodegen/jobs/123");
+		checkRoute("GET", "/api/runcodegen/jobs/123/events");
+
+		verify(runCodeGenJobs).submit(any(), any());
+		verify(runCodeGenJobs).get(any(), any());
+		verify(runCodeGenJobs).events(any(), any());
+	}
+
+	@Test
+	public void runFiles() throws Exception
+	{
+		when(runFiles.handle(any(), any())).thenReturn("");
+
+		checkRoute("GET", "/api/runcodegen/123/src/org/example/alice.svg");
+
+		verify(runFiles).handle(any(), any());
+	}
+
 	@Test
 	public void projectZip() throws IOException
 	{
 		when(projectZipController.handle(any(), any())).thenReturn("");
+		when(projectZipController.handleGet(any(), any())).thenReturn("");
 
 		checkRoute("POST", "/api/projectzip");
+		checkRoute("GET", "/api/projectzip/0123abcd");
 
 		verify(projectZipController).handle(any(), any());
+		verify(projectZipController).handleGet(any(), any());
+	}
+
+	@Test
+	public void metrics() throws IOException
+	{
+		when(metricsController.handle(any(), any())).thenReturn("");
+
+		checkRoute("GET", "/api/metrics");
+
+		verify(metricsController).handle(any(), any());
+	}
+
+	@Test
+	public void ready() throws IOException
+	{
+		when(warmup.handleReady(any(), any())).thenReturn("");
+
+		checkRoute("GET", "/api/ready");
+
+		verify(warmup).start();
+		verify(warmup).handleReady(any(), any());
 	}
 
 	@Test
@@ -0,0 +1,54 @@
+package org.fulib.webapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadPoolTest
+{
+	@Test
+	public void blockingTasksDoNotExhaustThePool() throws Exception
+	{
+		assumeTrue("virtual threads need Java 21", VirtualThreadPool.isSupported());
+
+		final int tasks = 10_000;
+		final VirtualThreadPool pool = new VirtualThreadPool();
+		pool.start();
+		try
+		{
+			final CountDownLatch started = new CountDownLatch(tasks);
+			final CountDownLatch release = new CountDownLatch(1);
+			for (int i = 0; i < tasks; i++)
+			{
+				pool.execute(() -> {
+					started.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException ignored)
+					{
+					}
+				});
+			}
+
+			// all tasks block at the same time, far more than any platform pool would allow
+			assertThat(started.await(10, TimeUnit.SECONDS), equalTo(true));
+			assertThat(pool.getThreads(), equalTo(tasks));
+			assertThat(pool.isLowOnThreads(), equalTo(false));
+
+			release.countDown();
+		}
+		finally
+		{
+			pool.stop();
+		}
+		pool.join();
+		assertThat(pool.getThreads(), equalTo(0));
+	}
+}
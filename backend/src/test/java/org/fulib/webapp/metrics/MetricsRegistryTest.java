@@ -0,0 +1,52 @@
+package org.fulib.webapp.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MetricsRegistryTest
+{
+	@Test
+	public void scrape()
+	{
+		final MetricsRegistry registry = new MetricsRegistry();
+
+		final double[] buckets = { 0.1, 1 };
+		registry.histogram("duration_seconds", "Durations.", buckets, "stage", "b").observe(0.5);
+		registry.histogram("duration_seconds", "Durations.", buckets, "stage", "a").observe(0.05);
+		registry.histogram("duration_seconds", "Durations.", buckets, "stage", "a").observe(2);
+		registry.counter("runs_total", "Runs.", "result", "ok").increment();
+		registry.counter("runs_total", "Runs.", "result", "say \"hi\"").add(2);
+		registry.gauge("queue_depth", "Queue depth.", () -> 3);
+
+		// language=TEXT
+		assertThat(registry.scrape(), equalTo("# HELP duration_seconds Durations.\n"
+		                                      + "# TYPE duration_seconds histogram\n"
+		                                      + "duration_seconds_bucket{stage=\"a\",le=\"0.1\"} 1\n"
+		                                      + "duration_seconds_bucket{stage=\"a\",le=\"1\"} 1\n"
+		                                      + "duration_seconds_bucket{stage=\"a\",le=\"+Inf\"} 2\n"
+		                                      + "duration_seconds_sum{stage=\"a\"} 2.05\n"
+		                                      + "duration_seconds_count{stage=\"a\"} 2\n"
+		                                      + "duration_seconds_bucket{stage=\"b\",le=\"0.1\"} 0\n"
+		                                      + "duration_seconds_bucket{stage=\"b\",le=\"1\"} 1\n"
+		                                      + "duration_seconds_bucket{stage=\"b\",le=\"+Inf\"} 1\n"
+		                                      + "duration_seconds_sum{stage=\"b\"} 0.5\n"
+		                                      + "duration_seconds_count{stage=\"b\"} 1\n"
+		                                      + "# HELP runs_total Runs.\n"
+		                                      + "# TYPE runs_total counter\n"
+		                                      + "runs_total{result=\"ok\"} 1\n"
+		                                      + "runs_total{result=\"say \\\"hi\\\"\"} 2\n"
+		                                      + "# HELP queue_depth Queue depth.\n"
+		                                      + "# TYPE queue_depth gauge\n"
+		                                      + "queue_depth 3\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void typeMismatch()
+	{
+		final MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("x", "X.");
+		registry.gauge("x", "X.", () -> 1);
+	}
+}
@@ -0,0 +1,161 @@
+package org.fulib.webapp.projectzip;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProjectGeneratorTest
+{
+	@Test
+	public void generateDeterministicZip() throws IOException
+	{
+		final ProjectGenerator generator = new ProjectGenerator();
+		final ProjectData data = new ProjectData();
+		data.setPackageName("org.example");
+		data.setScenarioFileName("Scenario.md");
+		data.setProjectName("myProject");
+		data.setProjectVersion("1.2.3");
+		data.setScenarioText("# Test\n\nThere is a Student with name Alice.");
+		data.setDecoratorClassName("MyDecorator");
+
+		final byte[] first = generator.generate(data);
+		assertThat(Arrays.equals(first, generator.generate(data)), equalTo(true));
+		// with a fresh deflater, to check that the pooled ones are reset properly
+		assertThat(Arrays.equals(first, generate(generator, data)), equalTo(true));
+
+		// ZipFile reads the central directory and checks the CRCs
+		final Path file = Files.createTempFile("ProjectGeneratorTest", ".zip");
+		try
+		{
+			Files.write(file, first);
+			try (final ZipFile zip = new ZipFile(file.toFile()))
+			{
+				final List<String> names = new ArrayList<>();
+				for (final ZipEntry entry : Collections.list(zip.entries()))
+				{
+					names.add(entry.getName());
+					zip.getInputStream(entry).readAllBytes();
+				}
+				assertThat(names, equalTo(List.of( //
+					"src/main/scenarios/org/example/Scenario.md", //
+					".gitignore", //
+					"gradlew", //
+					"gradlew.bat", //
+					"gradle/wrapper/gradle-wrapper.jar", //
+					"gradle/wrapper/gradle-wrapper.properties", //
+					"settings.gradle", //
+					"build.gradle", //
+					"src/gen/java/org/example/MyDecorator.java" //
+				)));
+
+				final byte[] settings = zip.getInputStream(zip.getEntry("settings.gradle")).readAllBytes();
+				assertThat(new String(settings, StandardCharsets.UTF_8), equalTo("rootProject.name = 'myProject'\n"));
+			}
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void concurrentGenerate() throws Exception
+	{
+		final ProjectGenerator generator = new ProjectGenerator();
+		final List<ProjectData> projects = new ArrayList<>();
+		final List<byte[]> expected = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+		{
+			final ProjectData data = new ProjectData();
+			data.setPackageName("org.example" + i);
+			data.setScenarioFileName("Scenario.md");
+			data.setProjectName("project" + i);
+			data.setProjectVersion("1.0." + i);
+			data.setScenarioText("# Test\n\n" + "There is a Student with name Alice.\n".repeat(i * 100));
+			data.setDecoratorClassName(i % 2 == 0 ? "MyDecorator" : null);
+			projects.add(data);
+			expected.add(generate(generator, data));
+		}
+
+		final int threads = 8;
+		final int rounds = 50;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<Integer>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++)
+			{
+				final int offset = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					int mismatches = 0;
+					for (int i = 0; i < rounds; i++)
+					{
+						// every thread goes through the projects in a different order
+						final int index = (offset + i) % projects.size();
+						if (!Arrays.equals(generator.generate(projects.get(index)), expected.get(index)))
+						{
+							mismatches++;
+						}
+					}
+					return mismatches;
+				}));
+			}
+			start.countDown();
+
+			for (final Future<Integer> future : futures)
+			{
+				assertThat(future.get(1, TimeUnit.MINUTES), equalTo(0));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void renderTemplate()
+	{
+		final Template template = Template.parse("a $$x$$ b $$y$$ $$ c $$-$$");
+		assertThat(template.render(Map.of("x", "1")), equalTo("a 1 b $$y$$ $$ c $$-$$"));
+	}
+
+	private static byte[] generate(ProjectGenerator generator, ProjectData data) throws IOException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try
+		{
+			final ZipWriter zip = new ZipWriter(output, deflater);
+			generator.generate(data, zip);
+			zip.finish();
+		}
+		finally
+		{
+			deflater.end();
+		}
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,79 @@
+package org.fulib.webapp.projectzip;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProjectZipCacheTest
+{
+	@Test
+	public void key()
+	{
+		final ProjectData a = data("org.example", "MyDecorator");
+		final ProjectData b = data("org.example", "MyDecorator");
+		final ProjectData c = data("org.example", null);
+		final ProjectData d = data("org.example", "");
+
+		assertThat(ProjectZipCache.key(a), equalTo(ProjectZipCache.key(b)));
+		assertThat(ProjectZipCache.key(a), not(equalTo(ProjectZipCache.key(c))));
+		assertThat(ProjectZipCache.key(c), not(equalTo(ProjectZipCache.key(d))));
+	}
+
+	@Test
+	public void evictsByBytes()
+	{
+		final ProjectZipCache cache = new ProjectZipCache(10);
+		final byte[] a = new byte[4];
+		final byte[] b = new byte[4];
+		final byte[] c = new byte[4];
+
+		cache.put("a", a);
+		cache.put("b", b);
+		assertThat(cache.get("a"), sameInstance(a)); // a is now more recently used than b
+		cache.put("c", c);
+
+		assertThat(cache.get("b"), nullValue());
+		assertThat(cache.get("a"), sameInstance(a));
+		assertThat(cache.get("c"), sameInstance(c));
+		assertThat(cache.getSize(), equalTo(2));
+		assertThat(cache.getBytes(), equalTo(8L));
+		assertThat(cache.getEvictions(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(3L));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+
+	@Test
+	public void tooLarge()
+	{
+		final ProjectZipCache cache = new ProjectZipCache(10);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[11]);
+
+		assertThat(cache.get("b"), nullValue());
+		assertThat(cache.getSize(), equalTo(1));
+		assertThat(cache.getEvictions(), equalTo(0L));
+	}
+
+	@Test
+	public void disabled()
+	{
+		final ProjectZipCache cache = new ProjectZipCache(0);
+		cache.put("a", new byte[1]);
+
+		assertThat(cache.isEnabled(), equalTo(false));
+		assertThat(cache.get("a"), nullValue());
+	}
+
+	private static ProjectData data(String packageName, String decoratorClassName)
+	{
+		final ProjectData data = new ProjectData();
+		data.setPackageName(packageName);
+		data.setScenarioFileName("Scenario.md");
+		data.setProjectName("myProject");
+		data.setProjectVersion("1.2.3");
+		data.setScenarioText("# Test");
+		data.setDecoratorClassName(decoratorClassName);
+		return data;
+	}
+}
@@ -100,7 +100,7 @@ public class ProjectZipControllerTest
 	public void handle() throws IOException
 	{
 		final ProjectGenerator projectGenerator = new ProjectGenerator();
-		final ProjectZipController projectZipController = new ProjectZipController(projectGenerator);
+		final ProjectZipController projectZipController = new ProjectZipController(projectGenerator, new ProjectZipCache());
 
 		final Request request = mock(Request.class);
 		final String ip = "0.0.0.0";
@@ -150,4 +150,60 @@ public class ProjectZipControllerTest
 			assertEquals(entry.getKey(), entry.getValue(), contents.get(entry.getKey()));
 		}
 	}
+
+	@Test
+	public void notModified() throws IOException
+	{
+		final ProjectZipCache projectZipCache = new ProjectZipCache();
+		final ProjectZipController projectZipController = new ProjectZipController(new ProjectGenerator(),
+		                                                                           projectZipCache);
+
+		final ProjectData projectData = new ProjectData();
+		projectData.setPackageName("org.example");
+		projectData.setScenarioFileName("Scenario.md");
+		projectData.setProjectName("myProject");
+		projectData.setProjectVersion("1.2.3");
+		projectData.setScenarioText("");
+		final String etag = '"' + ProjectZipCache.key(projectData) + '"';
+
+		final Request request = mock(Request.class);
+		// language=JSON
+		final String requestBody =
+			"{\n" + "  \"packageName\": \"org.example\",\n" + "  \"scenarioFileName\": \"Scenario.md\",\n"
+			+ "  \"projectName\": \"myProject\",\n" + "  \"projectVersion\": \"1.2.3\"\n" + "}";
+		when(request.body()).thenReturn(requestBody);
+		when(request.headers("If-None-Match")).thenReturn("\"other\", " + etag);
+
+		final Response response = mock(Response.class);
+
+		projectZipController.handle(request, response);
+
+		verify(response).header("ETag", etag);
+		// a POST must not answer 304
+		verify(response).status(412);
+		verify(response, never()).raw();
+
+		// once cached, the zip can be revalidated with a GET
+		final String key = ProjectZipCache.key(projectData);
+		projectZipCache.put(key, new byte[] { 0 });
+		final Request getRequest = mock(Request.class);
+		when(getRequest.params(":key")).thenReturn(key);
+		when(getRequest.headers("If-None-Match")).thenReturn(etag);
+		final Response getResponse = mock(Response.class);
+
+		projectZipController.handleGet(getRequest, getResponse);
+
+		verify(getResponse).header("ETag", etag);
+		verify(getResponse).status(304);
+		verify(getResponse, never()).raw();
+	}
+
+	@Test
+	public void matches()
+	{
+		assertEquals(false, ProjectZipController.matches(null, "\"a\""));
+		assertEquals(false, ProjectZipController.matches("\"b\"", "\"a\""));
+		assertEquals(true, ProjectZipController.matches("\"b\", W/\"a\"", "\"a\""));
+		assertEquals(true, ProjectZipController.matches("*", "\"a\""));
+	}
 }
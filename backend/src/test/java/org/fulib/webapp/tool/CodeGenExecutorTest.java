@@ -0,0 +1,55 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CodeGenExecutorTest
+{
+	@Test
+	public void rejectsWhenQueueIsFull() throws Exception
+	{
+		final CodeGenExecutor executor = new CodeGenExecutor(1, 1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		try
+		{
+			final Future<String> running = executor.submit(waitNanos -> {
+				started.countDown();
+				release.await();
+				return "running";
+			});
+			started.await();
+
+			final Future<String> queued = executor.submit(waitNanos -> "queued");
+			assertThat(executor.getQueueDepth(), equalTo(1));
+
+			try
+			{
+				executor.submit(waitNanos -> "rejected");
+				fail("should have been rejected");
+			}
+			catch (RejectedExecutionException expected)
+			{
+			}
+
+			release.countDown();
+
+			assertThat(running.get(), equalTo("running"));
+			assertThat(queued.get(), equalTo("queued"));
+			assertThat(executor.getSubmitted(), equalTo(2L));
+			assertThat(executor.getRejected(), equalTo(1L));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Result;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CodeGenWarmupTest
+{
+	@Test
+	public void loadExamples() throws Exception
+	{
+		final List<CodeGenData> examples = CodeGenWarmup.loadExamples();
+		assertFalse(examples.isEmpty());
+		for (final CodeGenData example : examples)
+		{
+			assertFalse(example.getScenarioText().isEmpty());
+		}
+	}
+
+	@Test
+	public void readyAfterWarmup() throws Exception
+	{
+		final RunCodeGen runCodeGen = mock(RunCodeGen.class);
+		final Result result = new Result("abc");
+		when(runCodeGen.runUncached(any())).thenReturn(result);
+
+		final CodeGenWarmup warmup = new CodeGenWarmup(runCodeGen, 2);
+		assertFalse(warmup.isReady());
+
+		warmup.run();
+
+		assertTrue(warmup.isReady());
+		final int examples = CodeGenWarmup.loadExamples().size();
+		verify(runCodeGen, times(2 * examples)).runUncached(any());
+	}
+
+	@Test
+	public void readyWithoutWarmup()
+	{
+		final CodeGenWarmup warmup = new CodeGenWarmup(mock(RunCodeGen.class), 0);
+		assertThat(warmup.isReady(), equalTo(true));
+	}
+}
@@ -0,0 +1,180 @@
+package org.fulib.webapp.tool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+
+public class JavaCompilerServiceTest
+{
+	private static final String CLASS_PATH = System.getProperty("java.class.path");
+
+	private static Path tempDir;
+	private static List<Path> modelSources;
+	private static List<Path> testSources;
+	private static List<Path> brokenSources;
+
+	@BeforeClass
+	public static void setup() throws IOException
+	{
+		tempDir = Files.createTempDirectory("JavaCompilerServiceTest");
+
+		modelSources = List.of(write("model/org/example/Student.java", """
+			package org.example;
+
+			public class Student
+			{
+			   private String name;
+
+			   public String getName()
+			   {
+			      return this.name;
+			   }
+
+			   public Student setName(String value)
+			   {
+			      this.name = value;
+			      return this;
+			   }
+			}
+			"""));
+		testSources = List.of(write("test/org/example/ScenarioTest.java", """
+			package org.example;
+
+			import org.junit.Test;
+
+			import static org.junit.Assert.assertEquals;
+
+			public class ScenarioTest
+			{
+			   @Test
+			   public void test()
+			   {
+			      assertEquals("Alice", new Student().setName("Alice").getName());
+			   }
+			}
+			"""));
+		brokenSources = List.of(write("broken/org/example/Broken.java", """
+			package org.example;
+
+			public class Broken
+			{
+			   int x = "s";
+			}
+			"""));
+	}
+
+	@AfterClass
+	public static void teardown()
+	{
+		Tools.deleteRecursively(tempDir);
+	}
+
+	private static Path write(String name, String content) throws IOException
+	{
+		final Path file = tempDir.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	@Test
+	public void sharedMatchesCold() throws IOException
+	{
+		final Map<String, byte[]> coldModel = new HashMap<>();
+		final Map<String, byte[]> coldTest = new HashMap<>();
+		assertThat(Tools.javac(null, CLASS_PATH, Collections.emptyMap(), coldModel, modelSources), equalTo(0));
+		assertThat(Tools.javac(null, CLASS_PATH, coldModel, coldTest, testSources), equalTo(0));
+
+		try (final JavaCompilerService compiler = new JavaCompilerService(CLASS_PATH))
+		{
+			// the first round populates the shared state, the second uses it, the third starts over
+			for (int i = 0; i < 3; i++)
+			{
+				if (i == 2)
+				{
+					compiler.invalidate();
+				}
+
+				final Map<String, byte[]> model = new HashMap<>();
+				final Map<String, byte[]> test = new HashMap<>();
+				assertThat(compiler.compile(null, Collections.emptyMap(), model, modelSources), equalTo(0));
+				assertThat(compiler.compile(null, model, test, testSources), equalTo(0));
+
+				assertSameClasses(coldModel, model);
+				assertSameClasses(coldTest, test);
+			}
+		}
+	}
+
+	@Test
+	public void sharedDiagnosticsMatchCold() throws IOException
+	{
+		final ByteArrayOutputStream coldErr = new ByteArrayOutputStream();
+		final int coldExitCode = Tools.javac(coldErr, CLASS_PATH, Collections.emptyMap(), new HashMap<>(),
+		                                     brokenSources);
+
+		try (final JavaCompilerService compiler = new JavaCompilerService(CLASS_PATH))
+		{
+			compiler.compile(null, Collections.emptyMap(), new HashMap<>(), modelSources);
+
+			final ByteArrayOutputStream err = new ByteArrayOutputStream();
+			final int exitCode = compiler.compile(err, Collections.emptyMap(), new HashMap<>(), brokenSources);
+
+			assertThat(exitCode, equalTo(coldExitCode));
+			assertThat(err.toString(StandardCharsets.UTF_8), equalTo(coldErr.toString(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Test
+	public void concurrent() throws Exception
+	{
+		final Map<String, byte[]> coldModel = new HashMap<>();
+		Tools.javac(null, CLASS_PATH, Collections.emptyMap(), coldModel, modelSources);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (final JavaCompilerService compiler = new JavaCompilerService(CLASS_PATH))
+		{
+			final List<Future<Map<String, byte[]>>> futures = new ArrayList<>();
+			for (int i = 0; i < 16; i++)
+			{
+				futures.add(executor.submit(() -> {
+					final Map<String, byte[]> model = new HashMap<>();
+					compiler.compile(null, Collections.emptyMap(), model, modelSources);
+					return model;
+				}));
+			}
+
+			for (final Future<Map<String, byte[]>> future : futures)
+			{
+				assertSameClasses(coldModel, future.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static void assertSameClasses(Map<String, byte[]> expected, Map<String, byte[]> actual)
+	{
+		assertThat(actual.keySet(), equalTo(expected.keySet()));
+		for (final Map.Entry<String, byte[]> entry : expected.entrySet())
+		{
+			assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+}
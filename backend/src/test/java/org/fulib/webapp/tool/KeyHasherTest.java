@@ -0,0 +1,39 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class KeyHasherTest
+{
+	@Test
+	public void hash()
+	{
+		final String key = new KeyHasher().add("ab").add("c").hash();
+		assertThat(key.length(), equalTo(64));
+		assertThat(key.matches("[0-9a-f]+"), equalTo(true));
+		assertThat(new KeyHasher().add("ab").add("c").hash(), equalTo(key));
+
+		// length prefixes
+		assertThat(new KeyHasher().add("a").add("bc").hash(), not(equalTo(key)));
+		assertThat(new KeyHasher().add((String) null).hash(), not(equalTo(new KeyHasher().add("").hash())));
+	}
+
+	@Test
+	public void mapOrder()
+	{
+		final Map<String, String> first = new LinkedHashMap<>();
+		first.put("a", "1");
+		first.put("b", "2");
+		final Map<String, String> second = new LinkedHashMap<>();
+		second.put("b", "2");
+		second.put("a", "1");
+
+		assertThat(new KeyHasher().add(first).hash(), equalTo(new KeyHasher().add(second).hash()));
+	}
+}
@@ -0,0 +1,46 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LruCacheTest
+{
+	@Test
+	public void evictsByWeight()
+	{
+		final LruCache<String, String> cache = new LruCache<>(5, String::length);
+		cache.put("a", "aa");
+		cache.put("b", "bb");
+		assertThat(cache.get("a"), equalTo("aa")); // a is now more recently used than b
+		cache.put("c", "cc");
+
+		assertThat(cache.get("b"), nullValue());
+		assertThat(cache.getWeight(), equalTo(4L));
+		assertThat(cache.getEvictions(), equalTo(1L));
+
+		// larger than the whole cache
+		cache.put("d", "dddddd");
+		assertThat(cache.get("d"), nullValue());
+		assertThat(cache.getSize(), equalTo(2));
+
+		// replacing an entry updates the weight
+		cache.put("a", "a");
+		assertThat(cache.getWeight(), equalTo(3L));
+	}
+
+	@Test
+	public void evictsInvalid()
+	{
+		final LruCache<String, String> cache = new LruCache<>(10, String::length);
+		cache.put("a", "aa");
+
+		assertThat(cache.get("a", value -> false), nullValue());
+		assertThat(cache.getSize(), equalTo(0));
+		assertThat(cache.getWeight(), equalTo(0L));
+		assertThat(cache.getEvictions(), equalTo(1L));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+}
@@ -0,0 +1,123 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.Method;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MethodExtractorTest
+{
+	// formatted like fulib's generated code
+	private static final String MODEL = "package org.example;\n" //
+	                                    + "public class Student\n" //
+	                                    + "{\n" //
+	                                    + "   public static final String PROPERTY_name = \"name\";\n" //
+	                                    + "   private String name;\n" //
+	                                    + "\n" //
+	                                    + "   public String getName()\n" //
+	                                    + "   {\n" //
+	                                    + "      return this.name;\n" //
+	                                    + "   }\n" //
+	                                    + "\n" //
+	                                    + "   public Student setName(String value)\n" //
+	                                    + "   {\n" //
+	                                    + "      this.name = value;\n" //
+	                                    + "      return this;\n" //
+	                                    + "   }\n" //
+	                                    + "\n" //
+	                                    + "   public String greet(String other,\n" //
+	                                    + "      int times) throws Exception\n" //
+	                                    + "   {\n" //
+	                                    + "      if (times > 0)\n" //
+	                                    + "      {\n" //
+	                                    + "         return \"Hi \" + other;\n" //
+	                                    + "      }\n" //
+	                                    + "\n" //
+	                                    + "      return \"\";\n" //
+	                                    + "   }\n" //
+	                                    + "\n" //
+	                                    + "   @Override\n" //
+	                                    + "   public String toString()\n" //
+	                                    + "   {\n" //
+	                                    + "      return this.name;\n" //
+	                                    + "   }\n" //
+	                                    + "\n" //
+	                                    + "   void hidden()\n" //
+	                                    + "   {\n" //
+	                                    + "   }\n" //
+	                                    + "}\n";
+
+	private static final String TEST = "package org.example;\n" //
+	                                   + "public class ScenarioTest\n" //
+	                                   + "{\n" //
+	                                   + "   public void test()\n" //
+	                                   + "   {\n" //
+	                                   + "      Student alice = new Student();\n" //
+	                                   + "      alice.setName(\"Alice\");\n" //
+	                                   + "   }\n" //
+	                                   + "}\n";
+
+	@Test
+	public void extract() throws Exception
+	{
+		final Path projectDir = Files.createTempDirectory("MethodExtractorTest");
+		try (final JavaCompilerService compiler = new JavaCompilerService())
+		{
+			final Path modelSrcDir = projectDir.resolve("model_src");
+			final Path testSrcDir = projectDir.resolve("test_src");
+			write(modelSrcDir.resolve("org/example/Student.java"), MODEL);
+			write(testSrcDir.resolve("org/example/ScenarioTest.java"), TEST);
+
+			final WorkspaceScanner workspace = new WorkspaceScanner(projectDir.resolve("src"), modelSrcDir,
+			                                                        testSrcDir);
+			workspace.scanSources();
+
+			// from the compilation
+			final MethodExtractor compiled = new MethodExtractor();
+			final HashMap<String, byte[]> modelClasses = new HashMap<>();
+			assertThat(compiler.compile(new ByteArrayOutputStream(), new HashMap<>(), modelClasses,
+			                            workspace.getModelSources(), compiled.extractor(true)), equalTo(0));
+			assertThat(compiler.compile(new ByteArrayOutputStream(), modelClasses, new HashMap<>(),
+			                            workspace.getTestSources(), compiled.extractor(false)), equalTo(0));
+			final List<String> fromCompilation = describe(compiled.getMethods(compiler, workspace));
+
+			assertThat(fromCompilation, equalTo(List.of( //
+				"ScenarioTest|void test()|Student alice = new Student();\nalice.setName(\"Alice\");\n", //
+				"Student|String greet(String other, int times)|" //
+				+ "if (times > 0)\n{\n   return \"Hi \" + other;\n}\nreturn \"\";\n" //
+			)));
+
+			// parsed on demand, e.g. after the pipeline ran in a worker process
+			final List<String> fromParsing = describe(new MethodExtractor().getMethods(compiler, workspace));
+			assertThat(fromParsing, equalTo(fromCompilation));
+		}
+		finally
+		{
+			Tools.deleteRecursively(projectDir);
+		}
+	}
+
+	private static List<String> describe(List<Method> methods)
+	{
+		final List<String> result = new ArrayList<>();
+		for (final Method method : methods)
+		{
+			result.add(method.getClassName() + "|" + method.getName() + "|" + method.getBody());
+		}
+		return result;
+	}
+
+	private static void write(Path file, String content) throws Exception
+	{
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+}
@@ -0,0 +1,96 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ModelCacheTest
+{
+	@Test
+	public void key() throws Exception
+	{
+		final Path tempDir = Files.createTempDirectory("ModelCacheTest");
+		try
+		{
+			final List<Path> classPath = List.of(Path.of("fulib.jar"));
+			final Path a = tempDir.resolve("a");
+			final Path b = tempDir.resolve("b");
+			final List<Path> sourcesA = List.of(write(a.resolve("org/example/Student.java"), "class Student {}"));
+			final List<Path> sourcesB = List.of(write(b.resolve("org/example/Student.java"), "class Student {}"));
+
+			// same model in another run directory
+			final String key = ModelCache.key(classPath, a, sourcesA);
+			assertThat(ModelCache.key(classPath, b, sourcesB), equalTo(key));
+			assertThat(ModelCache.key(List.of(Path.of("other.jar")), b, sourcesB), not(equalTo(key)));
+
+			write(b.resolve("org/example/Student.java"), "class Student { int age; }");
+			assertThat(ModelCache.key(classPath, b, sourcesB), not(equalTo(key)));
+		}
+		finally
+		{
+			Tools.deleteRecursively(tempDir);
+		}
+	}
+
+	@Test
+	public void evictsByBytes()
+	{
+		final ModelCache cache = new ModelCache(10);
+		final ModelCache.Entry a = entry(4);
+		final ModelCache.Entry b = entry(4);
+		final ModelCache.Entry c = entry(4);
+
+		cache.put("a", a);
+		cache.put("b", b);
+		assertThat(cache.get("a"), sameInstance(a)); // a is now more recently used than b
+		cache.put("c", c);
+
+		assertThat(cache.get("b"), nullValue());
+		assertThat(cache.get("a"), sameInstance(a));
+		assertThat(cache.get("c"), sameInstance(c));
+		assertThat(cache.getSize(), equalTo(2));
+		assertThat(cache.getBytes(), equalTo(8L));
+		assertThat(cache.getEvictions(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(3L));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+
+	@Test
+	public void disabled()
+	{
+		final ModelCache cache = new ModelCache(0);
+		cache.put("a", entry(1));
+
+		assertThat(cache.isEnabled(), equalTo(false));
+		assertThat(cache.get("a"), nullValue());
+	}
+
+	@Test
+	public void outputOfOtherRun()
+	{
+		final Path a = Path.of("runs", "a", "model_src");
+		final Path b = Path.of("runs", "b", "model_src");
+		final String warning = ": warning: [rawtypes] found raw type: List\n";
+		final ModelCache.Entry entry = new ModelCache.Entry(Map.of(), Map.of(),
+		                                                    a.resolve("Student.java") + ":3" + warning, a);
+
+		assertThat(entry.getOutput(b), equalTo(b.resolve("Student.java") + ":3" + warning));
+	}
+
+	private static ModelCache.Entry entry(int bytes)
+	{
+		return new ModelCache.Entry(Map.of("org.example.Student", new byte[bytes]), Map.of(), "", Path.of("model_src"));
+	}
+
+	private static Path write(Path file, String content) throws Exception
+	{
+		Files.createDirectories(file.getParent());
+		return Files.writeString(file, content);
+	}
+}
@@ -0,0 +1,121 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OutputSinkTest
+{
+	private static final String PROJECT_DIR = "/tmp/fulib.org/api/runcodegen/1234";
+
+	@Test
+	public void replacesPath()
+	{
+		final List<String> lines = new ArrayList<>();
+		final OutputSink sink = new OutputSink(1024, PROJECT_DIR, ".", lines::add);
+
+		write(sink, PROJECT_DIR + "/src/Scenario.md:1:2: error: foo\n/tmp/fulib.org/api/x " + PROJECT_DIR);
+		sink.close();
+
+		assertThat(sink.toString(), equalTo("./src/Scenario.md:1:2: error: foo\n/tmp/fulib.org/api/x ."));
+		assertThat(lines, equalTo(List.of("./src/Scenario.md:1:2: error: foo", "/tmp/fulib.org/api/x .")));
+	}
+
+	@Test
+	public void replacesPathAcrossWrites()
+	{
+		final OutputSink sink = new OutputSink(1024, PROJECT_DIR, ".", line -> {});
+		final String text = "at " + PROJECT_DIR + "/a and " + PROJECT_DIR + "/b";
+
+		// one byte at a time, so every match spans multiple writes
+		for (final byte b : text.getBytes(StandardCharsets.UTF_8))
+		{
+			sink.write(b);
+		}
+		sink.close();
+
+		assertThat(sink.toString(), equalTo("at ./a and ./b"));
+	}
+
+	@Test
+	public void replacesOverlappingPrefix()
+	{
+		final OutputSink sink = new OutputSink(1024, "aab", "X", line -> {});
+
+		write(sink, "aaab aab aa");
+		sink.close();
+
+		assertThat(sink.toString(), equalTo("aX X aa"));
+	}
+
+	@Test
+	public void bulkWriteMatchesSingleBytes()
+	{
+		final String text = ("/x/tmp " + PROJECT_DIR + "/a\n/tmp/fulib.org/api/runcodegen/12 " + PROJECT_DIR).repeat(20);
+		final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+		final List<String> singleLines = new ArrayList<>();
+		final OutputSink single = new OutputSink(500, PROJECT_DIR, ".", singleLines::add);
+		for (final byte b : bytes)
+		{
+			single.write(b);
+		}
+		single.close();
+
+		// chunks of odd sizes, so that matches and lines span chunk boundaries
+		final List<String> bulkLines = new ArrayList<>();
+		final OutputSink bulk = new OutputSink(500, PROJECT_DIR, ".", bulkLines::add);
+		for (int off = 0; off < bytes.length; off += 13)
+		{
+			bulk.write(bytes, off, Math.min(13, bytes.length - off));
+		}
+		bulk.close();
+
+		assertThat(bulk.toString(), equalTo(single.toString()));
+		assertThat(bulkLines, equalTo(singleLines));
+		assertThat(bulk.getWritten(), equalTo((long) bytes.length));
+		assertThat(bulk.isTruncated(), equalTo(true));
+	}
+
+	@Test
+	public void truncates()
+	{
+		final List<String> lines = new ArrayList<>();
+		final OutputSink sink = new OutputSink(8, PROJECT_DIR, ".", lines::add);
+
+		write(sink, "1234\n5678\n90");
+		sink.close();
+
+		assertThat(sink.isTruncated(), equalTo(true));
+		assertThat(sink.toString(), equalTo("1234\n567\n(output truncated, 4 more bytes)\n"));
+		assertThat(lines, equalTo(List.of("1234", "567", "(output truncated, 4 more bytes)")));
+	}
+
+	@Test
+	public void truncatesAtCharacterBoundary()
+	{
+		final List<String> lines = new ArrayList<>();
+		final OutputSink sink = new OutputSink(7, PROJECT_DIR, ".", lines::add);
+
+		// the euro sign takes bytes 6 to 8, so the limit would cut it in two
+		final byte[] bytes = "12345\u20ac\n".getBytes(StandardCharsets.UTF_8);
+		// also when the character is split between writes
+		sink.write(bytes, 0, 6);
+		sink.write(bytes, 6, bytes.length - 6);
+		sink.close();
+
+		assertThat(sink.toString(), equalTo("12345\n(output truncated, 4 more bytes)\n"));
+		assertThat(lines, equalTo(List.of("12345", "(output truncated, 4 more bytes)")));
+	}
+
+	private static void write(OutputSink sink, String text)
+	{
+		final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		sink.write(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,91 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Result;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ResultCacheTest
+{
+	@Test
+	public void key()
+	{
+		final CodeGenData a = input("# Test", "org.example", "Scenario.md");
+		final CodeGenData b = input("# Test", "org.example", "Scenario.md");
+		final CodeGenData c = input("# Test", "org.exampl", "eScenario.md");
+
+		assertThat(ResultCache.key(a), equalTo(ResultCache.key(b)));
+		assertThat(ResultCache.key(a), not(equalTo(ResultCache.key(c))));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed()
+	{
+		final ResultCache cache = new ResultCache(2, Long.MAX_VALUE, System::nanoTime);
+		final Result a = new Result("a");
+		final Result b = new Result("b");
+		final Result c = new Result("c");
+
+		cache.put("a", a);
+		cache.put("b", b);
+		assertThat(cache.get("a", r -> true), sameInstance(a)); // a is now more recently used than b
+		cache.put("c", c);
+
+		assertThat(cache.get("b", r -> true), nullValue());
+		assertThat(cache.get("a", r -> true), sameInstance(a));
+		assertThat(cache.get("c", r -> true), sameInstance(c));
+		assertThat(cache.getSize(), equalTo(2));
+		assertThat(cache.getEvictions(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(3L));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+
+	@Test
+	public void expires()
+	{
+		final AtomicLong time = new AtomicLong();
+		final ResultCache cache = new ResultCache(10, 100, time::get);
+		final Result a = new Result("a");
+
+		cache.put("a", a);
+		time.set(100);
+		assertThat(cache.get("a", r -> true), sameInstance(a));
+		time.set(101);
+		assertThat(cache.get("a", r -> true), nullValue());
+		assertThat(cache.getSize(), equalTo(0));
+	}
+
+	@Test
+	public void invalid()
+	{
+		final ResultCache cache = new ResultCache(10, Long.MAX_VALUE, System::nanoTime);
+		cache.put("a", new Result("a"));
+
+		assertThat(cache.get("a", r -> false), nullValue());
+		assertThat(cache.getSize(), equalTo(0));
+		assertThat(cache.getMisses(), equalTo(1L));
+	}
+
+	@Test
+	public void disabled()
+	{
+		final ResultCache cache = new ResultCache(0, Long.MAX_VALUE, System::nanoTime);
+		cache.put("a", new Result("a"));
+
+		assertThat(cache.isEnabled(), equalTo(false));
+		assertThat(cache.get("a", r -> true), nullValue());
+	}
+
+	private static CodeGenData input(String scenarioText, String packageName, String scenarioFileName)
+	{
+		final CodeGenData input = new CodeGenData();
+		input.setScenarioText(scenarioText);
+		input.setPackageName(packageName);
+		input.setScenarioFileName(scenarioFileName);
+		return input;
+	}
+}
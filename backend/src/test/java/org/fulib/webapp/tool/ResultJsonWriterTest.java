@@ -0,0 +1,193 @@
+package org.fulib.webapp.tool;
+
+import org.fulib.webapp.tool.model.Diagnostic;
+import org.fulib.webapp.tool.model.Diagram;
+import org.fulib.webapp.tool.model.Method;
+import org.fulib.webapp.tool.model.Result;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ResultJsonWriterTest
+{
+	@Test
+	public void writesResult() throws Exception
+	{
+		final Result result = new Result("abc");
+		result.setExitCode(5);
+		result.setOutput("line \"1\"\n\tline\\2\u0001\u2028");
+
+		final Method method = new Method();
+		method.setClassName("ScenarioTest");
+		method.setName("void test()");
+		method.setBody("x();\n");
+		result.getMethods().add(method);
+
+		final StringWriter writer = new StringWriter();
+		new ResultJsonWriter(writer).write(result);
+
+		// language=JSON
+		assertThat(writer.toString(), equalTo(
+			"{\"id\":\"abc\",\"exitCode\":5,\"output\":\"line \\\"1\\\"\\n\\tline\\\\2\\u0001\\u2028\","
+			+ "\"objectDiagrams\":[],"
+			+ "\"methods\":[{\"className\":\"ScenarioTest\",\"name\":\"void test()\",\"body\":\"x();\\n\"}]}"));
+	}
+
+	@Test
+	public void omitsMissingId() throws Exception
+	{
+		final Result result = new Result(null);
+		result.setExitCode(0);
+
+		final StringWriter writer = new StringWriter();
+		new ResultJsonWriter(writer).write(result);
+
+		// language=JSON
+		assertThat(writer.toString(), equalTo("{\"exitCode\":0,\"objectDiagrams\":[],\"methods\":[]}"));
+	}
+
+	@Test
+	public void writesDiagnostics() throws Exception
+	{
+		final Result result = new Result(null);
+		result.setExitCode(4);
+
+		final Diagnostic diagnostic = new Diagnostic();
+		diagnostic.setFile("./src/Scenario.md");
+		diagnostic.setLine(3);
+		diagnostic.setColumn(10);
+		diagnostic.setEndColumn(14);
+		diagnostic.setSeverity("error");
+		diagnostic.setMessage("unresolved name \"x\"");
+		result.setDiagnostics(List.of(diagnostic));
+
+		final StringWriter writer = new StringWriter();
+		new ResultJsonWriter(writer).write(result);
+
+		// language=JSON
+		assertThat(writer.toString(), equalTo(
+			"{\"exitCode\":4,\"objectDiagrams\":[],\"methods\":[],"
+			+ "\"diagnostics\":[{\"file\":\"./src/Scenario.md\",\"line\":3,\"column\":10,\"endColumn\":14,"
+			+ "\"severity\":\"error\",\"message\":\"unresolved name \\\"x\\\"\"}]}"));
+	}
+
+	@Test
+	public void streamsDiagramFiles() throws Exception
+	{
+		final Path dir = Files.createTempDirectory("ResultJsonWriterTest");
+		try
+		{
+			// not a multiple of the chunk size, so the last chunk is padded
+			final byte[] png = new byte[10000];
+			new Random(42).nextBytes(png);
+			final Path pngFile = Files.write(dir.resolve("a.png"), png);
+
+			final String svg = "<svg a=\"b\">\n" + "\u00e4".repeat(5000) + "</svg>";
+			final Path svgFile = Files.write(dir.resolve("b.svg"), svg.getBytes(StandardCharsets.UTF_8));
+
+			final Diagram pngDiagram = new Diagram();
+			pngDiagram.setName("a.png");
+			pngDiagram.setFile(pngFile);
+
+			final Diagram svgDiagram = new Diagram();
+			svgDiagram.setName("b.svg");
+			svgDiagram.setFile(svgFile);
+
+			StringWriter writer = new StringWriter();
+			new ResultJsonWriter(writer).write(pngDiagram);
+			assertThat(writer.toString(), equalTo(
+				"{\"name\":\"a.png\",\"content\":\"" + Base64.getEncoder().encodeToString(png) + "\"}"));
+
+			writer = new StringWriter();
+			new ResultJsonWriter(writer).write(svgDiagram);
+			assertThat(writer.toString(), equalTo(
+				"{\"name\":\"b.svg\",\"content\":\"" + svg.replace("\"", "\\\"").replace("\n", "\\n") + "\"}"));
+		}
+		finally
+		{
+			Files.deleteIfExists(dir.resolve("a.png"));
+			Files.deleteIfExists(dir.resolve("b.svg"));
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void writesDiagramReferences() throws Exception
+	{
+		final Path dir = Files.createTempDirectory("ResultJsonWriterTest");
+		try
+		{
+			final Path smallFile = Files.write(dir.resolve("small.svg"), "<svg/>".getBytes(StandardCharsets.UTF_8));
+			final Path largeFile = Files.write(dir.resolve("large.svg"), new byte[8192]);
+			final Path pngFile = Files.write(dir.resolve("small.png"), new byte[] { 1, 2, 3 });
+
+			final StringWriter writer = new StringWriter();
+			final ResultJsonWriter jsonWriter = new ResultJsonWriter(writer, true);
+			jsonWriter.write(diagram(smallFile, 6, "a"));
+			jsonWriter.write(diagram(largeFile, 8192, "b"));
+			jsonWriter.write(diagram(pngFile, 3, "c"));
+
+			assertThat(writer.toString(), equalTo(
+				"{\"name\":\"small.svg\",\"path\":\"x/small.svg\",\"size\":6,\"hash\":\"a\",\"content\":\"<svg/>\"}"
+				+ "{\"name\":\"large.svg\",\"path\":\"x/large.svg\",\"size\":8192,\"hash\":\"b\"}"
+				+ "{\"name\":\"small.png\",\"path\":\"x/small.png\",\"size\":3,\"hash\":\"c\"}"));
+		}
+		finally
+		{
+			Files.deleteIfExists(dir.resolve("small.svg"));
+			Files.deleteIfExists(dir.resolve("large.svg"));
+			Files.deleteIfExists(dir.resolve("small.png"));
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void hashesReferencesOnDemand() throws Exception
+	{
+		final Path dir = Files.createTempDirectory("ResultJsonWriterTest");
+		try
+		{
+			final Path file = Files.write(dir.resolve("large.svg"), new byte[8192]);
+			final Diagram diagram = diagram(file, 8192, null);
+
+			// inline diagrams need no hash
+			new ResultJsonWriter(new StringWriter()).write(diagram);
+			assertThat(diagram.getHash(), nullValue());
+
+			final StringWriter writer = new StringWriter();
+			new ResultJsonWriter(writer, true).write(diagram);
+
+			// sha256 of 8192 zero bytes
+			final String hash = "9f1dcbc35c350d6027f98be0f5c8b43b42ca52b7604459c0c42be3aa88913d47";
+			assertThat(diagram.getHash(), equalTo(hash));
+			assertThat(writer.toString(), equalTo(
+				"{\"name\":\"large.svg\",\"path\":\"x/large.svg\",\"size\":8192,\"hash\":\"" + hash + "\"}"));
+		}
+		finally
+		{
+			Files.deleteIfExists(dir.resolve("large.svg"));
+			Files.delete(dir);
+		}
+	}
+
+	private static Diagram diagram(Path file, long size, String hash)
+	{
+		final Diagram diagram = new Diagram();
+		diagram.setName(file.getFileName().toString());
+		diagram.setPath("x/" + file.getFileName());
+		diagram.setFile(file);
+		diagram.setSize(size);
+		diagram.setHash(hash);
+		return diagram;
+	}
+}
@@ -0,0 +1,24 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RunCodeGenJobsTest
+{
+	@Test
+	public void firstEvent()
+	{
+		assertThat(RunCodeGenJobs.firstEvent(null), equalTo(0));
+		assertThat(RunCodeGenJobs.firstEvent("0"), equalTo(1));
+		assertThat(RunCodeGenJobs.firstEvent(" 41 "), equalTo(42));
+
+		// invalid headers start from the beginning instead of failing the request
+		assertThat(RunCodeGenJobs.firstEvent(""), equalTo(0));
+		assertThat(RunCodeGenJobs.firstEvent("abc"), equalTo(0));
+		assertThat(RunCodeGenJobs.firstEvent("-5"), equalTo(0));
+		assertThat(RunCodeGenJobs.firstEvent(String.valueOf(Integer.MAX_VALUE)), equalTo(0));
+		assertThat(RunCodeGenJobs.firstEvent("99999999999"), equalTo(0));
+	}
+}
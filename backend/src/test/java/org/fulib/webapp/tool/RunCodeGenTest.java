@@ -1,16 +1,29 @@
 package org.fulib.webapp.tool;
 
 import org.fulib.StrUtil;
+import org.fulib.webapp.metrics.MetricsRegistry;
+import org.fulib.webapp.tool.model.CodeGenData;
+import org.fulib.webapp.tool.model.Diagnostic;
 import org.fulib.webapp.tool.model.Result;
+import org.fulib.webapp.util.DelegatingServletOutputStream;
 import org.hamcrest.CoreMatchers;
 import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -22,10 +35,40 @@ public class RunCodeGenTest
 {
 	private static final String PNG_HEADER_BASE64 = "iVBORw0KGgo";
 
+	private Path runsDir;
+	private TempSpaceManager tempSpace;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// a temp space of its own, so that the test does not touch the directories of a local server
+		this.runsDir = Files.createTempDirectory("RunCodeGenTest");
+		this.tempSpace = new TempSpaceManager(this.runsDir, Long.MAX_VALUE, Long.MAX_VALUE, System::nanoTime);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.tempSpace.shutdown();
+		Tools.deleteRecursively(this.runsDir);
+	}
+
+	private RunCodeGen createCodeGen()
+	{
+		return this.createCodeGen(new ResultCache(), new RunLimits());
+	}
+
+	private RunCodeGen createCodeGen(ResultCache resultCache, RunLimits limits)
+	{
+		return new RunCodeGen(new JavaCompilerService(), resultCache, new CodeGenExecutor(), new CheckExecutor(1, 1),
+		                      this.tempSpace, new PipelineMetrics(new MetricsRegistry()), new SandboxClassLoaders(),
+		                      new TestExecutor(1), limits, new WorkerPool(0, 0, 0, 0, List.of()), new ModelCache());
+	}
+
 	@Test
 	public void handle() throws Exception
 	{
-		final RunCodeGen codeGen = new RunCodeGen();
+		final RunCodeGen codeGen = this.createCodeGen();
 
 		final Request request = mock(Request.class);
 		final String ip = "0.0.0.0";
@@ -40,11 +83,18 @@ public class RunCodeGenTest
 		when(request.body()).thenReturn(requestBody);
 
 		final Response response = mock(Response.class);
+		final HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
-		final String responseBody = codeGen.handle(request, response);
+		when(response.raw()).thenReturn(servletResponse);
+		when(servletResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(outputStream));
+
+		codeGen.handle(request, response);
 
 		verify(response).type("application/json");
 
+		final String responseBody = outputStream.toString(StandardCharsets.UTF_8);
+
 		final JSONObject responseObj = new JSONObject(responseBody);
 		assertThat(responseObj.getString("output"), equalTo(""));
 		assertThat(responseObj.getInt("exitCode"), equalTo(0));
@@ -66,6 +116,53 @@ public class RunCodeGenTest
 			+ "FulibTools.objectDiagrams().dumpPng(\""));
 	}
 
+	@Test
+	public void limitExceededNotCached() throws Exception
+	{
+		final ResultCache resultCache = new ResultCache();
+		// too little wall time for any test run
+		final RunLimits limits = new RunLimits(1, 0, 0, 1);
+		try
+		{
+			final RunCodeGen codeGen = this.createCodeGen(resultCache, limits);
+
+			final CodeGenData input = new CodeGenData();
+			input.setScenarioText("# Test\n\nThere is a Student with name Alice.\n\n![alice](alice.png)\n");
+			input.setPackageName("org.example");
+			input.setScenarioFileName("Scenario.md");
+
+			final Result result = codeGen.run(input);
+
+			assertThat(result.getOutput(), RunLimit.fromExitCode(result.getExitCode()), equalTo(RunLimit.WALL_TIME));
+			assertThat(resultCache.getSize(), equalTo(0));
+		}
+		finally
+		{
+			limits.shutdown();
+		}
+	}
+
+	@Test
+	public void runUncachedKeepsNothing() throws Exception
+	{
+		final ResultCache resultCache = new ResultCache();
+		final RunCodeGen codeGen = this.createCodeGen(resultCache, new RunLimits());
+
+		final CodeGenData input = new CodeGenData();
+		input.setScenarioText("# Test\n\nThere is a Student with name Alice.\n");
+		input.setPackageName("org.example");
+		input.setScenarioFileName("Scenario.md");
+
+		codeGen.runUncached(input);
+
+		assertThat(resultCache.getSize(), equalTo(0));
+		assertThat(this.tempSpace.getDirectories(), equalTo(0));
+		try (final Stream<Path> files = Files.list(this.runsDir))
+		{
+			assertThat(files.count(), equalTo(0L));
+		}
+	}
+
 	@Test
 	public void shouldSkip()
 	{
@@ -93,4 +190,58 @@ public class RunCodeGenTest
 			assertFalse("should not skip " + decl, RunCodeGen.shouldSkip(decl, properties));
 		}
 	}
+
+	@Test
+	public void isCheck()
+	{
+		assertTrue(RunCodeGen.isCheck(new JSONObject().put(RunCodeGen.PROPERTY_mode, RunCodeGen.MODE_CHECK)));
+		assertFalse(RunCodeGen.isCheck(new JSONObject().put(RunCodeGen.PROPERTY_mode, RunCodeGen.MODE_RUN)));
+		assertFalse(RunCodeGen.isCheck(new JSONObject()));
+	}
+
+	@Test
+	public void checkInTempSpace() throws Exception
+	{
+		final RunCodeGen codeGen = this.createCodeGen();
+
+		final CodeGenData input = new CodeGenData();
+		input.setScenarioText("# Test\n\nThere is a Student with name Alice.\n");
+		input.setPackageName("org.example");
+		input.setScenarioFileName("Scenario.md");
+
+		final Result result = codeGen.check(input);
+
+		assertThat(result.getOutput(), result.getExitCode(), equalTo(0));
+		// the check wrote into the managed temp space and cleaned up after itself
+		try (final Stream<Path> files = Files.list(this.runsDir))
+		{
+			assertThat(files.count(), equalTo(0L));
+		}
+	}
+
+	@Test
+	public void parseDiagnostics()
+	{
+		final String output = "./src/org/example/Scenario.md:3:10-14: error: unresolved name 'Alcie'\n"
+		                      + "\tat org.fulib.scenarios.tool.ScenarioCompiler.run\n"
+		                      + "./src/org/example/Scenario.md:5:0: warning: empty sentence\n"
+		                      + "./model_src/org/example/Student.java:1: error: not a marker\n";
+
+		final List<Diagnostic> diagnostics = RunCodeGen.parseDiagnostics(output);
+		assertThat(diagnostics.size(), equalTo(2));
+
+		final Diagnostic error = diagnostics.get(0);
+		assertThat(error.getFile(), equalTo("./src/org/example/Scenario.md"));
+		assertThat(error.getLine(), equalTo(3));
+		assertThat(error.getColumn(), equalTo(10));
+		assertThat(error.getEndColumn(), equalTo(14));
+		assertThat(error.getSeverity(), equalTo("error"));
+		assertThat(error.getMessage(), equalTo("unresolved name 'Alcie'"));
+
+		final Diagnostic warning = diagnostics.get(1);
+		assertThat(warning.getLine(), equalTo(5));
+		assertThat(warning.getColumn(), equalTo(0));
+		assertThat(warning.getEndColumn(), equalTo(0));
+		assertThat(warning.getSeverity(), equalTo("warning"));
+	}
 }
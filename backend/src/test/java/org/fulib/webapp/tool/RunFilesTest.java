@@ -0,0 +1,38 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RunFilesTest
+{
+	private static final String ETAG = "\"18b2f0-20\"";
+	// Tue, 15 Nov 1994 08:12:31 GMT
+	private static final long LAST_MODIFIED = 784887151000L;
+
+	@Test
+	public void notModified()
+	{
+		assertThat(RunFiles.notModified(null, null, ETAG, LAST_MODIFIED), equalTo(false));
+		assertThat(RunFiles.notModified(ETAG, null, ETAG, LAST_MODIFIED), equalTo(true));
+		assertThat(RunFiles.notModified("\"other\"", null, ETAG, LAST_MODIFIED), equalTo(false));
+
+		final String date = "Tue, 15 Nov 1994 08:12:31 GMT";
+		assertThat(RunFiles.notModified(null, date, ETAG, LAST_MODIFIED), equalTo(true));
+		assertThat(RunFiles.notModified(null, date, ETAG, LAST_MODIFIED + 1000), equalTo(false));
+		assertThat(RunFiles.notModified(null, "yesterday", ETAG, LAST_MODIFIED), equalTo(false));
+
+		// If-None-Match takes precedence
+		assertThat(RunFiles.notModified("\"other\"", date, ETAG, LAST_MODIFIED), equalTo(false));
+	}
+
+	@Test
+	public void contentType()
+	{
+		assertThat(RunFiles.contentType("alice.svg"), equalTo("image/svg+xml"));
+		assertThat(RunFiles.contentType("alice.png"), equalTo("image/png"));
+		assertThat(RunFiles.contentType("alice.yaml"), equalTo("text/plain; charset=utf-8"));
+		assertThat(RunFiles.contentType("alice"), equalTo("application/octet-stream"));
+	}
+}
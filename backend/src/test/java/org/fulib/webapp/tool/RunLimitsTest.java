@@ -0,0 +1,179 @@
+package org.fulib.webapp.tool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RunLimitsTest
+{
+	private RunLimits limits;
+
+	@After
+	public void tearDown()
+	{
+		if (this.limits != null)
+		{
+			this.limits.shutdown();
+		}
+	}
+
+	@Test
+	public void withinLimits() throws Exception
+	{
+		this.limits = new RunLimits(10_000, 10_000, 1L << 30, 5);
+		assertThat(this.limits.call(() -> "ok"), equalTo("ok"));
+	}
+
+	@Test
+	public void budgetCountsRunThread() throws Exception
+	{
+		this.limits = new RunLimits(10_000, 10_000, 1L << 30, 5);
+		final RunBudget budget = new RunBudget(System.nanoTime());
+		final int length = this.limits.call(budget, () -> new byte[4 * 1024 * 1024].length);
+		assertThat(length, equalTo(4 * 1024 * 1024));
+		assertThat(budget.getAllocatedBytes() >= length, equalTo(true));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void exceptionsPassThrough() throws Exception
+	{
+		this.limits = new RunLimits(10_000, 10_000, 1L << 30, 5);
+		this.limits.call(() -> {
+			throw new IllegalStateException();
+		});
+	}
+
+	@Test
+	public void wallTime() throws Exception
+	{
+		this.limits = new RunLimits(100, 0, 0, 5);
+		final RunLimit limit = this.exceed(() -> {
+			Thread.sleep(60_000);
+			return null;
+		});
+		assertThat(limit, equalTo(RunLimit.WALL_TIME));
+	}
+
+	@Test
+	public void wallTimeIgnoringInterrupts() throws Exception
+	{
+		this.limits = new RunLimits(100, 0, 0, 5);
+		final long start = System.nanoTime();
+		final RunLimit limit = this.exceed(() -> {
+			final long end = System.nanoTime() + 2_000_000_000L;
+			while (System.nanoTime() < end)
+			{
+				// busy, ignoring the interrupt
+			}
+			return null;
+		});
+		assertThat(limit, equalTo(RunLimit.WALL_TIME));
+		// the caller does not wait for the task to end
+		assertThat((System.nanoTime() - start) < 1_000_000_000L, equalTo(true));
+	}
+
+	@Test
+	public void stuckThreads() throws Exception
+	{
+		this.limits = new RunLimits(100, 0, 0, 5, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final RunLimit limit = this.exceed(() -> {
+			while (release.getCount() > 0)
+			{
+				// busy, ignoring the interrupt
+			}
+			return null;
+		});
+		assertThat(limit, equalTo(RunLimit.WALL_TIME));
+		assertThat(this.limits.getStuckThreads(), equalTo(1));
+		assertThat(this.limits.isHealthy(), equalTo(false));
+
+		// the only run thread is still busy
+		try
+		{
+			this.limits.call(() -> null);
+			throw new AssertionError("should be rejected");
+		}
+		catch (RejectedExecutionException expected)
+		{
+		}
+
+		release.countDown();
+		final long deadline = System.nanoTime() + 5_000_000_000L;
+		while (!this.limits.isHealthy() && System.nanoTime() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertThat(this.limits.getStuckThreads(), equalTo(0));
+		assertThat(this.limits.isHealthy(), equalTo(true));
+	}
+
+	@Test
+	public void cpuTime() throws Exception
+	{
+		this.limits = new RunLimits(0, 100, 0, 5);
+		final RunLimit limit = this.exceed(() -> {
+			while (!Thread.currentThread().isInterrupted())
+			{
+				// busy
+			}
+			return null;
+		});
+		assertThat(limit, equalTo(RunLimit.CPU_TIME));
+	}
+
+	@Test
+	public void memory() throws Exception
+	{
+		this.limits = new RunLimits(0, 0, 64L * 1024 * 1024, 5);
+		final RunLimit limit = this.exceed(() -> {
+			final List<byte[]> garbage = new ArrayList<>();
+			while (!Thread.currentThread().isInterrupted())
+			{
+				garbage.add(new byte[1024]);
+				if (garbage.size() > 1024)
+				{
+					garbage.clear();
+				}
+			}
+			return null;
+		});
+		assertThat(limit, equalTo(RunLimit.MEMORY));
+	}
+
+	@Test
+	public void exitCodes()
+	{
+		for (final RunLimit limit : RunLimit.values())
+		{
+			final int exitCode = limit.getExitCode();
+			assertThat(exitCode & 3, equalTo(Stage.TESTS.ordinal()));
+			assertThat(RunLimit.fromExitCode(exitCode), equalTo(limit));
+		}
+		assertThat(RunLimit.fromExitCode(0), nullValue());
+		assertThat(RunLimit.fromExitCode(-1), nullValue());
+		assertThat(RunLimit.fromExitCode(5 << 2 | 3), nullValue());
+	}
+
+	private RunLimit exceed(Callable<Object> task) throws Exception
+	{
+		try
+		{
+			this.limits.call(task);
+		}
+		catch (RunLimitExceededException ex)
+		{
+			assertThat(this.limits.getExceeded(ex.getLimit()), equalTo(1L));
+			return ex.getLimit();
+		}
+		throw new AssertionError("should exceed a limit");
+	}
+}
@@ -0,0 +1,67 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SandboxClassLoadersTest
+{
+	@Test
+	public void loadsAndCloses() throws Exception
+	{
+		final Path tempDir = Files.createTempDirectory("SandboxClassLoadersTest");
+		final Map<String, byte[]> classes = new HashMap<>();
+		try
+		{
+			final Path hello = tempDir.resolve("Hello.java");
+			final Path other = tempDir.resolve("Other.java");
+			Files.write(hello, "package org.example; public class Hello {}".getBytes(StandardCharsets.UTF_8));
+			Files.write(other, "package org.example; public class Other {}".getBytes(StandardCharsets.UTF_8));
+			try (final JavaCompilerService compiler = new JavaCompilerService())
+			{
+				final int exitCode = compiler.compile(new ByteArrayOutputStream(), Map.of(), classes,
+				                                      List.of(hello, other));
+				assertThat(exitCode, equalTo(0));
+			}
+		}
+		finally
+		{
+			Tools.deleteRecursively(tempDir);
+		}
+
+		final SandboxClassLoaders sandbox = new SandboxClassLoaders();
+		final MemoryClassLoader loader = sandbox.newLoader(classes);
+		assertThat(sandbox.getOpen(), equalTo(1L));
+
+		final Class<?> hello = Class.forName("org.example.Hello", false, loader);
+		assertThat(hello.getClassLoader(), sameInstance(loader));
+		// shared classes come from the common parent
+		assertThat(Class.forName("org.junit.Test", false, loader), sameInstance(Test.class));
+
+		loader.close();
+		loader.close(); // closing twice is harmless
+		assertThat(sandbox.getOpen(), equalTo(0L));
+		assertThat(sandbox.getClosed(), equalTo(1L));
+
+		// classes that were already loaded stay available, but no new ones are defined
+		assertThat(Class.forName("org.example.Hello", false, loader), sameInstance(hello));
+		try
+		{
+			Class.forName("org.example.Other", false, loader);
+			throw new AssertionError("should not load classes after close");
+		}
+		catch (ClassNotFoundException expected)
+		{
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.fulib.webapp.tool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TempSpaceManagerTest
+{
+	private Path baseDir;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.baseDir = Files.createTempDirectory("TempSpaceManagerTest");
+	}
+
+	@After
+	public void tearDown()
+	{
+		Tools.deleteRecursively(this.baseDir);
+	}
+
+	@Test
+	public void deletesOldDirectories() throws Exception
+	{
+		final AtomicLong time = new AtomicLong();
+		final TempSpaceManager manager = new TempSpaceManager(this.baseDir, Long.MAX_VALUE,
+		                                                      TimeUnit.HOURS.toNanos(1), time::get);
+
+		this.createRun(manager, "a", 100);
+		time.set(TimeUnit.MINUTES.toNanos(30));
+		this.createRun(manager, "b", 200);
+
+		assertThat(manager.getDirectories(), equalTo(2));
+		assertThat(manager.getBytes(), equalTo(300L));
+
+		time.set(TimeUnit.MINUTES.toNanos(61));
+		manager.sweep();
+
+		assertThat(manager.touch("a"), equalTo(false));
+		assertThat(manager.touch("b"), equalTo(true));
+		assertThat(Files.exists(manager.getDirectory("a")), equalTo(false));
+		assertThat(Files.exists(manager.getDirectory("b")), equalTo(true));
+		assertThat(manager.getBytes(), equalTo(200L));
+		assertThat(manager.getDeletedDirectories(), equalTo(1L));
+		assertThat(manager.getDeletedBytes(), equalTo(100L));
+		assertThat(manager.getQuotaEvictions(), equalTo(0L));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedOverQuota() throws Exception
+	{
+		final TempSpaceManager manager = new TempSpaceManager(this.baseDir, 250, Long.MAX_VALUE, System::nanoTime);
+
+		this.createRun(manager, "a", 100);
+		this.createRun(manager, "b", 100);
+		manager.touch("a"); // a is now more recently used than b
+		this.createRun(manager, "c", 100);
+		manager.sweep();
+
+		assertThat(manager.touch("a"), equalTo(true));
+		assertThat(manager.touch("b"), equalTo(false));
+		assertThat(manager.touch("c"), equalTo(true));
+		assertThat(manager.getBytes(), equalTo(200L));
+		assertThat(manager.getQuotaEvictions(), equalTo(1L));
+
+		manager.shutdown();
+	}
+
+	@Test
+	public void deletesLeftovers() throws Exception
+	{
+		Files.createDirectories(this.baseDir.resolve("old").resolve("src"));
+		Files.write(this.baseDir.resolve("old").resolve("src").resolve("Scenario.md"), new byte[10]);
+
+		final TempSpaceManager manager = new TempSpaceManager(this.baseDir, Long.MAX_VALUE, Long.MAX_VALUE,
+		                                                      System::nanoTime);
+		final List<Path> leftovers = manager.listLeftovers();
+		assertThat(leftovers, equalTo(List.of(this.baseDir.resolve("old"))));
+
+		manager.deleteLeftovers(leftovers);
+		assertThat(Files.exists(this.baseDir.resolve("old")), equalTo(false));
+	}
+
+	@Test
+	public void keepsLeasedDirectories() throws Exception
+	{
+		final AtomicLong time = new AtomicLong();
+		final TempSpaceManager manager = new TempSpaceManager(this.baseDir, 150, TimeUnit.HOURS.toNanos(1), time::get);
+
+		this.createRun(manager, "a", 100);
+		final TempSpaceManager.Lease lease = manager.lease("a");
+		assertThat(lease.isAvailable(), equalTo(true));
+
+		// neither the age nor the quota deletes a leased directory, so b is evicted although a is older
+		time.set(TimeUnit.MINUTES.toNanos(61));
+		this.createRun(manager, "b", 100);
+		manager.sweep();
+		assertThat(Files.exists(manager.getDirectory("a")), equalTo(true));
+		assertThat(manager.touch("b"), equalTo(false));
+
+		lease.close();
+		manager.sweep();
+		assertThat(Files.exists(manager.getDirectory("a")), equalTo(false));
+		assertThat(manager.lease("a").isAvailable(), equalTo(false));
+
+		manager.shutdown();
+	}
+
+	private void createRun(TempSpaceManager manager, String id, int size) throws Exception
+	{
+		final Path dir = manager.getDirectory(id);
+		Files.createDirectories(dir.resolve("src"));
+		Files.write(dir.resolve("src").resolve("Scenario.md"), new byte[size]);
+		manager.register(id);
+	}
+}
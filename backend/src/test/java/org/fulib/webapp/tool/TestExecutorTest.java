@@ -0,0 +1,151 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TestExecutorTest
+{
+	// test methods that fail after different delays, so that they finish out of order when run in parallel
+	private static final String SAMPLE_TEST = "package org.example;\n" //
+	                                          + "import org.junit.Test;\n" //
+	                                          + "import static org.junit.Assert.fail;\n" //
+	                                          + "public class %s {\n" //
+	                                          + "  @Test public void a() throws Exception { Thread.sleep(60); fail(); }\n" //
+	                                          + "  @Test public void b() throws Exception { Thread.sleep(30); fail(); }\n" //
+	                                          + "  @Test public void c() throws Exception { Thread.sleep(1); fail(); }\n" //
+	                                          + "  @Test public void d() { }\n" //
+	                                          + "}\n";
+
+	@Test
+	public void parallelFailuresInPlanOrder() throws Exception
+	{
+		final Map<String, byte[]> classes = compile("FirstTest", "SecondTest");
+		final List<String> testClassNames = List.of("org.example.FirstTest", "org.example.SecondTest");
+
+		final List<String> serial = runTests(new TestExecutor(1), classes, testClassNames);
+		assertThat(serial.size(), equalTo(6));
+
+		final TestExecutor parallel = new TestExecutor(4);
+		try
+		{
+			assertThat(parallel.isParallel(), equalTo(true));
+			for (int i = 0; i < 3; i++)
+			{
+				assertThat(runTests(parallel, classes, testClassNames), equalTo(serial));
+			}
+		}
+		finally
+		{
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void replacesAbandonedThreads() throws Exception
+	{
+		final TestThreadPool pool = new TestThreadPool(1, Thread::new);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		try
+		{
+			// ignores the interrupt, like an endless loop in a test method
+			final Future<?> stuck = pool.submit(() -> {
+				started.countDown();
+				while (true)
+				{
+					try
+					{
+						release.await();
+						return;
+					}
+					catch (InterruptedException ignored)
+					{
+					}
+				}
+			});
+			started.await();
+
+			pool.cancel(stuck);
+			assertThat(pool.getAbandoned(), equalTo(1));
+			// the next test method does not wait for the stuck one
+			assertThat(pool.submit(() -> "ok").get(5, TimeUnit.SECONDS), equalTo("ok"));
+
+			release.countDown();
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (pool.getAbandoned() > 0 && System.nanoTime() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			assertThat(pool.getAbandoned(), equalTo(0));
+			assertThat(pool.getMaximumPoolSize(), equalTo(1));
+		}
+		finally
+		{
+			release.countDown();
+			pool.shutdown();
+		}
+	}
+
+	private static List<String> runTests(TestExecutor testExecutor, Map<String, byte[]> classes,
+		List<String> testClassNames) throws Exception
+	{
+		try (final MemoryClassLoader loader = new SandboxClassLoaders().newLoader(classes))
+		{
+			final Runner runner = Tools.testRunner(loader, testClassNames, testExecutor.getComputer());
+			final Result result = new JUnitCore().run(runner);
+			assertThat(result.getRunCount(), equalTo(8));
+
+			final List<String> headers = new ArrayList<>();
+			for (final Failure failure : Tools.getFailuresInOrder(result, runner.getDescription()))
+			{
+				headers.add(failure.getTestHeader());
+			}
+			return headers;
+		}
+	}
+
+	private static Map<String, byte[]> compile(String... classNames) throws Exception
+	{
+		final Path tempDir = Files.createTempDirectory("TestExecutorTest");
+		try
+		{
+			final List<Path> sources = new ArrayList<>();
+			for (final String className : classNames)
+			{
+				final Path source = tempDir.resolve(className + ".java");
+				Files.write(source, String.format(SAMPLE_TEST, className).getBytes(StandardCharsets.UTF_8));
+				sources.add(source);
+			}
+
+			final Map<String, byte[]> classes = new HashMap<>();
+			try (final JavaCompilerService compiler = new JavaCompilerService())
+			{
+				final int exitCode = compiler.compile(new ByteArrayOutputStream(), Map.of(), classes, sources);
+				assertThat(exitCode, equalTo(0));
+			}
+			return classes;
+		}
+		finally
+		{
+			Tools.deleteRecursively(tempDir);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class WorkerPoolTest
+{
+	@Test
+	public void killsWorkerAfterTimeout() throws Exception
+	{
+		final Path projectDir = Files.createTempDirectory("WorkerPoolTest");
+		// no worker starts, let alone finishes a job, within 1 ms
+		final WorkerPool pool = new WorkerPool(1, 200, Long.MAX_VALUE, 1, List.of());
+		try
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final int exitCode = pool.genCompileRun(PipelineListener.NONE, out, projectDir.resolve("src"),
+			                                        projectDir.resolve("model_src"), projectDir.resolve("test_src"));
+
+			assertThat(exitCode, equalTo(-1));
+			assertThat(out.toString(StandardCharsets.UTF_8),
+			           equalTo("The worker process did not finish within 1 ms and was stopped.\n"));
+			assertThat(pool.getRecycled(), equalTo(1L));
+		}
+		finally
+		{
+			pool.shutdown();
+			Tools.deleteRecursively(projectDir);
+		}
+	}
+
+	@Test
+	public void runsAndRecycles() throws Exception
+	{
+		final Path projectDir = Files.createTempDirectory("WorkerPoolTest");
+		final WorkerPool pool = new WorkerPool(1, 1, Long.MAX_VALUE, 60_000, List.of());
+		try
+		{
+			final Path srcDir = projectDir.resolve("src");
+			final Path modelSrcDir = projectDir.resolve("model_src");
+			final Path testSrcDir = projectDir.resolve("test_src");
+			Files.createDirectories(srcDir.resolve("org/example"));
+			Files.createDirectories(modelSrcDir);
+			Files.createDirectories(testSrcDir);
+			Files.write(srcDir.resolve("org/example/Scenario.md"),
+			            "# Test\n\nThere is a Student with name Alice.\n".getBytes(StandardCharsets.UTF_8));
+
+			for (int i = 1; i <= 2; i++)
+			{
+				final List<String> events = new ArrayList<>();
+				final PipelineListener listener = new PipelineListener()
+				{
+					@Override
+					public void stageStarted(Stage stage)
+					{
+						events.add("started " + stage.getId());
+					}
+
+					@Override
+					public void stageFinished(Stage stage, int exitCode)
+					{
+						events.add("finished " + stage.getId() + " " + exitCode);
+					}
+				};
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+				final int exitCode = pool.genCompileRun(listener, out, srcDir, modelSrcDir, testSrcDir);
+
+				assertThat(out.toString(StandardCharsets.UTF_8), exitCode, equalTo(0));
+				assertThat(events, equalTo(List.of("started scenarioc", "finished scenarioc 0", "started javac-model",
+				                                   "finished javac-model 0", "started javac-test",
+				                                   "finished javac-test 0", "started tests", "finished tests 0")));
+				assertThat(Files.exists(modelSrcDir.resolve("org/example/Student.java")), equalTo(true));
+
+				// every worker runs only one job, so the second job runs in a new process
+				assertThat(pool.getRecycled(), equalTo((long) i));
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+			Tools.deleteRecursively(projectDir);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.fulib.webapp.tool;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class WorkspaceScannerTest
+{
+	@Test
+	public void scan() throws Exception
+	{
+		final Path projectDir = Files.createTempDirectory("WorkspaceScannerTest");
+		try
+		{
+			final Path srcDir = projectDir.resolve("src");
+			final Path modelSrcDir = projectDir.resolve("model_src");
+			final Path testSrcDir = projectDir.resolve("test_src");
+
+			final Path modelB = write(modelSrcDir.resolve("org/example/B.java"), "class B {}");
+			final Path modelA = write(modelSrcDir.resolve("org/example/A.java"), "class A {}");
+			final Path classDiagram = write(modelSrcDir.resolve("org/example/classDiagram.svg"), "<svg/>");
+			final Path test = write(testSrcDir.resolve("org/example/ScenarioTest.java"), "class ScenarioTest {}");
+			write(srcDir.resolve("org/example/Scenario.md"), "# Scenario");
+			final Path diagram = write(srcDir.resolve("org/example/diagram.svg"), "<svg></svg>");
+			final Path nested = write(srcDir.resolve("org/example/nested/diagram.yaml"), "- a");
+
+			final WorkspaceScanner workspace = new WorkspaceScanner(srcDir, modelSrcDir, testSrcDir);
+			workspace.scanSources();
+			assertThat(workspace.getTotalBytes(), equalTo(-1L));
+			workspace.scanDiagrams();
+
+			assertThat(workspace.getModelSources(), equalTo(List.of(modelA, modelB)));
+			assertThat(workspace.getTestSources(), equalTo(List.of(test)));
+			assertThat(workspace.getClassDiagram("org/example"), equalTo(classDiagram));
+			assertThat(workspace.getClassDiagram("org/other"), nullValue());
+			assertThat(workspace.getDiagrams(), equalTo(Map.of(diagram, 11L, nested, 3L)));
+			// all files, not only sources and diagrams
+			assertThat(workspace.getTotalBytes(), equalTo(71L));
+
+			// later files are not picked up, the index is only built once
+			write(modelSrcDir.resolve("org/example/C.java"), "class C {}");
+			workspace.scanSources();
+			assertThat(workspace.getModelSources().size(), equalTo(2));
+		}
+		finally
+		{
+			Tools.deleteRecursively(projectDir);
+		}
+	}
+
+	@Test
+	public void missingDirectories() throws Exception
+	{
+		final Path projectDir = Files.createTempDirectory("WorkspaceScannerTest");
+		try
+		{
+			final WorkspaceScanner workspace = new WorkspaceScanner(projectDir.resolve("src"),
+			                                                        projectDir.resolve("model_src"),
+			                                                        projectDir.resolve("test_src"));
+			workspace.scanSources();
+			workspace.scanDiagrams();
+
+			assertThat(workspace.getModelSources().isEmpty(), equalTo(true));
+			assertThat(workspace.getTestSources().isEmpty(), equalTo(true));
+			assertThat(workspace.getDiagrams().isEmpty(), equalTo(true));
+		}
+		finally
+		{
+			Tools.deleteRecursively(projectDir);
+		}
+	}
+
+	private static Path write(Path file, String content) throws Exception
+	{
+		Files.createDirectories(file.getParent());
+		return Files.writeString(file, content);
+	}
+}